@@ -24,6 +24,7 @@ import org.anhonesteffort.flock.test.InstrumentationTestCaseWithMocks;
 import java.util.Arrays;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +45,7 @@ public class HidingUtilTest extends InstrumentationTestCaseWithMocks {
 
     when(masterCipher.encryptAndEncode(any(byte[].class))).thenReturn(PLAINTEXT_STUFF);
     when(masterCipher.decodeAndDecrypt(any(byte[].class))).thenReturn(PLAINTEXT_STUFF);
+    when(masterCipher.decodeAndDecrypt(any(byte[].class), anyInt(), anyInt())).thenReturn(PLAINTEXT_STUFF);
   }
 
   public void testEncryptAndDecrypt() throws Exception {
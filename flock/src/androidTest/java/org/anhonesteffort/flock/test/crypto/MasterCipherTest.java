@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.test.crypto;
+
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import org.anhonesteffort.flock.PreferencesActivity;
+import org.anhonesteffort.flock.crypto.InvalidMacException;
+import org.anhonesteffort.flock.crypto.KeyHelper;
+import org.anhonesteffort.flock.crypto.KeyStore;
+import org.anhonesteffort.flock.crypto.MasterCipher;
+import org.anhonesteffort.flock.util.Base64;
+import org.anhonesteffort.flock.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * rhodey
+ */
+public class MasterCipherTest extends AndroidTestCase {
+
+  private final byte[] cipherKeyBytes = new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+  private final byte[] macKeyBytes    = new byte[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+
+  private SecretKey    cipherKey;
+  private SecretKey    macKey;
+  private MasterCipher masterCipher;
+
+  @Override
+  protected void setUp() throws Exception {
+    cipherKey = new SecretKeySpec(cipherKeyBytes, "AES");
+    macKey    = new SecretKeySpec(macKeyBytes,    "SHA256");
+
+    KeyStore.saveCipherKey(getContext(), cipherKeyBytes);
+    KeyStore.saveMacKey(getContext(), macKeyBytes);
+
+    masterCipher = KeyHelper.getMasterCipher(getContext()).get();
+  }
+
+  /* the implementation MasterCipher shipped with before contexts were reused. */
+  private byte[] legacyEncryptAndEncode(byte[] data)
+      throws IOException, GeneralSecurityException
+  {
+    return legacyEncryptAndEncode(MasterCipher.CURRENT_CIPHER_VERSION, data);
+  }
+
+  private byte[] legacyEncryptAndEncode(byte cipherVersion, byte[] data)
+      throws IOException, GeneralSecurityException
+  {
+    Cipher encryptingCipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+    encryptingCipher.init(Cipher.ENCRYPT_MODE, cipherKey);
+
+    Mac hmac = Mac.getInstance("HmacSHA256");
+    hmac.init(macKey);
+
+    byte[] iv         = encryptingCipher.getIV();
+    byte[] ciphertext = encryptingCipher.doFinal(data);
+    byte[] mac        = hmac.doFinal(Util.combine(new byte[] {cipherVersion}, iv, ciphertext));
+
+    return Base64.encodeBytesToBytes(Util.combine(new byte[] {cipherVersion}, iv, ciphertext, mac));
+  }
+
+  private byte[] legacyDecodeAndDecrypt(byte[] encodedVersionIvCiphertextAndMac)
+      throws InvalidMacException, IOException, GeneralSecurityException
+  {
+    byte[] versionIvCiphertextAndMac = Base64.decode(encodedVersionIvCiphertextAndMac);
+    byte[] iv                        = Arrays.copyOfRange(versionIvCiphertextAndMac, 1, 1 + 16);
+    byte[] ciphertext                = Arrays.copyOfRange(versionIvCiphertextAndMac, 1 + 16,
+                                                          versionIvCiphertextAndMac.length - 32);
+    byte[] mac                       = Arrays.copyOfRange(versionIvCiphertextAndMac,
+                                                          versionIvCiphertextAndMac.length - 32,
+                                                          versionIvCiphertextAndMac.length);
+
+    Cipher decryptingCipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+    Mac    hmac             = Mac.getInstance("HmacSHA256");
+
+    decryptingCipher.init(Cipher.DECRYPT_MODE, cipherKey, new IvParameterSpec(iv));
+    hmac.init(macKey);
+
+    byte[] ourMac = hmac.doFinal(Util.combine(new byte[] {versionIvCiphertextAndMac[0]}, iv, ciphertext));
+    if (!MessageDigest.isEqual(mac, ourMac))
+      throw new InvalidMacException("INVALID MAC");
+
+    return decryptingCipher.doFinal(ciphertext);
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+
+  public void testCompatibleWithLegacyFormat() throws Exception {
+    final int[] lengths = new int[] {0, 1, 15, 16, 17, 1024, 1024 * 100};
+
+    for (int length : lengths) {
+      byte[] plaintext = randomBytes(length);
+
+      assertTrue("legacy implementation can decrypt " + length + " bytes.",
+                 Arrays.equals(plaintext, legacyDecodeAndDecrypt(masterCipher.encryptAndEncode(plaintext))));
+      assertTrue("MasterCipher can decrypt " + length + " bytes from legacy implementation.",
+                 Arrays.equals(plaintext, masterCipher.decodeAndDecrypt(legacyEncryptAndEncode(plaintext))));
+    }
+  }
+
+  public void testDecryptWithOffset() throws Exception {
+    final byte[] plaintext = randomBytes(100);
+    final byte[] prefixed  = Util.combine(new byte[] {0x23, 0x23}, masterCipher.encryptAndEncode(plaintext));
+
+    assertTrue(Arrays.equals(plaintext, masterCipher.decodeAndDecrypt(prefixed, 2, prefixed.length - 2)));
+  }
+
+  public void testInvalidMacRejected() throws Exception {
+    final byte[] encoded         = masterCipher.encryptAndEncode(randomBytes(100));
+    final byte[] decoded         = Base64.decode(encoded);
+    decoded[decoded.length - 1] ^= 0x01;
+    final byte[] tamperedEncoded = Base64.encodeBytesToBytes(decoded);
+
+    try {
+
+      masterCipher.decodeAndDecrypt(tamperedEncoded);
+      fail("MasterCipher accepted an invalid mac.");
+
+    } catch (InvalidMacException e) { }
+  }
+
+  private MasterCipher getDeflatingMasterCipher() throws Exception {
+    PreferenceManager.getDefaultSharedPreferences(getContext()).edit()
+        .putBoolean(PreferencesActivity.KEY_PREF_COMPRESS_HIDDEN_DATA, true).commit();
+
+    try {
+
+      return KeyHelper.getMasterCipher(getContext()).get();
+
+    } finally {
+      PreferenceManager.getDefaultSharedPreferences(getContext()).edit()
+          .remove(PreferencesActivity.KEY_PREF_COMPRESS_HIDDEN_DATA).commit();
+    }
+  }
+
+  public void testDeflateCipherVersion() throws Exception {
+    final MasterCipher  deflatingCipher = getDeflatingMasterCipher();
+    final StringBuilder vCard           = new StringBuilder();
+
+    for (int i = 0; i < 50; i++)
+      vCard.append("BEGIN:VCARD\r\nVERSION:3.0\r\nFN:Contact ").append(i).append("\r\nEND:VCARD\r\n");
+
+    byte[] plaintext = vCard.toString().getBytes();
+    byte[] encoded   = deflatingCipher.encryptAndEncode(plaintext);
+
+    assertEquals(MasterCipher.DEFLATE_CIPHER_VERSION, Base64.decode(encoded)[0]);
+    assertTrue("deflated payload is smaller than uncompressed payload.",
+               encoded.length < masterCipher.encryptAndEncode(plaintext).length);
+    assertTrue("MasterCipher can decrypt deflated payload.",
+               Arrays.equals(plaintext, masterCipher.decodeAndDecrypt(encoded)));
+
+    byte[] incompressible = randomBytes(1024);
+    byte[] fallback       = deflatingCipher.encryptAndEncode(incompressible);
+
+    assertEquals(MasterCipher.CURRENT_CIPHER_VERSION, Base64.decode(fallback)[0]);
+    assertTrue(Arrays.equals(incompressible, deflatingCipher.decodeAndDecrypt(fallback)));
+  }
+
+  private static byte[] deflateZeros(int length) {
+    Deflater              deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    byte[]                zeros    = new byte[1024 * 64];
+    byte[]                chunk    = new byte[1024 * 4];
+
+    for (int remaining = length; remaining > 0; remaining -= zeros.length) {
+      deflater.setInput(zeros, 0, Math.min(zeros.length, remaining));
+      while (!deflater.needsInput())
+        deflated.write(chunk, 0, deflater.deflate(chunk));
+    }
+
+    deflater.finish();
+    while (!deflater.finished())
+      deflated.write(chunk, 0, deflater.deflate(chunk));
+
+    deflater.end();
+    return deflated.toByteArray();
+  }
+
+  public void testInflatedSizeLimited() throws Exception {
+    byte[] withinLimit = legacyEncryptAndEncode(MasterCipher.DEFLATE_CIPHER_VERSION, deflateZeros(1024 * 1024));
+    assertEquals(1024 * 1024, masterCipher.decodeAndDecrypt(withinLimit).length);
+
+    byte[] pastLimit = legacyEncryptAndEncode(MasterCipher.DEFLATE_CIPHER_VERSION,
+                                              deflateZeros(MasterCipher.MAX_INFLATED_BYTES + 1));
+
+    try {
+
+      masterCipher.decodeAndDecrypt(pastLimit);
+      fail("MasterCipher inflated past its limit.");
+
+    } catch (GeneralSecurityException e) { }
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.metrics;
+
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.test.InstrumentationTestCaseWithMocks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * rhodey
+ */
+public class SyncMetricsTest extends InstrumentationTestCaseWithMocks {
+
+  private Callable<SyncMetrics> getCurrentTask() {
+    return new Callable<SyncMetrics>() {
+      @Override
+      public SyncMetrics call() {
+        return SyncMetrics.getCurrent().orNull();
+      }
+    };
+  }
+
+  public void testPoolThreadDoesNotKeepStaleMetrics() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    SyncMetrics     first    = new SyncMetrics("authority", "/first/");
+    SyncMetrics     second   = new SyncMetrics("authority", "/second/");
+
+    try {
+
+      first.bindToCurrentThread();
+      assertSame(first, executor.submit(SyncMetrics.wrap(getCurrentTask())).get());
+      assertNull(executor.submit(getCurrentTask()).get());
+
+      second.bindToCurrentThread();
+      assertSame(second, executor.submit(SyncMetrics.wrap(getCurrentTask())).get());
+
+      SyncMetrics.unbindCurrentThread();
+      assertNull(executor.submit(SyncMetrics.wrap(getCurrentTask())).get());
+
+    } finally {
+      SyncMetrics.unbindCurrentThread();
+      executor.shutdown();
+    }
+  }
+
+}
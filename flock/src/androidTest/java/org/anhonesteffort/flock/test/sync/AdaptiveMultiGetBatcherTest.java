@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync;
+
+import org.anhonesteffort.flock.sync.AdaptiveMultiGetBatcher;
+import org.anhonesteffort.flock.test.InstrumentationTestCaseWithMocks;
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class AdaptiveMultiGetBatcherTest extends InstrumentationTestCaseWithMocks {
+
+  private List<String> uids(int count) {
+    List<String> uids = new LinkedList<String>();
+    for (int i = 0; i < count; i++)
+      uids.add("uid-" + i);
+
+    return uids;
+  }
+
+  public void testHandsOutEveryUidOnce() throws Exception {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uids(120), 50);
+    List<String>            seen    = new LinkedList<String>();
+
+    Optional<List<String>> batch = batcher.nextBatch();
+    while (batch.isPresent()) {
+      seen.addAll(batch.get());
+      batch = batcher.nextBatch();
+    }
+
+    assertEquals(uids(120), seen);
+    assertEquals(3, batcher.getBatchSizeHistory().size());
+  }
+
+  public void testSmallComponentsGrowBatches() throws Exception {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uids(1000), 50);
+
+    batcher.handleReportCompleted(50, 50 * 512, 200);
+    assertEquals(100, batcher.getBatchSize());
+
+    batcher.handleReportCompleted(100, 100 * 512, 200);
+    assertEquals(200, batcher.getBatchSize());
+  }
+
+  public void testLargeComponentsShrinkBatches() throws Exception {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uids(1000), 50);
+
+    batcher.handleReportCompleted(50, 50 * 256 * 1024, 2000);
+    assertEquals(4, batcher.getBatchSize());
+  }
+
+  public void testSlowReportsShrinkBatches() throws Exception {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uids(1000), 50);
+
+    batcher.handleReportCompleted(50, 50 * 512, 20000);
+    assertEquals(25, batcher.getBatchSize());
+  }
+
+  public void testRejectedReportBacksOff() throws Exception {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uids(100), 50);
+    List<String>            first   = batcher.nextBatch().get();
+
+    assertTrue(AdaptiveMultiGetBatcher.isBackOffStatus(413));
+    assertTrue(AdaptiveMultiGetBatcher.isBackOffStatus(507));
+    assertTrue(batcher.handleReportRejected(first));
+    assertEquals(25, batcher.getBatchSize());
+    assertEquals(100, batcher.getRemainingCount());
+    assertEquals(first.subList(0, 25), batcher.nextBatch().get());
+
+    List<String> single = new LinkedList<String>();
+    single.add("uid-0");
+    assertFalse(batcher.handleReportRejected(single));
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync;
+
+import android.test.AndroidTestCase;
+
+import org.anhonesteffort.flock.sync.ComponentContentHash;
+import org.anhonesteffort.flock.sync.LocalComponentIndex;
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.HashMap;
+
+/**
+ * rhodey
+ */
+public class ComponentContentHashTest extends AndroidTestCase {
+
+  private static final String VCARD = "BEGIN:VCARD\r\n" +
+                                      "VERSION:3.0\r\n" +
+                                      "PRODID:-//Flock//1\r\n" +
+                                      "UID:1337\r\n" +
+                                      "FN:Open Whisper Systems\r\n" +
+                                      "NOTE:a note long enough that some writers would fold it across more t\r\n" +
+                                      " han one line\r\n" +
+                                      "TEL;TYPE=cell:555-1234\r\n" +
+                                      "END:VCARD\r\n";
+
+  public void testOrderFoldingAndVolatilePropertiesIgnored() throws Exception {
+    String reordered = "BEGIN:VCARD\n" +
+                       "VERSION:3.0\n" +
+                       "UID:1337\n" +
+                       "TEL;TYPE=cell:555-1234\n" +
+                       "NOTE:a note long enough that some writers would fold it across more than one line\n" +
+                       "FN:Open Whisper Systems\n" +
+                       "REV:20150101T000000Z\n" +
+                       "PRODID:-//Flock//2\n" +
+                       "END:VCARD\n";
+
+    assertEquals(ComponentContentHash.build(VCARD), ComponentContentHash.build(reordered));
+  }
+
+  public void testContentChangeDetected() throws Exception {
+    String changed = VCARD.replace("555-1234", "555-4321");
+
+    assertFalse(ComponentContentHash.build(VCARD).equals(ComponentContentHash.build(changed)));
+  }
+
+  private static String buildEvent(String alarmOne, String alarmTwo, String masterSummary, String overrideSummary) {
+    return "BEGIN:VCALENDAR\r\n" +
+           "VERSION:2.0\r\n" +
+           "BEGIN:VEVENT\r\n" +
+           "UID:1337\r\n" +
+           "DTSTART:20150101T100000Z\r\n" +
+           "RRULE:FREQ=DAILY\r\n" +
+           "SUMMARY:" + masterSummary + "\r\n" +
+           "BEGIN:VALARM\r\n" +
+           alarmOne +
+           "END:VALARM\r\n" +
+           "BEGIN:VALARM\r\n" +
+           alarmTwo +
+           "END:VALARM\r\n" +
+           "END:VEVENT\r\n" +
+           "BEGIN:VEVENT\r\n" +
+           "UID:1337\r\n" +
+           "RECURRENCE-ID:20150102T100000Z\r\n" +
+           "DTSTART:20150102T120000Z\r\n" +
+           "SUMMARY:" + overrideSummary + "\r\n" +
+           "END:VEVENT\r\n" +
+           "END:VCALENDAR\r\n";
+  }
+
+  public void testSiblingOrderIgnored() throws Exception {
+    String alarmOne = "ACTION:DISPLAY\r\nTRIGGER:-PT15M\r\n";
+    String alarmTwo = "ACTION:AUDIO\r\nTRIGGER:-PT5M\r\n";
+
+    assertEquals(ComponentContentHash.build(buildEvent(alarmOne, alarmTwo, "master", "override")),
+                 ComponentContentHash.build(buildEvent(alarmTwo, alarmOne, "master", "override")));
+  }
+
+  public void testPropertySwapBetweenAlarmsDetected() throws Exception {
+    String original = buildEvent("ACTION:DISPLAY\r\nTRIGGER:-PT15M\r\n",
+                                 "ACTION:AUDIO\r\nTRIGGER:-PT5M\r\n",
+                                 "master", "override");
+    String swapped  = buildEvent("ACTION:DISPLAY\r\nTRIGGER:-PT5M\r\n",
+                                 "ACTION:AUDIO\r\nTRIGGER:-PT15M\r\n",
+                                 "master", "override");
+
+    assertFalse(ComponentContentHash.build(original).equals(ComponentContentHash.build(swapped)));
+  }
+
+  public void testPropertySwapBetweenMasterAndOverrideDetected() throws Exception {
+    String alarmOne = "ACTION:DISPLAY\r\nTRIGGER:-PT15M\r\n";
+    String alarmTwo = "ACTION:AUDIO\r\nTRIGGER:-PT5M\r\n";
+
+    assertFalse(ComponentContentHash.build(buildEvent(alarmOne, alarmTwo, "master", "override")).equals(
+        ComponentContentHash.build(buildEvent(alarmOne, alarmTwo, "override", "master"))
+    ));
+  }
+
+  public void testPushSkippedOnlyForMatchingHash() throws Exception {
+    String hash = ComponentContentHash.build(VCARD);
+
+    assertTrue(ComponentContentHash.matches(Optional.of(hash), hash));
+    assertFalse(ComponentContentHash.matches(Optional.of(hash), null));
+    assertFalse(ComponentContentHash.matches(Optional.<String>absent(), hash));
+    assertFalse(ComponentContentHash.matches(
+        Optional.of(ComponentContentHash.build(VCARD.replace("555-1234", "555-4321"))), hash
+    ));
+  }
+
+  public void testPullSkippedOnlyForCleanMatchingEntry() throws Exception {
+    String                                     hash    = ComponentContentHash.build(VCARD);
+    HashMap<String, LocalComponentIndex.Entry> entries = new HashMap<String, LocalComponentIndex.Entry>();
+
+    entries.put("clean",   new LocalComponentIndex.Entry(Optional.of(1L), Optional.of("e1"), Optional.of(hash), false, false));
+    entries.put("dirty",   new LocalComponentIndex.Entry(Optional.of(2L), Optional.of("e2"), Optional.of(hash), true,  false));
+    entries.put("deleted", new LocalComponentIndex.Entry(Optional.of(3L), Optional.of("e3"), Optional.of(hash), false, true));
+    entries.put("nohash",  new LocalComponentIndex.Entry(Optional.of(4L), Optional.of("e4"), Optional.<String>absent(), false, false));
+
+    LocalComponentIndex index = new LocalComponentIndex(entries);
+
+    assertTrue(index.isContentUnchanged("clean", Optional.of(hash)));
+    assertFalse(index.isContentUnchanged("clean", Optional.of(ComponentContentHash.build(VCARD.replace("1234", "4321")))));
+    assertFalse(index.isContentUnchanged("clean", Optional.<String>absent()));
+    assertFalse(index.isContentUnchanged("dirty", Optional.of(hash)));
+    assertFalse(index.isContentUnchanged("deleted", Optional.of(hash)));
+    assertFalse(index.isContentUnchanged("nohash", Optional.of(hash)));
+    assertFalse(index.isContentUnchanged("missing", Optional.of(hash)));
+
+    index.handleComponentCommitted("clean", Optional.of("e5"));
+    assertFalse(index.isContentUnchanged("clean", Optional.of(hash)));
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.util.Pair;
+
+import org.anhonesteffort.flock.sync.LocalRowDiff;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class LocalRowDiffTest extends AndroidTestCase {
+
+  private static final String[] OWNED_COLUMNS = new String[] {"data1", "data2", "data3"};
+
+  private static Pair<Long, ContentValues> existingRow(long id, String data1, String data2, String data3) {
+    ContentValues values = new ContentValues();
+    values.put("data1", data1);
+    values.put("data2", data2);
+    values.put("data3", data3);
+
+    return new Pair<Long, ContentValues>(id, values);
+  }
+
+  private static ContentValues wantedRow(String data1, Integer data2) {
+    ContentValues values = new ContentValues();
+    values.put("mimetype", "test");
+    values.put("data1",    data1);
+    values.put("data2",    data2);
+
+    return values;
+  }
+
+  public void testUnchangedRowsProduceNoOperations() throws Exception {
+    List<Pair<Long, ContentValues>> existing = Arrays.asList(
+        existingRow(1, "one", "1", null),
+        existingRow(2, "two", "2", null)
+    );
+    List<ContentValues> wanted = Arrays.asList(wantedRow("two", 2), wantedRow("one", 1));
+
+    LocalRowDiff diff = new LocalRowDiff(existing, wanted, OWNED_COLUMNS);
+
+    assertTrue(diff.getInsertedRows().isEmpty());
+    assertTrue(diff.getUpdatedRows().isEmpty());
+    assertTrue(diff.getDeletedRowIds().isEmpty());
+  }
+
+  public void testChangedRowIsUpdatedInPlace() throws Exception {
+    List<Pair<Long, ContentValues>> existing = Arrays.asList(
+        existingRow(1, "one", "1", null),
+        existingRow(2, "two", "2", null)
+    );
+    List<ContentValues> wanted = Arrays.asList(wantedRow("one", 1), wantedRow("three", 2));
+
+    LocalRowDiff diff = new LocalRowDiff(existing, wanted, OWNED_COLUMNS);
+
+    assertTrue(diff.getInsertedRows().isEmpty());
+    assertTrue(diff.getDeletedRowIds().isEmpty());
+    assertEquals(1, diff.getUpdatedRows().size());
+
+    Pair<Long, ContentValues> updated = diff.getUpdatedRows().get(0);
+    assertEquals(Long.valueOf(2), updated.first);
+    assertEquals("three", updated.second.getAsString("data1"));
+    assertFalse(updated.second.containsKey("data2"));
+    assertEquals("test",  updated.second.getAsString("mimetype"));
+  }
+
+  public void testMissingOwnedColumnsAreCleared() throws Exception {
+    List<Pair<Long, ContentValues>> existing = Arrays.asList(existingRow(1, "one", "1", "label"));
+    List<ContentValues>             wanted   = Arrays.asList(wantedRow("one", 1));
+
+    LocalRowDiff diff = new LocalRowDiff(existing, wanted, OWNED_COLUMNS);
+
+    assertEquals(1, diff.getUpdatedRows().size());
+    assertTrue(diff.getUpdatedRows().get(0).second.containsKey("data3"));
+    assertNull(diff.getUpdatedRows().get(0).second.get("data3"));
+  }
+
+  public void testExtraRowsAreInsertedAndDeleted() throws Exception {
+    List<Pair<Long, ContentValues>> existing = new LinkedList<Pair<Long, ContentValues>>();
+    List<ContentValues>             wanted   = Arrays.asList(wantedRow("one", 1));
+
+    LocalRowDiff diff = new LocalRowDiff(existing, wanted, OWNED_COLUMNS);
+    assertEquals(1, diff.getInsertedRows().size());
+
+    existing = Arrays.asList(existingRow(7, "one", "1", null), existingRow(8, "gone", "3", null));
+    diff     = new LocalRowDiff(existing, wanted, OWNED_COLUMNS);
+
+    assertTrue(diff.getInsertedRows().isEmpty());
+    assertTrue(diff.getUpdatedRows().isEmpty());
+    assertEquals(Arrays.asList(8L), diff.getDeletedRowIds());
+  }
+
+  public void testValuesEqual() throws Exception {
+    assertTrue(LocalRowDiff.valuesEqual("1", 1));
+    assertTrue(LocalRowDiff.valuesEqual("1", true));
+    assertTrue(LocalRowDiff.valuesEqual(null, null));
+    assertFalse(LocalRowDiff.valuesEqual(null, ""));
+    assertTrue(LocalRowDiff.valuesEqual(new byte[] {1, 2}, new byte[] {1, 2}));
+    assertFalse(LocalRowDiff.valuesEqual(new byte[] {1, 2}, "12"));
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync;
+
+import android.util.Log;
+
+import org.anhonesteffort.flock.sync.ReconciliationPlan;
+import org.anhonesteffort.flock.test.InstrumentationTestCaseWithMocks;
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * rhodey
+ */
+public class ReconciliationPlanTest extends InstrumentationTestCaseWithMocks {
+
+  private static final String TAG = "org.anhonesteffort.flock.test.sync.ReconciliationPlanTest";
+
+  private HashMap<String, String> remoteETags(int componentCount) {
+    HashMap<String, String> remoteETags = new HashMap<String, String>(componentCount * 2);
+
+    for (int i = 0; i < componentCount; i++)
+      remoteETags.put("uid-" + i, "etag-" + i);
+
+    return remoteETags;
+  }
+
+  /*
+  every fourth remote component is missing locally, every fourth has a stale ETag and
+  an extra quarter of local components are no longer on the server.
+   */
+  private HashMap<String, Optional<String>> localETags(int componentCount) {
+    HashMap<String, Optional<String>> localETags = new HashMap<String, Optional<String>>(componentCount * 2);
+
+    for (int i = 0; i < componentCount; i++) {
+      if (i % 4 == 1)
+        localETags.put("uid-" + i, Optional.of("stale-" + i));
+      else if (i % 4 != 0)
+        localETags.put("uid-" + i, Optional.of("etag-" + i));
+    }
+
+    for (int i = componentCount; i < componentCount + (componentCount / 4); i++)
+      localETags.put("uid-" + i, Optional.of("etag-" + i));
+
+    return localETags;
+  }
+
+  public void testBuildPlan() throws Exception {
+    HashMap<String, String>           remoteETags = new HashMap<String, String>();
+    HashMap<String, Optional<String>> localETags  = new HashMap<String, Optional<String>>();
+
+    remoteETags.put("created",   "etag-created");
+    remoteETags.put("changed",   "etag-changed");
+    remoteETags.put("unsynced",  "etag-unsynced");
+    remoteETags.put("unchanged", "etag-unchanged");
+
+    localETags.put("changed",   Optional.of("etag-old"));
+    localETags.put("unsynced",  Optional.<String>absent());
+    localETags.put("unchanged", Optional.of("etag-unchanged"));
+    localETags.put("deleted",   Optional.of("etag-deleted"));
+    localETags.put("new-local", Optional.<String>absent());
+
+    ReconciliationPlan plan = ReconciliationPlan.build(remoteETags, localETags);
+
+    assertEquals(4, plan.getRemoteComponentCount());
+    assertEquals(1, plan.getUidsMissingLocally().size());
+    assertTrue(plan.getUidsMissingLocally().contains("created"));
+    assertEquals(2, plan.getUidsChangedRemotely().size());
+    assertTrue(plan.getUidsChangedRemotely().contains("changed"));
+    assertTrue(plan.getUidsChangedRemotely().contains("unsynced"));
+    assertEquals(1, plan.getUidsMissingRemotely().size());
+    assertTrue(plan.getUidsMissingRemotely().contains("deleted"));
+  }
+
+  private static class CountingSet extends HashSet<String> {
+
+    private int lookups = 0;
+
+    public CountingSet(Set<String> uids) {
+      super(uids);
+    }
+
+    @Override
+    public boolean contains(Object uid) {
+      lookups++;
+      return super.contains(uid);
+    }
+  }
+
+  private int countDeletionDetectionLookups(int componentCount) {
+    HashMap<String, Optional<String>> localETags = localETags(componentCount);
+    CountingSet                       remoteUids = new CountingSet(remoteETags(componentCount).keySet());
+    List<String>                      deleted    = ReconciliationPlan.getUidsMissingRemotely(localETags, remoteUids);
+
+    assertEquals(componentCount / 4, deleted.size());
+    Log.d(TAG, "deletion detection over " + componentCount + " components took " +
+               remoteUids.lookups + " lookups");
+
+    return remoteUids.lookups;
+  }
+
+  /*
+  the old nested loop compared every local UID against every remote UID, counting set
+  lookups instead of timing keeps this deterministic on slow or noisy devices.
+   */
+  public void testDeletionDetectionScalesLinearly() throws Exception {
+    final int[] componentCounts = new int[] {1000, 10000, 50000};
+
+    for (int componentCount : componentCounts) {
+      int localCount = localETags(componentCount).size();
+      assertTrue(countDeletionDetectionLookups(componentCount) <= localCount);
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync;
+
+import android.test.AndroidTestCase;
+
+import org.anhonesteffort.flock.sync.LocalComponentIndex;
+import org.anhonesteffort.flock.sync.ReconciliationPlan;
+import org.anhonesteffort.flock.sync.SyncJournal;
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+
+/**
+ * rhodey
+ */
+public class SyncJournalTest extends AndroidTestCase {
+
+  private static final String AUTHORITY     = "org.anhonesteffort.flock.test";
+  private static final Long   COLLECTION_ID = 1337L;
+
+  private ReconciliationPlan plan() {
+    HashMap<String, String>           remoteETags = new HashMap<String, String>();
+    HashMap<String, Optional<String>> localETags  = new HashMap<String, Optional<String>>();
+
+    remoteETags.put("missing-0",   "etag-0");
+    remoteETags.put("missing-1",   "etag-1");
+    remoteETags.put("changed 2\n", "etag-2");
+
+    localETags.put("changed 2\n", Optional.of("stale-2"));
+    localETags.put("removed-3",   Optional.of("etag-3"));
+
+    return ReconciliationPlan.build(remoteETags, localETags);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    SyncJournal.delete(getContext(), AUTHORITY, COLLECTION_ID);
+    super.tearDown();
+  }
+
+  public void testResumeSkipsCompletedUids() throws Exception {
+    SyncJournal journal = SyncJournal.begin(getContext(), AUTHORITY, COLLECTION_ID,
+                                            "/calendars/test/", "ctag-0", Optional.of("token-0"), plan());
+
+    journal.handleComponentCompleted("missing-0");
+    journal.handleComponentCompleted("changed 2\n");
+    journal.flush();
+    journal.handleComponentCompleted("removed-3");
+    journal.close();
+
+    Optional<SyncJournal> resumed = SyncJournal.resume(getContext(), AUTHORITY, COLLECTION_ID);
+
+    assertTrue(resumed.isPresent());
+    assertEquals("/calendars/test/", resumed.get().getRemotePath());
+    assertEquals("ctag-0",           resumed.get().getRemoteCTag());
+    assertEquals("token-0",          resumed.get().getSyncToken().get());
+
+    ReconciliationPlan remaining = resumed.get().getPlan();
+    assertEquals(3, remaining.getRemoteComponentCount());
+    assertEquals(1, remaining.getUidsMissingLocally().size());
+    assertEquals("missing-1", remaining.getUidsMissingLocally().get(0));
+    assertTrue(remaining.getUidsChangedRemotely().isEmpty());
+    assertEquals(1, remaining.getUidsMissingRemotely().size());
+  }
+
+  public void testCommittedButNotJournaledIsNotInsertedTwice() throws Exception {
+    SyncJournal journal = SyncJournal.begin(getContext(), AUTHORITY, COLLECTION_ID,
+                                            "/calendars/test/", "ctag-0", Optional.<String>absent(), plan());
+    journal.handleComponentCompleted("missing-0");
+    journal.handleComponentCompleted("missing-1");
+    journal.handleComponentCompleted("removed-3");
+    journal.close(); // committed locally but never flushed to the journal
+
+    HashMap<String, LocalComponentIndex.Entry> entries = new HashMap<String, LocalComponentIndex.Entry>();
+    entries.put("missing-0", new LocalComponentIndex.Entry(Optional.of(1L), Optional.of("etag-0"),
+                                                           Optional.<String>absent(), false, false));
+    entries.put("missing-1", new LocalComponentIndex.Entry(Optional.of(2L), Optional.<String>absent(),
+                                                           Optional.<String>absent(), false, false));
+    entries.put("changed 2\n", new LocalComponentIndex.Entry(Optional.of(3L), Optional.of("stale-2"),
+                                                             Optional.<String>absent(), false, false));
+
+    ReconciliationPlan remaining = SyncJournal.resume(getContext(), AUTHORITY, COLLECTION_ID).get().getPlan()
+                                              .getReconciledWith(new LocalComponentIndex(entries));
+
+    assertTrue(remaining.getUidsMissingLocally().isEmpty());
+    assertEquals(2, remaining.getUidsChangedRemotely().size());
+    assertTrue(remaining.getUidsChangedRemotely().contains("missing-1"));
+    assertTrue(remaining.getUidsChangedRemotely().contains("changed 2\n"));
+    assertTrue(remaining.getUidsMissingRemotely().isEmpty());
+  }
+
+  public void testTornCompletedLineIsIgnored() throws Exception {
+    SyncJournal journal = SyncJournal.begin(getContext(), AUTHORITY, COLLECTION_ID,
+                                            "/calendars/test/", "ctag-0", Optional.<String>absent(), plan());
+    journal.close();
+
+    File             completedFile = new File(new File(getContext().getFilesDir(), "sync_journals"),
+                                              AUTHORITY + "_" + COLLECTION_ID + ".completed");
+    FileOutputStream out           = new FileOutputStream(completedFile, true);
+    out.write("missing-0\nmissing-".getBytes("UTF-8"));
+    out.close();
+
+    Optional<SyncJournal> resumed = SyncJournal.resume(getContext(), AUTHORITY, COLLECTION_ID);
+
+    assertTrue(resumed.isPresent());
+    assertFalse(resumed.get().getSyncToken().isPresent());
+    assertEquals(1, resumed.get().getPlan().getUidsMissingLocally().size());
+    assertEquals("missing-1", resumed.get().getPlan().getUidsMissingLocally().get(0));
+  }
+
+  public void testDeleteRemovesJournal() throws Exception {
+    SyncJournal.begin(getContext(), AUTHORITY, COLLECTION_ID,
+                      "/calendars/test/", "ctag-0", Optional.<String>absent(), plan()).close();
+
+    SyncJournal.delete(getContext(), AUTHORITY, COLLECTION_ID);
+    assertFalse(SyncJournal.resume(getContext(), AUTHORITY, COLLECTION_ID).isPresent());
+  }
+
+}
@@ -459,6 +459,19 @@ public class ContactFactoryTest extends AndroidTestCase {
         outValues.getAsByteArray(ContactsContract.CommonDataKinds.Photo.PHOTO),
         PHOTO_BYTES
     ));
+    assertEquals(ContactFactory.getPhotoContentHash(PHOTO_BYTES),
+                 outValues.getAsString(ContactFactory.COLUMN_NAME_PHOTO_CONTENT_HASH));
+  }
+
+  public void testPhotoContentHash() throws Exception {
+    final byte[] PHOTO_BYTES       = {0x00, 0x01, 0x02, 0x03};
+    final byte[] OTHER_PHOTO_BYTES = {0x00, 0x01, 0x02, 0x04};
+
+    assertEquals(ContactFactory.getPhotoContentHash(PHOTO_BYTES),
+                 ContactFactory.getPhotoContentHash(PHOTO_BYTES.clone()));
+    assertFalse(ContactFactory.getPhotoContentHash(PHOTO_BYTES).equals(
+        ContactFactory.getPhotoContentHash(OTHER_PHOTO_BYTES)
+    ));
   }
 
   public void testGetValuesForOrganization() throws Exception {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.test.sync.addressbook;
+
+import org.anhonesteffort.flock.sync.addressbook.PhotoCache;
+import org.anhonesteffort.flock.test.InstrumentationTestCaseWithMocks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+/**
+ * rhodey
+ */
+public class PhotoCacheTest extends InstrumentationTestCaseWithMocks {
+
+  private File directory;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    directory = new File(getInstrumentation().getTargetContext().getCacheDir(),
+                         "photo_cache_test_" + System.nanoTime());
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files)
+        file.delete();
+    }
+    directory.delete();
+
+    super.tearDown();
+  }
+
+  private byte[] photo(int length, int fill) {
+    byte[] photo = new byte[length];
+    Arrays.fill(photo, (byte) fill);
+    return photo;
+  }
+
+  public void testRoundTrip() throws Exception {
+    PhotoCache cache = new PhotoCache(directory, 1024);
+
+    assertFalse(cache.getPhoto(1L, 10L).isPresent());
+
+    cache.putPhoto(1L, 10L, photo(100, 1));
+    assertTrue(Arrays.equals(photo(100, 1), cache.getPhoto(1L, 10L).get()));
+
+    cache.putPhotoResource("abc", photo(50, 2));
+    assertTrue(Arrays.equals(photo(50, 2), cache.getPhotoResource("abc").get()));
+  }
+
+  public void testLeastRecentlyUsedEvictedFirst() throws Exception {
+    PhotoCache cache = new PhotoCache(directory, 300);
+
+    cache.putPhoto(1L, 10L, photo(100, 1));
+    cache.putPhoto(2L, 20L, photo(100, 2));
+    cache.putPhoto(3L, 30L, photo(100, 3));
+
+    assertTrue(cache.getPhoto(1L, 10L).isPresent());
+    cache.putPhoto(4L, 40L, photo(100, 4));
+
+    assertTrue(cache.getPhoto(1L, 10L).isPresent());
+    assertFalse(cache.getPhoto(2L, 20L).isPresent());
+    assertTrue(cache.getPhoto(3L, 30L).isPresent());
+    assertTrue(cache.getPhoto(4L, 40L).isPresent());
+    assertFalse(new File(directory, "2-20").exists());
+  }
+
+  public void testOversizedPhotoNotCached() throws Exception {
+    PhotoCache cache = new PhotoCache(directory, 300);
+
+    cache.putPhoto(1L, 10L, photo(100, 1));
+    cache.putPhoto(2L, 20L, photo(301, 2));
+
+    assertTrue(cache.getPhoto(1L, 10L).isPresent());
+    assertFalse(cache.getPhoto(2L, 20L).isPresent());
+  }
+
+  public void testNewPhotoReplacesStaleEntryForSameRawContact() throws Exception {
+    PhotoCache cache = new PhotoCache(directory, 1024);
+
+    cache.putPhoto(1L,  10L, photo(100, 1));
+    cache.putPhoto(11L, 10L, photo(100, 2));
+    cache.putPhoto(1L,  12L, photo(100, 3));
+
+    assertFalse(cache.getPhoto(1L, 10L).isPresent());
+    assertFalse(new File(directory, "1-10").exists());
+    assertTrue(Arrays.equals(photo(100, 3), cache.getPhoto(1L, 12L).get()));
+    assertTrue(Arrays.equals(photo(100, 2), cache.getPhoto(11L, 10L).get()));
+  }
+
+  public void testEntriesReloadedFromDisk() throws Exception {
+    new PhotoCache(directory, 1024).putPhoto(1L, 10L, photo(100, 1));
+
+    PhotoCache reopened = new PhotoCache(directory, 1024);
+    assertTrue(Arrays.equals(photo(100, 1), reopened.getPhoto(1L, 10L).get()));
+  }
+
+  public void testTornWriteNotServed() throws Exception {
+    new PhotoCache(directory, 1024).putPhoto(1L, 10L, photo(100, 1));
+
+    FileOutputStream torn = new FileOutputStream(new File(directory, "2-20.tmp"));
+    torn.write(photo(50, 2));
+    torn.close();
+
+    PhotoCache reopened = new PhotoCache(directory, 1024);
+    assertFalse(reopened.getPhoto(2L, 20L).isPresent());
+    assertFalse(new File(directory, "2-20.tmp").exists());
+    assertTrue(Arrays.equals(photo(100, 1), reopened.getPhoto(1L, 10L).get()));
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.test.sync.calendar;
+
+import android.content.ContentValues;
+import android.provider.CalendarContract;
+import android.test.AndroidTestCase;
+
+import org.anhonesteffort.flock.sync.LocalRowDiff;
+import org.anhonesteffort.flock.sync.calendar.LocalEventCollection;
+
+/**
+ * rhodey
+ */
+public class LocalEventCollectionTest extends AndroidTestCase {
+
+  public void testZonedToAllDayClearsTimeZones() throws Exception {
+    final ContentValues existingValues = new ContentValues();
+    final ContentValues wantedValues   = new ContentValues();
+
+    existingValues.put(CalendarContract.Events.DTSTART,            1400000000000L);
+    existingValues.put(CalendarContract.Events.DTEND,              1400003600000L);
+    existingValues.put(CalendarContract.Events.EVENT_TIMEZONE,     "America/New_York");
+    existingValues.put(CalendarContract.Events.EVENT_END_TIMEZONE, "America/New_York");
+    existingValues.put(CalendarContract.Events.ALL_DAY,            0);
+
+    wantedValues.put(CalendarContract.Events.DTSTART, 1400000000000L);
+    wantedValues.put(CalendarContract.Events.DTEND,   1400086400000L);
+    wantedValues.put(CalendarContract.Events.ALL_DAY, 1);
+
+    LocalEventCollection.handleClearUnsetEventColumns(wantedValues);
+
+    final ContentValues changedValues = LocalRowDiff.getChangedValues(
+        existingValues,
+        wantedValues,
+        wantedValues.keySet().toArray(new String[wantedValues.size()])
+    );
+
+    assertTrue(changedValues.containsKey(CalendarContract.Events.EVENT_TIMEZONE));
+    assertNull(changedValues.get(CalendarContract.Events.EVENT_TIMEZONE));
+    assertTrue(changedValues.containsKey(CalendarContract.Events.EVENT_END_TIMEZONE));
+    assertNull(changedValues.get(CalendarContract.Events.EVENT_END_TIMEZONE));
+    assertEquals(1, changedValues.getAsInteger(CalendarContract.Events.ALL_DAY).intValue());
+  }
+
+  public void testUnchangedZonedEventHasNoChanges() throws Exception {
+    final ContentValues existingValues = new ContentValues();
+    final ContentValues wantedValues   = new ContentValues();
+
+    existingValues.put(CalendarContract.Events.DTSTART,        "1400000000000");
+    existingValues.put(CalendarContract.Events.EVENT_TIMEZONE, "America/New_York");
+    existingValues.put(CalendarContract.Events.ALL_DAY,        "0");
+
+    wantedValues.put(CalendarContract.Events.DTSTART,        1400000000000L);
+    wantedValues.put(CalendarContract.Events.EVENT_TIMEZONE, "America/New_York");
+
+    LocalEventCollection.handleClearUnsetEventColumns(wantedValues);
+
+    final ContentValues changedValues = LocalRowDiff.getChangedValues(
+        existingValues,
+        wantedValues,
+        wantedValues.keySet().toArray(new String[wantedValues.size()])
+    );
+
+    assertEquals(0, changedValues.size());
+  }
+
+}
@@ -30,6 +30,7 @@ import org.anhonesteffort.flock.crypto.MasterCipher;
 import org.anhonesteffort.flock.sync.AndroidDavClient;
 import org.anhonesteffort.flock.sync.OwsWebDav;
 import org.anhonesteffort.flock.sync.addressbook.HidingCardDavStore;
+import org.anhonesteffort.flock.sync.addressbook.PhotoCache;
 import org.anhonesteffort.flock.sync.calendar.HidingCalDavStore;
 import org.anhonesteffort.flock.sync.key.DavKeyStore;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
@@ -201,16 +202,21 @@ public class DavAccountHelper {
                                                          MasterCipher masterCipher)
     throws IOException
   {
+    HidingCardDavStore store;
+
     if (isUsingOurServers(account))
-      return new HidingCardDavStore(masterCipher,
-                                    getAndroidDavClient(context, account),
-                                    Optional.of(getOwsCurrentUserPrincipal(account)),
-                                    Optional.of(getOwsAddressbookHomeSet(account)));
-
-    return new HidingCardDavStore(masterCipher,
-                                  getAndroidDavClient(context, account),
-                                  Optional.<String>absent(),
-                                  Optional.<String>absent());
+      store = new HidingCardDavStore(masterCipher,
+                                     getAndroidDavClient(context, account),
+                                     Optional.of(getOwsCurrentUserPrincipal(account)),
+                                     Optional.of(getOwsAddressbookHomeSet(account)));
+    else
+      store = new HidingCardDavStore(masterCipher,
+                                     getAndroidDavClient(context, account),
+                                     Optional.<String>absent(),
+                                     Optional.<String>absent());
+
+    store.setPhotoCache(PhotoCache.getInstance(context));
+    return store;
   }
 
   public static HidingCalDavStore getHidingCalDavStore(Context      context,
@@ -27,6 +27,7 @@ import android.content.ContentProviderClient;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.HandlerThread;
@@ -34,21 +35,24 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.StatFs;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
-import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.data.FoldingWriter;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Property;
-import net.fortuna.ical4j.model.ValidationException;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.Name;
 import net.fortuna.ical4j.model.property.Version;
+import net.fortuna.ical4j.util.Strings;
 
 import org.anhonesteffort.flock.auth.DavAccount;
 import org.anhonesteffort.flock.sync.AbstractLocalComponentCollection;
 import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
+import org.anhonesteffort.flock.sync.LocalComponentLoader;
 import org.anhonesteffort.flock.sync.addressbook.AddressbookSyncScheduler;
 import org.anhonesteffort.flock.sync.addressbook.ContactFactory;
 import org.anhonesteffort.flock.sync.addressbook.LocalAddressbookStore;
@@ -57,16 +61,28 @@ import org.anhonesteffort.flock.sync.calendar.CalendarsSyncScheduler;
 import org.anhonesteffort.flock.sync.calendar.LocalCalendarStore;
 import org.anhonesteffort.flock.sync.calendar.LocalEventCollection;
 import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ezvcard.Ezvcard;
 import ezvcard.VCard;
 import ezvcard.VCardVersion;
-import ezvcard.io.text.VCardWriter;
 import ezvcard.property.Photo;
 import ezvcard.property.Uid;
 
@@ -79,12 +95,22 @@ public class ExportService extends Service {
 
   private static final int NOTIFY_ID = 1025;
 
+  private static final int  WRITE_BUFFER_SIZE            = 64 * 1024;
+  private static final int  SIZE_SAMPLE_COUNT            = 16;
+  private static final long DEFAULT_COMPONENT_SIZE_BYTES = 2048;
+  private static final long SIZE_RESERVE_BYTES           = 1024 * 1024;
+  private static final long PROGRESS_UPDATE_INTERVAL_MS  = 500;
+
   private ServiceHandler             serviceHandler;
   private NotificationManager        notifyManager;
   private NotificationCompat.Builder notificationBuilder;
 
-  private int     countFailedContactExports = 0;
-  private int     countFailedEventExports   = 0;
+  private final AtomicInteger countFailedContactExports = new AtomicInteger(0);
+  private final AtomicInteger countFailedEventExports   = new AtomicInteger(0);
+  private final AtomicInteger countExported             = new AtomicInteger(0);
+
+  private int  countToExport      = 0;
+  private long lastProgressUpdate = 0;
 
   private enum EndState {
     SUCCESS,           PROMPT_LOGIN,
@@ -93,13 +119,29 @@ public class ExportService extends Service {
   private EndState endState = null;
 
   private void handleContactExportFailed() {
-    countFailedContactExports++;
-    Log.d(TAG, "contact export failed, counter: " + countFailedContactExports);
+    Log.d(TAG, "contact export failed, counter: " + countFailedContactExports.incrementAndGet());
   }
 
   private void handleEventExportFailed() {
-    countFailedEventExports++;
-    Log.d(TAG, "event export failed, counter: " + countFailedEventExports);
+    Log.d(TAG, "event export failed, counter: " + countFailedEventExports.incrementAndGet());
+  }
+
+  /*
+  called from every export thread, the notification is only rebuilt a couple times a second
+  because posting one per component costs more than writing the component.
+   */
+  private void handleComponentProcessed() {
+    int  exported = countExported.incrementAndGet();
+    long now      = SystemClock.elapsedRealtime();
+
+    synchronized (notificationBuilder) {
+      if (exported < countToExport && (now - lastProgressUpdate) < PROGRESS_UPDATE_INTERVAL_MS)
+        return;
+
+      lastProgressUpdate = now;
+      notificationBuilder.setProgress(countToExport, exported, false);
+      notifyManager.notify(NOTIFY_ID, notificationBuilder.build());
+    }
   }
 
   private void handleInitializeNotification() {
@@ -167,114 +209,349 @@ public class ExportService extends Service {
     return files;
   }
 
-  private void simulateExport(AbstractLocalComponentCollection<?> collection, File output)
-      throws IOException, RemoteException
+  private List<List<Long>> getComponentIds(List<AbstractLocalComponentCollection<?>> collections)
+      throws RemoteException
   {
-    FileOutputStream stream = new FileOutputStream(output, false);
+    List<List<Long>> componentIds = new LinkedList<>();
 
-    try {
+    for (AbstractLocalComponentCollection<?> collection : collections)
+      componentIds.add(new ArrayList<>(collection.getComponentIds()));
 
-      for (int i = 0; i < collection.getComponentIds().size(); i++)
-        stream.write(new byte[512]);
+    return componentIds;
+  }
 
-    } finally {
-      stream.close();
-    }
+  private static Optional<String> getExportText(VCard vCard) {
+    vCard.removeProperties(Uid.class);
+    vCard.removeProperties(Photo.class);
+    vCard.removeExtendedProperty(ContactFactory.PROPERTY_STARRED);
+
+    return Optional.of(Ezvcard.write(vCard).version(VCardVersion.V3_0).go());
   }
 
-  private boolean isStorageSpaceAvailable(List<AbstractLocalComponentCollection<?>> collections, List<File> files)
-      throws RemoteException
-  {
-    if (files.size() != collections.size()) {
-      Log.w(TAG, "collection count and output file count differ");
-      return false;
+  private static Optional<String> getExportText(Calendar calendar) {
+    VEvent vEvent = (VEvent) calendar.getComponent(VEvent.VEVENT);
+    if (vEvent == null) {
+      Log.w(TAG, "couldn't parse VEVENT from local calendar component");
+      return Optional.absent();
     }
 
-    try {
+    if (vEvent.getProperty(Property.ORGANIZER) != null)
+      vEvent.getProperties().remove(vEvent.getProperty(Property.ORGANIZER));
 
-      for (int i = 0; i < collections.size(); i++)
-        simulateExport(collections.get(i), files.get(i));
-      return true;
+    return Optional.of(vEvent.toString());
+  }
 
-    } catch (IOException e) {
-      Log.w(TAG, "error during export simulation, not enough space?", e);
-      return false;
+  /*
+  streams one collection to one file a loader window at a time, nothing more than the
+  window and the component being written is ever held in memory.
+   */
+  private abstract class CollectionExport<T> implements Callable<Void> {
+
+    protected final AbstractLocalComponentCollection<T> collection;
+    protected final List<Long>                          componentIds;
+    protected final File                                output;
+
+    protected CollectionExport(AbstractLocalComponentCollection<T> collection,
+                               List<Long>                          componentIds,
+                               File                                output)
+    {
+      this.collection   = collection;
+      this.componentIds = componentIds;
+      this.output       = output;
     }
-  }
 
-  private void handleExportContacts(LocalContactCollection addressbook, File output)
-      throws RemoteException, IOException
-  {
-    VCardWriter vCardWriter = new VCardWriter(output, false, VCardVersion.V3_0);
+    protected abstract Optional<String> getExportText(T component);
 
-    try {
-      for (Long contactId : addressbook.getComponentIds()) {
+    protected abstract void handleComponentFailed();
+
+    protected abstract Writer openWriter(Writer output) throws IOException;
+
+    protected abstract void writeHeader(Writer writer) throws IOException, RemoteException;
+
+    protected abstract void writeComponent(Writer writer, String componentText) throws IOException;
+
+    protected abstract void writeFooter(Writer writer) throws IOException;
+
+    private List<Long> getSampleIds() {
+      List<Long> sampleIds   = new LinkedList<>();
+      int        sampleCount = Math.min(SIZE_SAMPLE_COUNT, componentIds.size());
+
+      for (int i = 0; i < sampleCount; i++)
+        sampleIds.add(componentIds.get((int) ((long) i * componentIds.size() / sampleCount)));
+
+      return sampleIds;
+    }
+
+    /*
+    builds a handful of components spread across the collection and scales their average
+    serialized size by the component count, a sample of zero falls back to a fixed guess.
+     */
+    public long estimateSize() throws RemoteException {
+      List<Long>              sampleIds    = getSampleIds();
+      LocalComponentLoader<T> loader       = collection.getComponentLoader(sampleIds);
+      long                    sampledBytes = 0;
+      int                     sampledCount = 0;
+
+      for (Long sampleId : sampleIds) {
         try {
 
-          Optional<VCard> vCard = addressbook.getComponent(contactId);
-          if (vCard.isPresent()) {
-            vCard.get().removeProperties(Uid.class);
-            vCard.get().removeProperties(Photo.class);
-            vCard.get().removeExtendedProperty(ContactFactory.PROPERTY_STARRED);
-            vCardWriter.write(vCard.get());
-          } else {
-            Log.w(TAG, "couldn't find " + contactId + " in addressbook");
+          Optional<ComponentETagPair<T>> component = loader.getComponent(sampleId);
+          if (!component.isPresent())
+            continue;
+
+          Optional<String> componentText = getExportText(component.get().getComponent());
+          if (componentText.isPresent()) {
+            sampledBytes += componentText.get().getBytes("UTF-8").length;
+            sampledCount++;
           }
 
         } catch (InvalidLocalComponentException e) {
-          handleContactExportFailed();
+          Log.w(TAG, "unable to sample size of " + sampleId + " in " + collection.getPath());
+        } catch (UnsupportedEncodingException e) {
+          throw new AssertionError("UTF-8 must be supported");
         }
       }
-    } finally {
-      vCardWriter.close();
+
+      long averageBytes = (sampledCount > 0) ? (sampledBytes / sampledCount) : DEFAULT_COMPONENT_SIZE_BYTES;
+      return (averageBytes * componentIds.size() * 3) / 2;
     }
-  }
 
-  private void handleExportCalendars(List<LocalEventCollection> eventCollections, List<File> outputs)
-      throws ValidationException, RemoteException, IOException
-  {
-    CalendarOutputter calendarWriter = new CalendarOutputter(false);
-    for (int i = 0; i < eventCollections.size(); i++) {
-      LocalEventCollection eventCollection = eventCollections.get(i);
-      List<Long>           eventIds        = eventCollection.getComponentIds();
-      Calendar             calendar        = new Calendar();
-      FileOutputStream     output          = new FileOutputStream(outputs.get(i), false);
-
-      Optional<String> displayName = eventCollection.getDisplayName();
-      if (displayName.isPresent() && !displayName.get().isEmpty())
-        calendar.getProperties().add(new Name(displayName.get()));
+    @Override
+    public Void call() throws RemoteException, IOException {
+      LocalComponentLoader<T> loader       = collection.getComponentLoader(componentIds);
+      FileOutputStream        outputStream = new FileOutputStream(output, false);
 
       try {
 
-        for (Long eventId : eventIds) {
+        Writer writer = openWriter(new BufferedWriter(
+            new OutputStreamWriter(outputStream, "UTF-8"), WRITE_BUFFER_SIZE
+        ));
+
+        writeHeader(writer);
+
+        for (Long componentId : componentIds) {
           try {
 
-            Optional<Calendar> event = eventCollection.getComponent(eventId);
-            if (event.isPresent()) {
-              VEvent vEvent = (VEvent) event.get().getComponent(VEvent.VEVENT);
-              if (vEvent != null) {
-                if (vEvent.getProperty(Property.ORGANIZER) != null)
-                  vEvent.getProperties().remove(vEvent.getProperty(Property.ORGANIZER));
-                calendar.getComponents().add(vEvent);
-              }
-              else
-                Log.w(TAG, "couldn't parse VEVENT from local calendar component");
+            Optional<ComponentETagPair<T>> component = loader.getComponent(componentId);
+            if (component.isPresent()) {
+              Optional<String> componentText = getExportText(component.get().getComponent());
+              if (componentText.isPresent())
+                writeComponent(writer, componentText.get());
             } else {
-              Log.w(TAG, "couldn't find " + eventId + " in calendar " + eventCollection.getPath());
+              Log.w(TAG, "couldn't find " + componentId + " in " + collection.getPath());
             }
 
           } catch (InvalidLocalComponentException e) {
-            handleEventExportFailed();
+            handleComponentFailed();
           }
+
+          handleComponentProcessed();
         }
 
-        calendar.getProperties().add(Version.VERSION_2_0);
-        calendarWriter.output(calendar, output);
+        writeFooter(writer);
+        writer.close();
 
       } finally {
-        output.close();
+        outputStream.close();
+      }
+
+      return null;
+    }
+  }
+
+  private class ContactsExport extends CollectionExport<VCard> {
+
+    public ContactsExport(LocalContactCollection addressbook, List<Long> contactIds, File output) {
+      super(addressbook, contactIds, output);
+    }
+
+    @Override
+    protected Optional<String> getExportText(VCard vCard) {
+      return ExportService.getExportText(vCard);
+    }
+
+    @Override
+    protected void handleComponentFailed() {
+      handleContactExportFailed();
+    }
+
+    @Override
+    protected Writer openWriter(Writer output) {
+      return output;
+    }
+
+    @Override
+    protected void writeHeader(Writer writer) {
+
+    }
+
+    @Override
+    protected void writeComponent(Writer writer, String componentText) throws IOException {
+      writer.write(componentText);
+    }
+
+    @Override
+    protected void writeFooter(Writer writer) {
+
+    }
+  }
+
+  private class CalendarExport extends CollectionExport<Calendar> {
+
+    public CalendarExport(LocalEventCollection calendar, List<Long> eventIds, File output) {
+      super(calendar, eventIds, output);
+    }
+
+    @Override
+    protected Optional<String> getExportText(Calendar calendar) {
+      return ExportService.getExportText(calendar);
+    }
+
+    @Override
+    protected void handleComponentFailed() {
+      handleEventExportFailed();
+    }
+
+    @Override
+    protected Writer openWriter(Writer output) {
+      return new FoldingWriter(output);
+    }
+
+    @Override
+    protected void writeHeader(Writer writer) throws IOException, RemoteException {
+      writer.write(Calendar.BEGIN + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
+      writer.write(Version.VERSION_2_0.toString());
+
+      Optional<String> displayName = ((LocalEventCollection) collection).getDisplayName();
+      if (displayName.isPresent() && !displayName.get().isEmpty())
+        writeComponent(writer, new Name(displayName.get()).toString());
+    }
+
+    /*
+    FilterWriter passes write(String) straight through to the wrapped writer, only
+    char arrays go through FoldingWriter.
+     */
+    @Override
+    protected void writeComponent(Writer writer, String componentText) throws IOException {
+      writer.write(componentText.toCharArray());
+    }
+
+    @Override
+    protected void writeFooter(Writer writer) throws IOException {
+      writer.write(Calendar.END + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
+    }
+  }
+
+  private static class SequentialExport implements Callable<Void> {
+
+    private final List<CollectionExport<?>> exports;
+
+    public SequentialExport(List<CollectionExport<?>> exports) {
+      this.exports = exports;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      for (CollectionExport<?> export : exports)
+        export.call();
+
+      return null;
+    }
+  }
+
+  private List<CollectionExport<?>> getExports(List<AbstractLocalComponentCollection<?>> collections,
+                                               List<List<Long>>                          componentIds,
+                                               List<File>                                files)
+  {
+    List<CollectionExport<?>> exports = new LinkedList<>();
+
+    for (int i = 0; i < collections.size(); i++) {
+      if (collections.get(i) instanceof LocalContactCollection)
+        exports.add(new ContactsExport((LocalContactCollection) collections.get(i), componentIds.get(i), files.get(i)));
+      else
+        exports.add(new CalendarExport((LocalEventCollection) collections.get(i), componentIds.get(i), files.get(i)));
+    }
+
+    return exports;
+  }
+
+  @SuppressWarnings("deprecation")
+  private long getAvailableBytes(File directory) {
+    StatFs statFs = new StatFs(directory.getPath());
+
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+      return statFs.getAvailableBytes();
+
+    return (long) statFs.getAvailableBlocks() * (long) statFs.getBlockSize();
+  }
+
+  /*
+  output files are truncated before they are written so space they already take up
+  counts as available.
+   */
+  private boolean isStorageSpaceAvailable(List<CollectionExport<?>> exports) throws RemoteException {
+    long availableBytes = getAvailableBytes(Environment.getExternalStorageDirectory());
+    long requiredBytes  = SIZE_RESERVE_BYTES;
+
+    for (CollectionExport<?> export : exports) {
+      availableBytes += export.output.length();
+      requiredBytes  += export.estimateSize();
+    }
+
+    Log.d(TAG, "export requires an estimated " + requiredBytes + " of " + availableBytes + " available bytes");
+    return requiredBytes <= availableBytes;
+  }
+
+  /*
+  a ContentProviderClient should not be shared between threads so each provider gets one
+  thread, contacts are exported alongside calendars and calendars are exported in order.
+   */
+  private void handleExportCollections(List<CollectionExport<?>> exports)
+      throws RemoteException, IOException, InterruptedException
+  {
+    List<CollectionExport<?>> contactExports  = new LinkedList<>();
+    List<CollectionExport<?>> calendarExports = new LinkedList<>();
+
+    for (CollectionExport<?> export : exports) {
+      if (export instanceof ContactsExport)
+        contactExports.add(export);
+      else
+        calendarExports.add(export);
+    }
+
+    ExecutorService    executor = Executors.newFixedThreadPool(2);
+    List<Future<Void>> futures  = new LinkedList<>();
+    Throwable          failure  = null;
+
+    try {
+
+      futures.add(executor.submit(new SequentialExport(contactExports)));
+      futures.add(executor.submit(new SequentialExport(calendarExports)));
+
+      for (Future<Void> future : futures) {
+        try {
+
+          future.get();
+
+        } catch (ExecutionException e) {
+          Log.e(TAG, "collection export failed", e.getCause());
+          if (failure == null)
+            failure = e.getCause();
+        }
       }
+
+    } finally {
+      executor.shutdownNow();
     }
+
+    if (failure instanceof RemoteException)
+      throw (RemoteException) failure;
+    else if (failure instanceof IOException)
+      throw (IOException) failure;
+    else if (failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    else if (failure != null)
+      throw new RuntimeException(failure);
   }
 
   private void handleIndexFilesWithMediaScanner(List<File> files) {
@@ -352,11 +629,20 @@ public class ExportService extends Service {
           collections.addAll(calendars);
           List<File> outputFiles = createFilesForCollections(collections);
 
-          if (isStorageSpaceAvailable(collections, outputFiles)) {
-            File contactsFile = outputFiles.remove(0);
-            handleExportContacts(addressbook.get(), contactsFile);
-            handleExportCalendars(calendars, outputFiles);
-            outputFiles.add(contactsFile);
+          if (outputFiles.size() != collections.size()) {
+            Log.w(TAG, "collection count and output file count differ");
+            handleExportComplete(EndState.PROMPT_MAKE_SPACE);
+            return;
+          }
+
+          List<List<Long>>          componentIds = getComponentIds(collections);
+          List<CollectionExport<?>> exports      = getExports(collections, componentIds, outputFiles);
+
+          for (List<Long> ids : componentIds)
+            countToExport += ids.size();
+
+          if (isStorageSpaceAvailable(exports)) {
+            handleExportCollections(exports);
             handleIndexFilesWithMediaScanner(outputFiles);
             handleExportComplete(EndState.SUCCESS);
             return;
@@ -365,12 +651,12 @@ public class ExportService extends Service {
             return;
           }
 
-        } catch (ValidationException e) {
-          Log.e(TAG, "WTF ical4j", e);
         } catch (RemoteException e) {
           Log.e(TAG, "why android?", e);
         } catch (IOException e) {
           Log.e(TAG, "why android?", e);
+        } catch (InterruptedException e) {
+          Log.e(TAG, "interrupted while exporting", e);
         }
       } else {
         handleExportComplete(EndState.PROMPT_LOGIN);
@@ -406,7 +692,7 @@ public class ExportService extends Service {
       return;
     }
 
-    if (countFailedContactExports == 0 && countFailedEventExports == 0) {
+    if (countFailedContactExports.get() == 0 && countFailedEventExports.get() == 0) {
       notificationBuilder
           .setProgress(0, 0, false)
           .setContentTitle(getString(R.string.export_complete))
@@ -417,8 +703,8 @@ public class ExportService extends Service {
           .setContentTitle(getString(R.string.export_complete))
           .setContentText(getString(
               R.string.failed_to_copy_contacts_and_events,
-              countFailedContactExports,
-              countFailedEventExports
+              countFailedContactExports.get(),
+              countFailedEventExports.get()
           ));
     }
 
@@ -52,6 +52,7 @@ public class PreferencesActivity extends PreferenceActivity
   public static final String KEY_PREF_SYNC_ON_CONTENT_CHANGE = "pref_sync_on_content_change";
   public static final String KEY_PREF_SYNC_NOW               = "pref_sync_now";
   public static final String KEY_PREF_DEFAULT_CALENDAR_COLOR = "pref_default_calendar_color";
+  public static final String KEY_PREF_COMPRESS_HIDDEN_DATA   = "pref_compress_hidden_data";
 
   public static final String KEY_PREF_CATEGORY_CONTACTS = "pref_category_contacts";
   public static final String KEY_PREF_ADDRESSBOOKS      = "pref_addressbooks";
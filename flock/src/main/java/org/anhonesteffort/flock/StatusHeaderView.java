@@ -21,6 +21,7 @@ package org.anhonesteffort.flock;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
@@ -33,6 +34,7 @@ import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.auth.DavAccount;
 import org.anhonesteffort.flock.crypto.InvalidCipherVersionException;
 import org.anhonesteffort.flock.crypto.KeyHelper;
+import org.anhonesteffort.flock.crypto.KeyStore;
 import org.anhonesteffort.flock.registration.RegistrationApi;
 import org.anhonesteffort.flock.registration.RegistrationApiException;
 import org.anhonesteffort.flock.sync.addressbook.AddressbookSyncScheduler;
@@ -97,6 +99,8 @@ public class StatusHeaderView extends LinearLayout {
 
     if (intervalTimer != null)
       intervalTimer.cancel();
+
+    KeyStore.unregisterChangeListener(getContext(), keyStoreListener);
   }
 
   private void handleUpdateTimeLastSync() {
@@ -362,6 +366,16 @@ public class StatusHeaderView extends LinearLayout {
     }
   };
 
+  private final SharedPreferences.OnSharedPreferenceChangeListener keyStoreListener =
+      new SharedPreferences.OnSharedPreferenceChangeListener()
+  {
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+      if (KeyStore.isMasterPassphraseValidityKey(key))
+        uiHandler.post(refreshCipherPassphraseRunnable);
+    }
+  };
+
   public void handleStartPerpetualRefresh() {
     account       = DavAccountHelper.getAccount(getContext());
     intervalTimer = new Timer();
@@ -384,12 +398,6 @@ public class StatusHeaderView extends LinearLayout {
         uiHandler.post(refreshCardRunnable);
       }
     };
-    TimerTask passphraseTask = new TimerTask() {
-      @Override
-      public void run() {
-        uiHandler.post(refreshCipherPassphraseRunnable);
-      }
-    };
 
     intervalTimer.schedule(uiTask, 0, 2000);
 
@@ -398,8 +406,10 @@ public class StatusHeaderView extends LinearLayout {
         intervalTimer.schedule(subscriptionTask, 0, 20000);
         intervalTimer.schedule(cardTask,         0, 20000);
       }
-      else
-        intervalTimer.schedule(passphraseTask, 0, 10000);
+      else {
+        KeyStore.registerChangeListener(getContext(), keyStoreListener);
+        uiHandler.post(refreshCipherPassphraseRunnable);
+      }
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+
+import org.anhonesteffort.flock.metrics.SyncMetricsLog;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * rhodey
+ */
+public class SyncMetricsActivity extends Activity {
+
+  private static final String TAG = "org.anhonesteffort.flock.SyncMetricsActivity";
+
+  private JSONArray runs = new JSONArray();
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+
+    setContentView(R.layout.sync_metrics_activity);
+    getActionBar().setDisplayHomeAsUpEnabled(true);
+    getActionBar().setTitle(R.string.preference_title_sync_metrics);
+
+    initButtons();
+  }
+
+  @Override
+  public void onResume() {
+    super.onResume();
+    handleUpdateMetrics();
+  }
+
+  private void initButtons() {
+    findViewById(R.id.button_clear).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View v) {
+        SyncMetricsLog.clear(getBaseContext());
+        handleUpdateMetrics();
+      }
+    });
+
+    findViewById(R.id.button_export).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View v) {
+        Intent sendIntent = new Intent(Intent.ACTION_SEND);
+        sendIntent.setType("application/json");
+        sendIntent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.export_sync_metrics));
+        sendIntent.putExtra(Intent.EXTRA_TEXT, runs.toString());
+
+        startActivity(Intent.createChooser(sendIntent, getString(R.string.export_sync_metrics)));
+      }
+    });
+  }
+
+  /*
+  newest run first, that is usually the one somebody is asking about.
+   */
+  private void handleUpdateMetrics() {
+    TextView metricsView = (TextView) findViewById(R.id.text_sync_metrics);
+    runs = SyncMetricsLog.getRuns(getBaseContext());
+
+    findViewById(R.id.button_clear).setEnabled(runs.length() > 0);
+    findViewById(R.id.button_export).setEnabled(runs.length() > 0);
+
+    if (runs.length() == 0) {
+      metricsView.setText(R.string.no_sync_metrics_recorded);
+      return;
+    }
+
+    StringBuilder text = new StringBuilder();
+
+    try {
+
+      for (int i = runs.length() - 1; i >= 0; i--)
+        text.append(runs.getJSONObject(i).toString(2)).append("\n\n");
+
+    } catch (JSONException e) {
+      Log.e(TAG, "caught exception while formatting sync metrics", e);
+    }
+
+    metricsView.setText(text.toString());
+  }
+
+  @Override
+  public boolean onOptionsItemSelected(MenuItem item) {
+    switch (item.getItemId()) {
+      case android.R.id.home:
+        finish();
+        break;
+    }
+
+    return false;
+  }
+
+}
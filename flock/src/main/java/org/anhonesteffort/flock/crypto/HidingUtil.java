@@ -23,7 +23,6 @@ import org.anhonesteffort.flock.util.Util;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 
 /**
  * rhodey
@@ -65,9 +64,9 @@ public class HidingUtil {
     if (!hasEncryptedDataPrefix(data))
       return data;
 
-    byte[] encodedIvCiphertextAndMac = Arrays.copyOfRange(data, PREFIX_ENCRYPTED_DATA.length, data.length);
-
-    return masterCipher.decodeAndDecrypt(encodedIvCiphertextAndMac);
+    return masterCipher.decodeAndDecrypt(data,
+                                         PREFIX_ENCRYPTED_DATA.length,
+                                         data.length - PREFIX_ENCRYPTED_DATA.length);
   }
 
   public static String decodeAndDecryptIfNecessary(MasterCipher masterCipher, String data)
@@ -20,14 +20,18 @@
 package org.anhonesteffort.flock.crypto;
 
 import android.content.Context;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
+import org.anhonesteffort.flock.PreferencesActivity;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.util.Base64;
 import org.anhonesteffort.flock.util.Util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -39,6 +43,10 @@ public class KeyHelper {
 
   private static final String TAG = "org.anhonesteffort.flock.crypto.KeyHelper";
 
+  private static final Object  validityLock         = new Object();
+  private static       byte[]  validityFingerprint  = null;
+  private static       boolean validityCachedResult = false;
+
   public static void generateAndSaveSaltAndKeyMaterial(Context context)
       throws IOException, GeneralSecurityException
   {
@@ -69,7 +77,15 @@ public class KeyHelper {
     SecretKey cipherKey = new SecretKeySpec(cipherKeyBytes.get(), "AES");
     SecretKey macKey    = new SecretKeySpec(macKeyBytes.get(),    "SHA256");
 
-    return Optional.of(new MasterCipher(cipherKey, macKey));
+    return Optional.of(new MasterCipher(cipherKey, macKey, getWriteCipherVersion(context)));
+  }
+
+  /* key material is always written with CURRENT_CIPHER_VERSION so every client can import it. */
+  private static byte getWriteCipherVersion(Context context) {
+    boolean compress = PreferenceManager.getDefaultSharedPreferences(context)
+                                        .getBoolean(PreferencesActivity.KEY_PREF_COMPRESS_HIDDEN_DATA, false);
+
+    return compress ? MasterCipher.DEFLATE_CIPHER_VERSION : MasterCipher.CURRENT_CIPHER_VERSION;
   }
 
   public static Optional<String> buildEncodedSalt(Context context) throws IOException {
@@ -139,6 +155,34 @@ public class KeyHelper {
     KeyStore.saveMacKey(              context, plaintextMacKey);
   }
 
+  static void invalidateMasterPassphraseValidity() {
+    synchronized (validityLock) {
+      validityFingerprint = null;
+    }
+  }
+
+  private static byte[] buildValidityFingerprint(byte[] salt,
+                                                 String encryptedKeyMaterial,
+                                                 String masterPassphrase)
+      throws GeneralSecurityException
+  {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    byte[][]      fields = new byte[][] {
+        salt, encryptedKeyMaterial.getBytes(), masterPassphrase.getBytes()
+    };
+
+    for (byte[] field : fields) {
+      digest.update(ByteBuffer.allocate(4).putInt(field.length).array());
+      digest.update(field);
+    }
+
+    return digest.digest();
+  }
+
+  /*
+   * deriving the master keys costs a full PBKDF2 run so the result is cached in
+   * memory against a digest of everything it depends on, never written to disk.
+   */
   public static boolean masterPassphraseIsValid(Context context)
       throws GeneralSecurityException, IOException
   {
@@ -154,20 +198,35 @@ public class KeyHelper {
     if (!salt.isPresent())
       throw new GeneralSecurityException("Where did my salt go! XXX!!!!");
 
+    byte[] fingerprint = buildValidityFingerprint(salt.get(),
+                                                  encryptedKeyMaterial.get(),
+                                                  masterPassphrase.get());
+
+    synchronized (validityLock) {
+      if (validityFingerprint != null && MessageDigest.isEqual(validityFingerprint, fingerprint))
+        return validityCachedResult;
+    }
+
     SecretKey[]  masterKeys      = KeyUtil.getCipherAndMacKeysForPassphrase(salt.get(), masterPassphrase.get());
     SecretKey    masterCipherKey = masterKeys[0];
     SecretKey    masterMacKey    = masterKeys[1];
     MasterCipher masterCipher    = new MasterCipher(masterCipherKey, masterMacKey);
+    boolean      isValid         = true;
 
     try {
 
       masterCipher.decodeAndDecrypt(encryptedKeyMaterial.get());
 
     } catch (InvalidMacException e) {
-      return false;
+      isValid = false;
+    }
+
+    synchronized (validityLock) {
+      validityFingerprint  = fingerprint;
+      validityCachedResult = isValid;
     }
 
-    return true;
+    return isValid;
   }
 
 }
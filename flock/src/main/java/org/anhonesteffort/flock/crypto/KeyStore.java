@@ -67,6 +67,7 @@ public class KeyStore {
   public static void saveKeyMaterialSalt(Context context, byte[] salt) {
     Log.d(TAG, "SAVING SALT FOR KEY MATERIAL...");
     saveBytes(context, KEY_KEY_MATERIAL_SALT, salt);
+    KeyHelper.invalidateMasterPassphraseValidity();
   }
 
   public static Optional<byte[]> getKeyMaterialSalt(Context context) throws IOException {
@@ -76,6 +77,7 @@ public class KeyStore {
   public static void saveMasterPassphrase(Context context, String passphrase) {
     Log.d(TAG, "SAVING MASTER PASSPHRASE...");
     saveString(context, KEY_MASTER_PASSPHRASE, passphrase);
+    KeyHelper.invalidateMasterPassphraseValidity();
   }
 
   public static Optional<String> getMasterPassphrase(Context context) {
@@ -85,6 +87,7 @@ public class KeyStore {
   public static void saveEncryptedKeyMaterial(Context context, String encryptedKeyMaterial) {
     Log.d(TAG, "SAVING ENCRYPTED KEY MATERIAL...");
     saveString(context, KEY_ENCRYPTED_KEY_MATERIAL, encryptedKeyMaterial);
+    KeyHelper.invalidateMasterPassphraseValidity();
   }
 
   public static Optional<String> getEncryptedKeyMaterial(Context context) {
@@ -99,6 +102,28 @@ public class KeyStore {
     settings.edit().remove(KEY_MAC_KEY).apply();
     settings.edit().remove(KEY_KEY_MATERIAL_SALT).apply();
     settings.edit().remove(KEY_MASTER_PASSPHRASE).apply();
+    KeyHelper.invalidateMasterPassphraseValidity();
+  }
+
+  /*
+   * listeners are held weakly by SharedPreferences, callers must keep a reference.
+   */
+  public static void registerChangeListener(Context                                          context,
+                                            SharedPreferences.OnSharedPreferenceChangeListener listener)
+  {
+    getSharedPreferences(context).registerOnSharedPreferenceChangeListener(listener);
+  }
+
+  public static void unregisterChangeListener(Context                                          context,
+                                              SharedPreferences.OnSharedPreferenceChangeListener listener)
+  {
+    getSharedPreferences(context).unregisterOnSharedPreferenceChangeListener(listener);
+  }
+
+  public static boolean isMasterPassphraseValidityKey(String key) {
+    return KEY_MASTER_PASSPHRASE.equals(key)      ||
+           KEY_KEY_MATERIAL_SALT.equals(key)      ||
+           KEY_ENCRYPTED_KEY_MATERIAL.equals(key);
   }
 
   private static void saveBytes(Context context, String key, byte[] value) {
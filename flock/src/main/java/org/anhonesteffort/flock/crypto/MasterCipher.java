@@ -19,13 +19,17 @@
 
 package org.anhonesteffort.flock.crypto;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
 import org.anhonesteffort.flock.util.Base64;
 import org.anhonesteffort.flock.util.Util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
@@ -37,31 +41,231 @@ import javax.crypto.spec.IvParameterSpec;
 public class MasterCipher {
 
   public    static final byte CURRENT_CIPHER_VERSION = 0x01;
+  public    static final byte DEFLATE_CIPHER_VERSION = 0x02;
   protected static final int  MAC_LENGTH_BYTES       = 32;
   protected static final int  IV_LENGTH_BYTES        = 16;
+  protected static final int  HEADER_LENGTH_BYTES    = 1 + IV_LENGTH_BYTES;
+
+  protected static final String CIPHER_TRANSFORMATION = "AES/CBC/PKCS5PADDING";
+  protected static final String MAC_ALGORITHM         = "HmacSHA256";
+
+  private static final int MAX_RETAINED_BUFFER_BYTES = 1024 * 64;
+
+  /*
+   a vcard carrying an inline display photo is the largest thing sync ever hides and
+   stays well under a couple of megabytes, anything that inflates past this is hostile.
+   */
+  public static final int MAX_INFLATED_BYTES = 1024 * 1024 * 16;
+
+  private static final ThreadLocal<CipherContext> cipherContext = new ThreadLocal<CipherContext>() {
+    @Override
+    protected CipherContext initialValue() {
+      return new CipherContext();
+    }
+  };
 
   private final SecretKey cipherKey;
   private final SecretKey macKey;
+  private final byte      writeCipherVersion;
 
   protected MasterCipher(SecretKey cipherKey, SecretKey macKey) {
-    this.cipherKey = cipherKey;
-    this.macKey    = macKey;
+    this(cipherKey, macKey, CURRENT_CIPHER_VERSION);
+  }
+
+  /*
+   DEFLATE_CIPHER_VERSION deflates the plaintext before encrypting it, older
+   clients only understand CURRENT_CIPHER_VERSION so writers have to opt in.
+   */
+  protected MasterCipher(SecretKey cipherKey, SecretKey macKey, byte writeCipherVersion) {
+    this.cipherKey          = cipherKey;
+    this.macKey             = macKey;
+    this.writeCipherVersion = writeCipherVersion;
+  }
+
+  public byte getWriteCipherVersion() {
+    return writeCipherVersion;
+  }
+
+  /*
+   Cipher.getInstance() and Mac.getInstance() walk the security providers
+   every time they are called and sync encrypts or decrypts every single
+   component, so each thread keeps one of each and a scratch buffer around.
+   */
+  private static class CipherContext {
+
+    private final byte[] macBuffer = new byte[MAC_LENGTH_BYTES];
+
+    private Cipher    cipher;
+    private Mac       hmac;
+    private SecretKey hmacKey;
+    private byte[]    buffer        = new byte[0];
+    private byte[]    deflateBuffer = new byte[0];
+
+    public Cipher getCipher() throws GeneralSecurityException {
+      if (cipher == null)
+        cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+
+      return cipher;
+    }
+
+    public Mac getMac(SecretKey macKey) throws GeneralSecurityException {
+      if (hmac == null)
+        hmac = Mac.getInstance(MAC_ALGORITHM);
+
+      if (hmacKey != macKey) {
+        hmac.init(macKey);
+        hmacKey = macKey;
+      }
+      else
+        hmac.reset();
+
+      return hmac;
+    }
+
+    public byte[] getMacBuffer() {
+      return macBuffer;
+    }
+
+    public byte[] getBuffer(int length) {
+      if (length > MAX_RETAINED_BUFFER_BYTES)
+        return new byte[length];
+
+      if (buffer.length < length)
+        buffer = new byte[length];
+
+      return buffer;
+    }
+
+    public byte[] getDeflateBuffer(int length) {
+      if (length > MAX_RETAINED_BUFFER_BYTES)
+        return new byte[length];
+
+      if (deflateBuffer.length < length)
+        deflateBuffer = new byte[length];
+
+      return deflateBuffer;
+    }
+  }
+
+  /* returns the deflated length or -1 if deflating would not make the data any smaller. */
+  private static int deflate(byte[] data, byte[] deflated) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    try {
+
+      deflater.setInput(data);
+      deflater.finish();
+
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length >= data.length)
+          return -1;
+
+        length += deflater.deflate(deflated, length, data.length - length);
+      }
+
+      return length;
+
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] deflated) throws GeneralSecurityException {
+    Inflater              inflater = new Inflater(true);
+    ByteArrayOutputStream inflated = new ByteArrayOutputStream((int) Math.min(deflated.length * 4L, MAX_INFLATED_BYTES));
+    byte[]                chunk    = new byte[1024 * 4];
+
+    try {
+
+      /* nowrap inflaters want one extra byte of input past the end of the stream. */
+      inflater.setInput(Util.combine(deflated, new byte[1]));
+
+      while (!inflater.finished()) {
+        int length = inflater.inflate(chunk);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new GeneralSecurityException("deflated plaintext is truncated");
+        if (inflated.size() + length > MAX_INFLATED_BYTES)
+          throw new GeneralSecurityException("deflated plaintext inflates past " + MAX_INFLATED_BYTES + " bytes");
+
+        inflated.write(chunk, 0, length);
+      }
+
+      return inflated.toByteArray();
+
+    } catch (DataFormatException e) {
+      throw new GeneralSecurityException("deflated plaintext is invalid", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  protected static byte[] handleDecompressIfNecessary(byte cipherVersion, byte[] plaintext)
+      throws GeneralSecurityException
+  {
+    if (cipherVersion == DEFLATE_CIPHER_VERSION)
+      return inflate(plaintext);
+
+    return plaintext;
+  }
+
+  protected static boolean isSupportedCipherVersion(byte cipherVersion) {
+    return cipherVersion == CURRENT_CIPHER_VERSION || cipherVersion == DEFLATE_CIPHER_VERSION;
   }
 
   public byte[] encryptAndEncode(byte[] data)
       throws IOException, GeneralSecurityException
   {
-    Cipher    encryptingCipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+    long startNanos = System.nanoTime();
+
+    try {
+
+      return handleEncryptAndEncode(data);
+
+    } finally {
+      SyncMetrics.handleCrypto(System.nanoTime() - startNanos);
+    }
+  }
+
+  private byte[] handleEncryptAndEncode(byte[] data)
+      throws IOException, GeneralSecurityException
+  {
+    CipherContext context          = cipherContext.get();
+    Cipher        encryptingCipher = context.getCipher();
+    Mac           hmac             = context.getMac(macKey);
+
+    byte   cipherVersion   = CURRENT_CIPHER_VERSION;
+    byte[] plaintext       = data;
+    int    plaintextLength = data.length;
+
+    if (writeCipherVersion == DEFLATE_CIPHER_VERSION) {
+      byte[] deflated       = context.getDeflateBuffer(data.length);
+      int    deflatedLength = deflate(data, deflated);
+
+      if (deflatedLength != -1) {
+        cipherVersion   = DEFLATE_CIPHER_VERSION;
+        plaintext       = deflated;
+        plaintextLength = deflatedLength;
+      }
+    }
+
     encryptingCipher.init(Cipher.ENCRYPT_MODE, cipherKey);
 
-    Mac       hmac   = Mac.getInstance("HmacSHA256");
-    hmac.init(macKey);
+    byte[] iv     = encryptingCipher.getIV();
+    byte[] buffer = context.getBuffer(HEADER_LENGTH_BYTES +
+                                      encryptingCipher.getOutputSize(plaintextLength) +
+                                      MAC_LENGTH_BYTES);
 
-    byte[] iv         = encryptingCipher.getIV();
-    byte[] ciphertext = encryptingCipher.doFinal(data);
-    byte[] mac        = hmac.doFinal(Util.combine(new byte[] {CURRENT_CIPHER_VERSION}, iv, ciphertext));
+    buffer[0] = cipherVersion;
+    System.arraycopy(iv, 0, buffer, 1, IV_LENGTH_BYTES);
 
-    return Base64.encodeBytesToBytes(Util.combine(new byte[] {CURRENT_CIPHER_VERSION}, iv, ciphertext, mac));
+    int ciphertextLength = encryptingCipher.doFinal(plaintext, 0, plaintextLength, buffer, HEADER_LENGTH_BYTES);
+    int macOffset        = HEADER_LENGTH_BYTES + ciphertextLength;
+
+    hmac.update(buffer, 0, macOffset);
+    hmac.doFinal(buffer, macOffset);
+
+    return Base64.encodeBytesToBytes(buffer, 0, macOffset + MAC_LENGTH_BYTES, Base64.NO_OPTIONS);
   }
 
   public String encryptAndEncode(String data)
@@ -73,32 +277,50 @@ public class MasterCipher {
   public byte[] decodeAndDecrypt(byte[] encodedVersionIvCiphertextAndMac)
       throws InvalidMacException, IOException, GeneralSecurityException
   {
-    byte[] versionIvCiphertextAndMac = Base64.decode(encodedVersionIvCiphertextAndMac);
-    if (versionIvCiphertextAndMac.length <= (1 + IV_LENGTH_BYTES + MAC_LENGTH_BYTES))
+    return decodeAndDecrypt(encodedVersionIvCiphertextAndMac, 0, encodedVersionIvCiphertextAndMac.length);
+  }
+
+  public byte[] decodeAndDecrypt(byte[] encodedVersionIvCiphertextAndMac, int offset, int length)
+      throws InvalidMacException, IOException, GeneralSecurityException
+  {
+    long startNanos = System.nanoTime();
+
+    try {
+
+      return handleDecodeAndDecrypt(encodedVersionIvCiphertextAndMac, offset, length);
+
+    } finally {
+      SyncMetrics.handleCrypto(System.nanoTime() - startNanos);
+    }
+  }
+
+  private byte[] handleDecodeAndDecrypt(byte[] encodedVersionIvCiphertextAndMac, int offset, int length)
+      throws InvalidMacException, IOException, GeneralSecurityException
+  {
+    CipherContext context       = cipherContext.get();
+    byte[]        buffer        = context.getBuffer(length * 3 / 4);
+    int           decodedLength = Base64.decode(encodedVersionIvCiphertextAndMac, offset, length,
+                                                buffer, 0, Base64.NO_OPTIONS);
+
+    if (decodedLength <= (HEADER_LENGTH_BYTES + MAC_LENGTH_BYTES))
       throw new GeneralSecurityException("invalid length on decoded cipherVersion, iv, ciphertext and mac");
 
-    byte version = versionIvCiphertextAndMac[0];
-    if (version != CURRENT_CIPHER_VERSION)
+    byte version = buffer[0];
+    if (!isSupportedCipherVersion(version))
       throw new InvalidCipherVersionException("invalid cipher cipherVersion >> " + version);
 
-    byte[] iv         = Arrays.copyOfRange(versionIvCiphertextAndMac, 1, 1 + IV_LENGTH_BYTES);
-    byte[] ciphertext = Arrays.copyOfRange(versionIvCiphertextAndMac,
-                                           1 + IV_LENGTH_BYTES,
-                                           versionIvCiphertextAndMac.length - MAC_LENGTH_BYTES);
-    byte[] mac        = Arrays.copyOfRange(versionIvCiphertextAndMac,
-                                           versionIvCiphertextAndMac.length - MAC_LENGTH_BYTES,
-                                           versionIvCiphertextAndMac.length);
-
-    Cipher          decryptingCipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
-    IvParameterSpec ivSpec           = new IvParameterSpec(iv);
-    Mac             hmac             = Mac.getInstance("HmacSHA256");
+    int macOffset = decodedLength - MAC_LENGTH_BYTES;
+    Mac hmac      = context.getMac(macKey);
 
-    decryptingCipher.init(Cipher.DECRYPT_MODE, cipherKey, ivSpec);
-    hmac.init(macKey);
+    hmac.update(buffer, 0, macOffset);
+    verifyMac(hmac, context.getMacBuffer(), buffer, macOffset);
 
-    verifyMac(hmac, Util.combine(new byte[]{version}, iv, ciphertext), mac);
+    Cipher decryptingCipher = context.getCipher();
+    decryptingCipher.init(Cipher.DECRYPT_MODE, cipherKey, new IvParameterSpec(buffer, 1, IV_LENGTH_BYTES));
 
-    return decryptingCipher.doFinal(ciphertext);
+    return handleDecompressIfNecessary(
+        version, decryptingCipher.doFinal(buffer, HEADER_LENGTH_BYTES, macOffset - HEADER_LENGTH_BYTES)
+    );
   }
 
   public String decodeAndDecrypt(String data)
@@ -107,6 +329,20 @@ public class MasterCipher {
     return new String(decodeAndDecrypt(data.getBytes()));
   }
 
+  /*
+   hmac of data under the mac key with a label prepended so the result can never
+   be mistaken for the mac of a ciphertext, safe to use as a public content address.
+   */
+  public byte[] getKeyedHash(String label, byte[] data) throws GeneralSecurityException {
+    Mac hmac = cipherContext.get().getMac(macKey);
+
+    hmac.update(label.getBytes());
+    hmac.update((byte) 0x00);
+    hmac.update(data);
+
+    return hmac.doFinal();
+  }
+
   protected static void verifyMac(Mac hmac, byte[] theirData, byte[] theirMac)
       throws InvalidMacException
   {
@@ -115,4 +351,17 @@ public class MasterCipher {
     if (!MessageDigest.isEqual(theirMac, ourMac))
       throw new InvalidMacException("INVALID MAC");
   }
-}
\ No newline at end of file
+
+  protected static void verifyMac(Mac hmac, byte[] ourMacBuffer, byte[] theirMac, int theirMacOffset)
+      throws InvalidMacException, GeneralSecurityException
+  {
+    hmac.doFinal(ourMacBuffer, 0);
+
+    int difference = 0;
+    for (int i = 0; i < MAC_LENGTH_BYTES; i++)
+      difference |= ourMacBuffer[i] ^ theirMac[theirMacOffset + i];
+
+    if (difference != 0)
+      throw new InvalidMacException("INVALID MAC");
+  }
+}
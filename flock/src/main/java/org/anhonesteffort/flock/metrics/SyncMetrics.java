@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.metrics;
+
+import android.content.ContentProviderClient;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * rhodey
+ */
+public class SyncMetrics {
+
+  /*
+  bound by the sync worker, the static handle methods do nothing on threads with no run bound.
+   */
+  private static final ThreadLocal<SyncMetrics> current = new ThreadLocal<SyncMetrics>();
+
+  private final String                      authority;
+  private final String                      collectionPath;
+  private final long                        startedAtMs;
+  private final long                        startedAtElapsedMs;
+  private       long                        durationMs = -1;
+  private final LinkedHashMap<String, Long> phaseMillis;
+  private       Optional<String>            currentPhase;
+  private       long                        currentPhaseStartedAtMs;
+  private final List<Integer>               multiGetSizes;
+  private       long                        bodyBytesOnWire;
+  private       long                        bodyBytesDecoded;
+
+  private final AtomicLong httpRequests        = new AtomicLong(0);
+  private final AtomicLong httpBytesOut        = new AtomicLong(0);
+  private final AtomicLong httpBytesIn         = new AtomicLong(0);
+  private final AtomicLong providerQueries     = new AtomicLong(0);
+  private final AtomicLong providerQueryNanos  = new AtomicLong(0);
+  private final AtomicLong providerBatches     = new AtomicLong(0);
+  private final AtomicLong providerOperations  = new AtomicLong(0);
+  private final AtomicLong providerBatchNanos  = new AtomicLong(0);
+  private final AtomicLong cryptoOperations    = new AtomicLong(0);
+  private final AtomicLong cryptoNanos         = new AtomicLong(0);
+  private final AtomicLong componentsBuilt     = new AtomicLong(0);
+  private final AtomicLong componentBuildNanos = new AtomicLong(0);
+
+  public SyncMetrics(String authority, String collectionPath) {
+    this.authority      = authority;
+    this.collectionPath = collectionPath;
+    startedAtMs         = System.currentTimeMillis();
+    startedAtElapsedMs  = SystemClock.elapsedRealtime();
+    phaseMillis         = new LinkedHashMap<String, Long>();
+    currentPhase        = Optional.absent();
+    multiGetSizes       = new LinkedList<Integer>();
+  }
+
+  public static Optional<SyncMetrics> getCurrent() {
+    return Optional.fromNullable(current.get());
+  }
+
+  public void bindToCurrentThread() {
+    current.set(this);
+  }
+
+  public static void unbindCurrentThread() {
+    current.remove();
+  }
+
+  private static void handleRestoreBinding(SyncMetrics metrics) {
+    if (metrics == null)
+      current.remove();
+    else
+      current.set(metrics);
+  }
+
+  /*
+  pool threads outlive the run that created them, so a task picks up the metrics bound to the
+  submitting thread when it is wrapped and puts the pool thread back the way it found it.
+   */
+  public static Runnable wrap(final Runnable task) {
+    final SyncMetrics metrics = current.get();
+
+    return new Runnable() {
+      @Override
+      public void run() {
+        SyncMetrics previous = current.get();
+        handleRestoreBinding(metrics);
+
+        try {
+
+          task.run();
+
+        } finally {
+          handleRestoreBinding(previous);
+        }
+      }
+    };
+  }
+
+  public static <V> Callable<V> wrap(final Callable<V> task) {
+    final SyncMetrics metrics = current.get();
+
+    return new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        SyncMetrics previous = current.get();
+        handleRestoreBinding(metrics);
+
+        try {
+
+          return task.call();
+
+        } finally {
+          handleRestoreBinding(previous);
+        }
+      }
+    };
+  }
+
+  private synchronized void handleEndCurrentPhase() {
+    if (!currentPhase.isPresent())
+      return;
+
+    long elapsedMs = SystemClock.elapsedRealtime() - currentPhaseStartedAtMs;
+    Long previous  = phaseMillis.get(currentPhase.get());
+
+    phaseMillis.put(currentPhase.get(), previous == null ? elapsedMs : previous + elapsedMs);
+    currentPhase = Optional.absent();
+  }
+
+  /*
+  phases are sequential, beginning one ends whichever was running.
+   */
+  public synchronized void beginPhase(String phase) {
+    handleEndCurrentPhase();
+    currentPhase            = Optional.of(phase);
+    currentPhaseStartedAtMs = SystemClock.elapsedRealtime();
+  }
+
+  public synchronized void handleMultiGetSizes(List<Integer> sizes) {
+    multiGetSizes.addAll(sizes);
+  }
+
+  /*
+  counted over response bodies the client decoded itself, on wire divided by decoded
+  shows whether the server actually honours Accept-Encoding for this collection.
+   */
+  public synchronized void handleResponseBodyBytes(long onWire, long decoded) {
+    bodyBytesOnWire  += onWire;
+    bodyBytesDecoded += decoded;
+  }
+
+  public synchronized void finish() {
+    handleEndCurrentPhase();
+    durationMs = SystemClock.elapsedRealtime() - startedAtElapsedMs;
+  }
+
+  public static void handleHttpRequest(long bytesOut) {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return;
+
+    metrics.httpRequests.incrementAndGet();
+    if (bytesOut > 0)
+      metrics.httpBytesOut.addAndGet(bytesOut);
+  }
+
+  public static void handleHttpBytesIn(long bytesIn) {
+    SyncMetrics metrics = current.get();
+    if (metrics != null && bytesIn > 0)
+      metrics.httpBytesIn.addAndGet(bytesIn);
+  }
+
+  /*
+  for response bodies of unknown length, counted as they are read.
+   */
+  public static Optional<AtomicLong> getHttpBytesInCounter() {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return Optional.absent();
+
+    return Optional.of(metrics.httpBytesIn);
+  }
+
+  public static Cursor query(ContentProviderClient client,
+                             Uri                   uri,
+                             String[]              projection,
+                             String                selection,
+                             String[]              selectionArgs,
+                             String                sortOrder)
+      throws RemoteException
+  {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return client.query(uri, projection, selection, selectionArgs, sortOrder);
+
+    long startNanos = System.nanoTime();
+
+    try {
+
+      return client.query(uri, projection, selection, selectionArgs, sortOrder);
+
+    } finally {
+      metrics.providerQueries.incrementAndGet();
+      metrics.providerQueryNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+  }
+
+  public static void handleProviderBatch(int operations, long nanos) {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return;
+
+    metrics.providerBatches.incrementAndGet();
+    metrics.providerOperations.addAndGet(operations);
+    metrics.providerBatchNanos.addAndGet(nanos);
+  }
+
+  public static void handleCrypto(long nanos) {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return;
+
+    metrics.cryptoOperations.incrementAndGet();
+    metrics.cryptoNanos.addAndGet(nanos);
+  }
+
+  public static void handleComponentBuilt(long nanos) {
+    SyncMetrics metrics = current.get();
+    if (metrics == null)
+      return;
+
+    metrics.componentsBuilt.incrementAndGet();
+    metrics.componentBuildNanos.addAndGet(nanos);
+  }
+
+  private static long toMillis(AtomicLong nanos) {
+    return nanos.get() / 1000000L;
+  }
+
+  public synchronized JSONObject toJson() throws JSONException {
+    JSONObject json   = new JSONObject();
+    JSONObject phases = new JSONObject();
+    JSONObject http   = new JSONObject();
+    JSONObject local  = new JSONObject();
+    JSONObject crypto = new JSONObject();
+
+    for (Map.Entry<String, Long> phase : phaseMillis.entrySet())
+      phases.put(phase.getKey(), phase.getValue());
+
+    http.put("requests",        httpRequests.get());
+    http.put("bytes_out",       httpBytesOut.get());
+    http.put("bytes_in",        httpBytesIn.get());
+    http.put("multi_get_sizes", new JSONArray(multiGetSizes));
+    http.put("body_bytes_wire", bodyBytesOnWire);
+    http.put("body_bytes",      bodyBytesDecoded);
+
+    if (bodyBytesDecoded > 0)
+      http.put("compression_ratio", (double) bodyBytesOnWire / bodyBytesDecoded);
+
+    local.put("queries",            providerQueries.get());
+    local.put("query_ms",           toMillis(providerQueryNanos));
+    local.put("apply_batches",      providerBatches.get());
+    local.put("applied_operations", providerOperations.get());
+    local.put("apply_batch_ms",     toMillis(providerBatchNanos));
+    local.put("components_built",   componentsBuilt.get());
+    local.put("component_build_ms", toMillis(componentBuildNanos));
+
+    crypto.put("operations", cryptoOperations.get());
+    crypto.put("ms",         toMillis(cryptoNanos));
+
+    json.put("authority",   authority);
+    json.put("collection",  collectionPath);
+    json.put("started_at",  startedAtMs);
+    json.put("duration_ms", durationMs);
+    json.put("phase_ms",    phases);
+    json.put("http",        http);
+    json.put("provider",    local);
+    json.put("crypto",      crypto);
+
+    return json;
+  }
+
+}
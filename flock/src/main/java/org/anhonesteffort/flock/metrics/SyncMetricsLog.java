@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * rhodey
+ */
+public class SyncMetricsLog {
+
+  private static final String TAG = "org.anhonesteffort.flock.metrics.SyncMetricsLog";
+
+  private static final String LOG_FILE_NAME = "sync_metrics.json";
+  private static final String SUFFIX_TEMP   = ".tmp";
+  private static final int    MAX_RUNS      = 64;
+
+  private static final Object lock = new Object();
+
+  private static File getLogFile(Context context) {
+    return new File(context.getFilesDir(), LOG_FILE_NAME);
+  }
+
+  private static JSONArray readRuns(Context context) {
+    File logFile = getLogFile(context);
+    if (!logFile.exists())
+      return new JSONArray();
+
+    try {
+
+      InputStream           in  = new FileInputStream(logFile);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      try {
+
+        byte[] buffer = new byte[8192];
+        int    read;
+
+        while ((read = in.read(buffer)) != -1)
+          out.write(buffer, 0, read);
+
+      } finally {
+        in.close();
+      }
+
+      return new JSONArray(out.toString("UTF-8"));
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while reading sync metrics", e);
+    } catch (JSONException e) {
+      Log.e(TAG, "sync metrics log is corrupt, starting over", e);
+    }
+
+    return new JSONArray();
+  }
+
+  private static void writeRuns(Context context, JSONArray runs) throws IOException {
+    File             logFile  = getLogFile(context);
+    File             tempFile = new File(logFile.getPath() + SUFFIX_TEMP);
+    FileOutputStream out      = new FileOutputStream(tempFile);
+
+    try {
+
+      out.write(runs.toString().getBytes("UTF-8"));
+      out.flush();
+      out.getFD().sync();
+
+    } finally {
+      out.close();
+    }
+
+    if (!tempFile.renameTo(logFile))
+      throw new IOException("unable to rename " + tempFile.getPath() + " to " + logFile.getPath());
+  }
+
+  public static void append(Context context, SyncMetrics metrics) {
+    synchronized (lock) {
+      try {
+
+        JSONArray runs    = readRuns(context);
+        JSONArray trimmed = new JSONArray();
+        int       skip    = Math.max(0, runs.length() + 1 - MAX_RUNS);
+
+        for (int i = skip; i < runs.length(); i++)
+          trimmed.put(runs.get(i));
+
+        trimmed.put(metrics.toJson());
+        writeRuns(context, trimmed);
+
+      } catch (JSONException e) {
+        Log.e(TAG, "caught exception while appending sync metrics", e);
+      } catch (IOException e) {
+        Log.e(TAG, "caught exception while appending sync metrics", e);
+      }
+    }
+  }
+
+  public static JSONArray getRuns(Context context) {
+    synchronized (lock) {
+      return readRuns(context);
+    }
+  }
+
+  public static void clear(Context context) {
+    synchronized (lock) {
+      if (!getLogFile(context).delete())
+        Log.w(TAG, "no sync metrics to clear");
+    }
+  }
+
+}
@@ -26,11 +26,16 @@ import android.os.RemoteException;
 import android.util.Log;
 import android.util.Pair;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.metrics.SyncMetricsLog;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.crypto.InvalidMacException;
 import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.DavClient;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
+import org.anhonesteffort.flock.webdav.InvalidSyncTokenException;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
+import org.anhonesteffort.flock.webdav.SyncCollectionResult;
 import org.anhonesteffort.flock.webdav.WebDavConstants;
 import org.anhonesteffort.flock.webdav.caldav.CalDavConstants;
 import org.apache.jackrabbit.webdav.DavException;
@@ -39,9 +44,15 @@ import org.apache.jackrabbit.webdav.xml.Namespace;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Programmer: rhodey
@@ -50,6 +61,15 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
 
   private static final String TAG = "org.anhonesteffort.flock.sync.AbstractDavSyncWorker";
 
+  private static final int OPERATION_INSERT          = 0;
+  private static final int OPERATION_UPDATE          = 1;
+  private static final int OPERATION_REMOVE          = 2;
+  private static final int OPERATION_CLEAN_LOCAL_ID  = 3;
+  private static final int OPERATION_REMOVE_LOCAL_ID = 4;
+  private static final int OPERATION_UPDATE_ETAG     = 5;
+
+  private static final Map<String, Integer> lastIndexSizes = new ConcurrentHashMap<String, Integer>();
+
   protected Context                             context;
   protected SyncResult                          result;
   protected AbstractLocalComponentCollection<T> localCollection;
@@ -58,6 +78,39 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
   protected Optional<String> localCTag  = Optional.absent();
   protected Optional<String> remoteCTag = Optional.absent();
 
+  protected Optional<String> nextSyncToken = Optional.absent();
+
+  protected LocalComponentIndex localIndex;
+
+  protected int           multiGetBatchSize  = AdaptiveMultiGetBatcher.DEFAULT_COMPONENTS_PER_REPORT;
+  protected List<Integer> multiGetBatchSizes = new LinkedList<Integer>();
+
+  private final List<PendingOperation> pendingOperations = new LinkedList<PendingOperation>();
+
+  private volatile boolean cancelled = false;
+
+  private Optional<SyncJournal> journal = Optional.absent();
+  private SyncMetrics           metrics;
+
+  /*
+  one component's worth of operations sitting in the local collection's operation queue,
+  remembered so a batch can be attributed back to UIDs once it commits or fails.
+   */
+  private class PendingOperation {
+
+    private final int                  operation;
+    private final String               uid;
+    private final Long                 localId;
+    private final ComponentETagPair<T> component;
+
+    private PendingOperation(int operation, String uid, Long localId, ComponentETagPair<T> component) {
+      this.operation = operation;
+      this.uid       = uid;
+      this.localId   = localId;
+      this.component = component;
+    }
+  }
+
   public AbstractDavSyncWorker(Context                             context,
                                SyncResult                          result,
                                AbstractLocalComponentCollection<T> localCollection,
@@ -77,11 +130,43 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
 
   @Override
   public void run() {
+    metrics = new SyncMetrics(getLocalAuthority(), localCollection.getPath());
+    metrics.bindToCurrentThread();
+
+    try {
+
+      handleSync();
+
+    } finally {
+      handleRecordResponseCompression();
+      metrics.finish();
+      SyncMetrics.unbindCurrentThread();
+      SyncMetricsLog.append(context, metrics);
+    }
+  }
+
+  /*
+  each worker has its own client so its counters cover exactly this collection's run.
+   */
+  private void handleRecordResponseCompression() {
+    DavClient client  = remoteCollection.getClient();
+    long      onWire  = client.getResponseBytesOnWire();
+    long      decoded = client.getResponseBytesDecoded();
+
+    metrics.handleResponseBodyBytes(onWire, decoded);
+
+    if (decoded > 0)
+      handleLogMessage("response bytes on wire " + onWire + ", decoded " + decoded +
+                       ", ratio " + String.format(Locale.US, "%.2f", (double) onWire / decoded));
+  }
+
+  private void handleSync() {
     Log.d(TAG, "now syncing local: " + localCollection.getPath() +
                " with remote: "      + remoteCollection.getPath());
 
     try {
 
+      metrics.beginPhase("prepare");
       SyncWorkerUtil.handleMakeFlockCollection(localCollection, remoteCollection);
 
       localCTag  = localCollection.getCTag();
@@ -97,11 +182,15 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
       else
         handleLogMessage("remote ctag not present pre push local");
 
+      metrics.beginPhase("push_properties");
       pushLocallyCreatedProperties(result);
       pushLocallyChangedProperties(result);
 
+      metrics.beginPhase("push_deleted");
       pushLocallyDeletedComponents(result);
+      metrics.beginPhase("push_changed");
       pushLocallyChangedComponents(result);
+      metrics.beginPhase("push_created");
       pushLocallyCreatedComponents(result);
 
       boolean pull_remote = result.stats.numInserts > 0 ||
@@ -113,14 +202,37 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
       if (!pull_remote)
         return;
 
-      remoteCTag = remoteCollection.getCTag();
+      if (cancelled) {
+        handleLogMessage("sync cancelled, not gonna pull remote");
+        return;
+      }
+
+      metrics.beginPhase("index");
+      remoteCTag    = remoteCollection.getCTag();
+      nextSyncToken = remoteCollection.getSyncToken();
+      localIndex    = localCollection.getComponentIndex();
+      localCollection.setComponentIndex(Optional.of(localIndex));
+      lastIndexSizes.put(getIndexSizeKey(), localIndex.size());
+
+      handleLogMessage("indexed " + localIndex.size() + " local components");
 
+      metrics.beginPhase("pull_properties");
       pullRemotelyCreatedProperties(result);
       pullRemotelyChangedProperties(result);
 
-      pullRemotelyCreatedComponents(result);
-      pullRemotelyChangedComponents(result);
-      purgeRemotelyDeletedComponents(result);
+      metrics.beginPhase("pull_components");
+      journal = handleResumeJournal();
+
+      if (journal.isPresent())
+        handlePullReconciliationPlan(journal.get().getPlan().getReconciledWith(localIndex), result);
+      else if (!pullRemoteChangesSinceSyncToken(result)) {
+        Optional<ReconciliationPlan> plan = handleBuildReconciliationPlan(result);
+
+        if (plan.isPresent()) {
+          handleBeginJournal(plan.get());
+          handlePullReconciliationPlan(plan.get(), result);
+        }
+      }
 
       if (remoteCTag.isPresent()) {
         handleLogMessage("remote ctag post pull remote: " + remoteCTag.get());
@@ -128,14 +240,20 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
         if (result.stats.numAuthExceptions  > 0 ||
             result.stats.numSkippedEntries  > 0 ||
             result.stats.numParseExceptions > 0 ||
-            result.stats.numIoExceptions    > 0)
+            result.stats.numIoExceptions    > 0 ||
+            cancelled)
         {
           handleLogMessage("sync result has errors, will not save remote CTag to local collection");
           return;
         }
 
+        metrics.beginPhase("commit");
         localCollection.setCTag(remoteCTag.get());
+        if (nextSyncToken.isPresent())
+          localCollection.setSyncToken(nextSyncToken.get());
+
         localCollection.commitPendingOperations();
+        handleDeleteJournal();
       }
       else
         throw new PropertyParseException("Remote collection is missing CTag, things could get funny",
@@ -156,13 +274,61 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
     }
   }
 
+  private String getIndexSizeKey() {
+    return getLocalAuthority() + "_" + localCollection.getLocalId();
+  }
+
+  /*
+  collections with local changes go first so edits reach the server soonest, smaller
+  collections then go before larger ones so one huge collection cannot hold up the rest.
+  size comes from the last index built for the collection rather than a count query, a
+  collection not yet indexed by this process sorts as if empty.
+   */
+  @Override
+  public long getSyncPriority() {
+    try {
+
+      Integer componentCount = lastIndexSizes.get(getIndexSizeKey());
+      long    size           = componentCount != null ? componentCount : 0;
+
+      return localCollection.hasChanges() ? size : Integer.MAX_VALUE + size;
+
+    } catch (RemoteException e) {
+      Log.e(TAG, "caught exception while computing sync priority", e);
+      return Long.MAX_VALUE;
+    }
+  }
+
+  @Override
+  public void cancel() {
+    handleLogMessage("cancel()");
+    cancelled = true;
+    remoteCollection.getClient().abortInFlightRequests();
+  }
+
   @Override
   public void cleanup() {
+    if (journal.isPresent())
+      journal.get().close();
+
     remoteCollection.closeHttpConnection();
   }
 
   protected abstract Optional<String> getComponentUid(T component);
 
+  protected abstract String getComponentText(T component);
+
+  protected Optional<String> getComponentContentHash(T component) {
+    try {
+
+      return Optional.of(ComponentContentHash.build(getComponentText(component)));
+
+    } catch (RuntimeException e) {
+      Log.w(TAG, "unable to build content hash for component", e);
+      return Optional.absent();
+    }
+  }
+
   protected void pushLocallyCreatedProperties(SyncResult result) {
     handleLogMessage("pushLocallyCreatedProperties()");
 
@@ -241,20 +407,18 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
          handleLogMessage("removing remote component: (" + componentId.first + ", " + componentId.second + ")");
          remoteCollection.removeComponent(componentId.second);
          localCollection.removeComponent(componentId.first);
-         localCollection.commitPendingOperations();
+         handleQueuedLocalId(OPERATION_REMOVE_LOCAL_ID, componentId.second, componentId.first, result);
          result.stats.numDeletes++;
 
        } catch (DavException e) {
          SyncWorkerUtil.handleException(context, e, result);
        } catch (IOException e) {
          SyncWorkerUtil.handleException(context, e, result);
-       } catch (RemoteException e) {
-         SyncWorkerUtil.handleException(context, e, result);
-       } catch (OperationApplicationException e) {
-         SyncWorkerUtil.handleException(context, e, result);
        }
      }
 
+     handleCommitPendingOperations(result);
+
      if (deletedIds.size() > 0)
        SyncWorkerUtil.handleRefreshCollectionProperties(context, result, remoteCollection);
 
@@ -263,47 +427,194 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
     }
   }
 
-  protected void pushLocallyChangedComponents(SyncResult result) {
-    handleLogMessage("pushLocallyChangedComponents()");
+  /*
+  components which must reach the server only after every other component in the same push
+  has, like recurrence exceptions which follow their master.
+   */
+  protected boolean isPushDeferred(T component) {
+    return false;
+  }
 
+  private void handlePushChangedResult(PushPipeline.Push<T> push, SyncResult result) {
     try {
 
-      List<Pair<Long, String>> updatedIds = localCollection.getUpdatedComponentIds();
-      handleLogMessage("found " + updatedIds.size() + " locally updated components");
+      push.getResult();
+      localCollection.cleanComponent(push.getLocalId());
+      localCollection.setComponentContentHash(push.getUid(), push.getContentHash());
+      handleQueuedLocalId(OPERATION_CLEAN_LOCAL_ID, push.getUid(), push.getLocalId(), result);
+      result.stats.numUpdates++;
+
+    } catch (InvalidComponentException e) {
+
+      SyncWorkerUtil.handleException(context, e, result);
+      SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, push.getLocalId(), context, result);
+
+    } catch (GeneralSecurityException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    } catch (DavException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    } catch (IOException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    } catch (RemoteException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    }
+  }
+
+  private void handlePushCreatedResult(PushPipeline.Push<T> push, SyncResult result) {
+    Long componentId = push.getLocalId();
+
+    try {
 
-      for (Pair<Long, String> componentId : updatedIds) {
+      push.getResult();
+      localCollection.cleanComponent(componentId);
+      localCollection.setComponentContentHash(push.getUid(), push.getContentHash());
+      handleQueuedLocalId(OPERATION_CLEAN_LOCAL_ID, push.getUid(), componentId, result);
+      result.stats.numInserts++;
+
+    } catch (InvalidComponentException e) {
+
+      SyncWorkerUtil.handleException(context, e, result);
+      SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, componentId, context, result);
+
+    } catch (DavException e) {
+
+      SyncWorkerUtil.handleException(context, e, result);
+
+      if (e.getErrorCode() == WebDavConstants.SC_PRECONDITION_FAILED)
+        SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, componentId, context, result);
+      else
+        SyncWorkerUtil.handleServerErrorOnPushNewLocalComponent(localCollection, componentId, context, result);
+
+    } catch (IOException e) {
+
+      SyncWorkerUtil.handleException(context, e, result);
+      SyncWorkerUtil.handleServerErrorOnPushNewLocalComponent(localCollection, componentId, context, result);
+
+    } catch (GeneralSecurityException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    } catch (RemoteException e) {
+      SyncWorkerUtil.handleException(context, e, result);
+    }
+  }
+
+  private void handlePushResult(PushPipeline.Push<T> push, SyncResult result) {
+    if (push.isCreated())
+      handlePushCreatedResult(push, result);
+    else
+      handlePushChangedResult(push, result);
+  }
+
+  private void handleSubmitPush(PushPipeline<T> pipeline, PushPipeline.Push<T> push, SyncResult result)
+      throws InterruptedException
+  {
+    while (!pipeline.hasCapacity())
+      handlePushResult(pipeline.take(), result);
+
+    pipeline.submit(push);
+  }
+
+  private void handleDrainPushes(PushPipeline<T> pipeline, SyncResult result) throws InterruptedException {
+    while (pipeline.hasInFlight())
+      handlePushResult(pipeline.take(), result);
+  }
+
+  /*
+  PUTs run concurrently but their results are applied here one at a time, deferred pushes
+  are held back until everything else has been answered by the server. changed components
+  whose content hash matches the one last synced are marked clean without a PUT.
+   */
+  private void handlePushComponents(LocalComponentLoader<T>  loader,
+                                    List<Pair<Long, String>> componentIds,
+                                    HashMap<String, String>  contentHashes,
+                                    boolean                  created,
+                                    SyncResult               result)
+  {
+    PushPipeline<T>            pipeline = new PushPipeline<T>(remoteCollection, PushPipeline.DEFAULT_MAX_CONCURRENT_PUTS);
+    List<PushPipeline.Push<T>> deferred = new LinkedList<PushPipeline.Push<T>>();
+
+    try {
+
+      for (Pair<Long, String> componentId : componentIds) {
         try {
 
-          Optional<ComponentETagPair<T>> component = localCollection.getComponent(componentId.second);
+          Optional<ComponentETagPair<T>> component = loader.getComponent(componentId.first);
 
           if (component.isPresent()) {
-            handleLogMessage("updating remote component: (" + componentId.first + ", " + componentId.second + ")");
-            remoteCollection.updateHiddenComponent(component.get());
-            localCollection.cleanComponent(componentId.first);
-            localCollection.commitPendingOperations();
-            result.stats.numUpdates++;
+            if (created)
+              prePushLocallyCreatedComponent(component.get().getComponent());
+
+            Optional<String> contentHash = getComponentContentHash(component.get().getComponent());
+
+            if (!created && ComponentContentHash.matches(contentHash, contentHashes.get(componentId.second))) {
+              handleLogMessage("content of component (" + componentId.first + ", " + componentId.second + ") " +
+                               "is unchanged, marking clean without a put");
+              localCollection.cleanComponent(componentId.first);
+              handleQueuedLocalId(OPERATION_CLEAN_LOCAL_ID, componentId.second, componentId.first, result);
+              continue;
+            }
+
+            if (created)
+              handleLogMessage("creating remote component: (" + componentId.first + ", " + componentId.second + ")");
+            else
+              handleLogMessage("updating remote component: (" + componentId.first + ", " + componentId.second + ")");
+
+            PushPipeline.Push<T> push = new PushPipeline.Push<T>(componentId.first, componentId.second,
+                                                                 component.get(), contentHash, created);
+
+            if (isPushDeferred(component.get().getComponent()))
+              deferred.add(push);
+            else
+              handleSubmitPush(pipeline, push, result);
           }
           else
-            handleLogMessage("could not get component with id " + componentId.second + " from local collection");
+            handleLogMessage("could not get component (" + componentId.first + ", " + componentId.second + ") from local collection");
 
         } catch (InvalidComponentException e) {
 
           SyncWorkerUtil.handleException(context, e, result);
           SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, componentId.first, context, result);
 
-        } catch (GeneralSecurityException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        } catch (DavException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        } catch (IOException e) {
-          SyncWorkerUtil.handleException(context, e, result);
         } catch (RemoteException e) {
           SyncWorkerUtil.handleException(context, e, result);
-        } catch (OperationApplicationException e) {
-          SyncWorkerUtil.handleException(context, e, result);
         }
       }
 
+      handleDrainPushes(pipeline, result);
+
+      if (!deferred.isEmpty())
+        handleLogMessage("pushing " + deferred.size() + " deferred components");
+
+      for (PushPipeline.Push<T> push : deferred)
+        handleSubmitPush(pipeline, push, result);
+
+      handleDrainPushes(pipeline, result);
+
+    } catch (InterruptedException e) {
+      Log.e(TAG, "interrupted while waiting on push pipeline", e);
+      result.stats.numIoExceptions++;
+      Thread.currentThread().interrupt();
+    } finally {
+      pipeline.stop();
+    }
+  }
+
+  protected void pushLocallyChangedComponents(SyncResult result) {
+    handleLogMessage("pushLocallyChangedComponents()");
+
+    try {
+
+      List<Pair<Long, String>> updatedIds = localCollection.getUpdatedComponentIds();
+      handleLogMessage("found " + updatedIds.size() + " locally updated components");
+
+      List<Long> updatedLocalIds = new LinkedList<Long>();
+      for (Pair<Long, String> componentId : updatedIds)
+        updatedLocalIds.add(componentId.first);
+
+      LocalComponentLoader<T> loader = localCollection.getComponentLoader(updatedLocalIds);
+      handlePushComponents(loader, updatedIds, localCollection.getComponentContentHashes(), false, result);
+
+      handleCommitPendingOperations(result);
+
       if (updatedIds.size() > 0)
         SyncWorkerUtil.handleRefreshCollectionProperties(context, result, remoteCollection);
 
@@ -322,44 +633,16 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
       List<Long> newIds = localCollection.getNewComponentIds();
       handleLogMessage("found " + newIds.size() + " locally created components");
 
+      /* uids are populated up front so the loader reads every component with its uid. */
+      List<Pair<Long, String>> populatedIds      = new LinkedList<Pair<Long, String>>();
+      List<Long>               populatedLocalIds = new LinkedList<Long>();
+
       for (Long componentId : newIds) {
         try {
 
-          String      uid       = localCollection.populateComponentUid(componentId);
-          Optional<T> component = localCollection.getComponent(componentId);
-
-          if (component.isPresent()) {
-            handleLogMessage("creating remote component: (" + componentId + ", " + uid + ")");
-            prePushLocallyCreatedComponent(component.get());
-            remoteCollection.addHiddenComponent(component.get());
-            localCollection.cleanComponent(componentId);
-            localCollection.commitPendingOperations();
-            result.stats.numInserts++;
-          }
-          else
-            handleLogMessage("could not get component (" + componentId + ", " + uid + ") from local collection");
-
-        } catch (InvalidComponentException e) {
-
-          SyncWorkerUtil.handleException(context, e, result);
-          SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, componentId, context, result);
-
-        } catch (DavException e) {
-
-          SyncWorkerUtil.handleException(context, e, result);
+          populatedIds.add(new Pair<Long, String>(componentId, localCollection.populateComponentUid(componentId)));
+          populatedLocalIds.add(componentId);
 
-          if (e.getErrorCode() == WebDavConstants.SC_PRECONDITION_FAILED)
-            SyncWorkerUtil.handleServerRejectedLocalComponent(localCollection, componentId, context, result);
-          else
-            SyncWorkerUtil.handleServerErrorOnPushNewLocalComponent(localCollection, componentId, context, result);
-
-        } catch (IOException e) {
-
-          SyncWorkerUtil.handleException(context, e, result);
-          SyncWorkerUtil.handleServerErrorOnPushNewLocalComponent(localCollection, componentId, context, result);
-
-        } catch (GeneralSecurityException e) {
-          SyncWorkerUtil.handleException(context, e, result);
         } catch (RemoteException e) {
           SyncWorkerUtil.handleException(context, e, result);
         } catch (OperationApplicationException e) {
@@ -367,6 +650,11 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
         }
       }
 
+      LocalComponentLoader<T> loader = localCollection.getComponentLoader(populatedLocalIds);
+      handlePushComponents(loader, populatedIds, new HashMap<String, String>(), true, result);
+
+      handleCommitPendingOperations(result);
+
       if (newIds.size() > 0)
         SyncWorkerUtil.handleRefreshCollectionProperties(context, result, remoteCollection);
 
@@ -441,24 +729,26 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
     }
   }
 
-  protected void pullRemotelyCreatedComponents(SyncResult result) {
+  protected void pullRemotelyCreatedComponents(List<String> uidsMissingLocally, SyncResult result) {
     handleLogMessage("pullRemotelyCreatedComponents()");
+
     List<ComponentETagPair<T>> retryList = new LinkedList<ComponentETagPair<T>>();
+    AdaptiveMultiGetBatcher    batcher   = new AdaptiveMultiGetBatcher(uidsMissingLocally, multiGetBatchSize);
 
-    try {
+    handleLogMessage(uidsMissingLocally.size() + " components are missing locally, starting with " +
+                     batcher.getBatchSize() + " per multi-get report");
 
-      HashMap<String, String> remoteETagMap      = remoteCollection.getComponentETags();
-      List<String>            uidsMissingLocally = SyncWorkerUtil.handleFilterUidsMissingLocally(localCollection, remoteETagMap.keySet());
-      List<List<String>>      reportLists        = SyncWorkerUtil.handlePartitionUidsForReports(uidsMissingLocally);
+    MultiGetPipeline<T> pipeline = new MultiGetPipeline<T>(remoteCollection, batcher);
+    pipeline.start();
 
-      handleLogMessage("found " + remoteETagMap.size() + " remote components, " + uidsMissingLocally.size() +
-                      " are missing locally, will require " + reportLists.size() + " multi-get report(s)");
+    try {
 
-      for (List<String> uidsForReport : reportLists) {
+      Optional<MultiGetPipeline.Batch<T>> batch = pipeline.take();
+      while (batch.isPresent()) {
         try {
 
-          DecryptedMultiStatusResult<T> remoteComponents = remoteCollection.getHiddenComponents(uidsForReport);
-          SyncWorkerUtil.handleDoStuffWithMultiStatusResult(uidsForReport, remoteComponents, context, result);
+          DecryptedMultiStatusResult<T> remoteComponents = batch.get().getComponents();
+          SyncWorkerUtil.handleDoStuffWithMultiStatusResult(remoteComponents, context, result);
 
           for (ComponentETagPair<T> remoteComponent : remoteComponents.getComponentETagPairs()) {
             try {
@@ -468,9 +758,11 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
                 try {
 
                   handleLogMessage("creating local component " + componentUid.get() + " using remote");
+                  Optional<String> contentHash = getComponentContentHash(remoteComponent.getComponent());
+
                   localCollection.addComponent(remoteComponent);
-                  localCollection.commitPendingOperations();
-                  result.stats.numInserts++;
+                  localCollection.setComponentContentHash(componentUid.get(), contentHash);
+                  handleQueuedComponent(OPERATION_INSERT, componentUid.get(), remoteComponent, result);
 
                 } catch (InvalidComponentException e) {
                   handleLogMessage("caught invalid component exception, could be a recurrence exception " +
@@ -487,8 +779,6 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
               SyncWorkerUtil.handleException(context, e, result);
             } catch (RemoteException e) {
               SyncWorkerUtil.handleException(context, e, result);
-            } catch (OperationApplicationException e) {
-              SyncWorkerUtil.handleException(context, e, result);
             }
           }
 
@@ -499,67 +789,85 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
         } catch (IOException e) {
           SyncWorkerUtil.handleException(context, e, result);
         }
+
+        batch = pipeline.take();
       }
 
-      for (ComponentETagPair<T> retryComponent : retryList) {
-        Optional<String> componentUid = getComponentUid(retryComponent.getComponent());
-        try {
+    } catch (InterruptedException e) {
+      handlePipelineInterrupted(e, result);
+    } finally {
+      pipeline.stop();
+      handleBatcherFinished(batcher);
+    }
 
-          if (componentUid.isPresent()) {
-            handleLogMessage("retying creation of local component " + componentUid.get() + " using remote");
-            localCollection.addComponent(retryComponent);
-            localCollection.commitPendingOperations();
-            result.stats.numInserts++;
-          }
-          else
-            throw new InvalidRemoteComponentException("retry remote component is missing UID",
-                                                      getNamespace(), remoteCollection.getPath());
+    // recurrence exceptions need their parent committed before they can be retried
+    handleCommitPendingOperations(result);
 
-        } catch (InvalidRemoteComponentException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        } catch (RemoteException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        } catch (OperationApplicationException e) {
-          SyncWorkerUtil.handleException(context, e, result);
+    for (ComponentETagPair<T> retryComponent : retryList) {
+      Optional<String> componentUid = getComponentUid(retryComponent.getComponent());
+      try {
+
+        if (componentUid.isPresent()) {
+          handleLogMessage("retying creation of local component " + componentUid.get() + " using remote");
+          Optional<String> contentHash = getComponentContentHash(retryComponent.getComponent());
+
+          localCollection.addComponent(retryComponent);
+          localCollection.setComponentContentHash(componentUid.get(), contentHash);
+          handleQueuedComponent(OPERATION_INSERT, componentUid.get(), retryComponent, result);
         }
+        else
+          throw new InvalidRemoteComponentException("retry remote component is missing UID",
+                                                    getNamespace(), remoteCollection.getPath());
+
+      } catch (InvalidRemoteComponentException e) {
+        SyncWorkerUtil.handleException(context, e, result);
+      } catch (RemoteException e) {
+        SyncWorkerUtil.handleException(context, e, result);
       }
-
-    } catch (DavException e) {
-      SyncWorkerUtil.handleException(context, e, result);
-    } catch (RemoteException e) {
-      SyncWorkerUtil.handleException(context, e, result);
-    } catch (IOException e) {
-      SyncWorkerUtil.handleException(context, e, result);
     }
+
+    handleCommitPendingOperations(result);
   }
 
-  protected void pullRemotelyChangedComponents(SyncResult result) {
+  protected void pullRemotelyChangedComponents(Set<String> uidsChangedRemotely, SyncResult result) {
     handleLogMessage("pullRemotelyChangedComponents()");
 
-    try {
+    AdaptiveMultiGetBatcher batcher = new AdaptiveMultiGetBatcher(uidsChangedRemotely, multiGetBatchSize);
+
+    handleLogMessage(uidsChangedRemotely.size() + " components are updated remotely, starting with " +
+                     batcher.getBatchSize() + " per multi-get report");
 
-      HashMap<String, String>           remoteETagMap  = remoteCollection.getComponentETags();
-      HashMap<String, Optional<String>> changedETagMap = SyncWorkerUtil.handleFilterUidsChangedRemotely(localCollection, remoteETagMap);
-      List<List<String>>                reportLists    = SyncWorkerUtil.handlePartitionUidsForReports(changedETagMap.keySet());
+    MultiGetPipeline<T> pipeline = new MultiGetPipeline<T>(remoteCollection, batcher);
+    pipeline.start();
 
-      handleLogMessage("found " + remoteETagMap.size() + " remote components, " + changedETagMap.size() +
-                      " are updated remotely, will require " + reportLists.size() + " multi-get report(s)");
+    try {
 
-      for (List<String> uidsForReport : reportLists) {
+      Optional<MultiGetPipeline.Batch<T>> batch = pipeline.take();
+      while (batch.isPresent()) {
         try {
 
-          DecryptedMultiStatusResult<T> remoteComponents = remoteCollection.getHiddenComponents(uidsForReport);
-          SyncWorkerUtil.handleDoStuffWithMultiStatusResult(uidsForReport, remoteComponents, context, result);
+          DecryptedMultiStatusResult<T> remoteComponents = batch.get().getComponents();
+          SyncWorkerUtil.handleDoStuffWithMultiStatusResult(remoteComponents, context, result);
 
           for (ComponentETagPair<T> remoteComponent : remoteComponents.getComponentETagPairs()) {
             try {
 
               Optional<String> componentUid = getComponentUid(remoteComponent.getComponent());
               if (componentUid.isPresent()) {
-                handleLogMessage("updating local component " + componentUid.get() + " using remote");
-                localCollection.updateComponent(remoteComponent);
-                localCollection.commitPendingOperations();
-                result.stats.numUpdates++;
+                Optional<String> contentHash = getComponentContentHash(remoteComponent.getComponent());
+
+                if (localIndex.isContentUnchanged(componentUid.get(), contentHash)) {
+                  handleLogMessage("content of remote component " + componentUid.get() + " is unchanged, " +
+                                   "only updating local etag");
+                  localCollection.setComponentETag(componentUid.get(), remoteComponent.getETag());
+                  handleQueuedComponent(OPERATION_UPDATE_ETAG, componentUid.get(), remoteComponent, result);
+                }
+                else {
+                  handleLogMessage("updating local component " + componentUid.get() + " using remote");
+                  localCollection.updateComponent(remoteComponent);
+                  localCollection.setComponentContentHash(componentUid.get(), contentHash);
+                  handleQueuedComponent(OPERATION_UPDATE, componentUid.get(), remoteComponent, result);
+                }
               }
               else
                 throw new InvalidRemoteComponentException("remote component is missing UID",
@@ -569,8 +877,6 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
               SyncWorkerUtil.handleException(context, e, result);
             } catch (RemoteException e) {
               SyncWorkerUtil.handleException(context, e, result);
-            } catch (OperationApplicationException e) {
-              SyncWorkerUtil.handleException(context, e, result);
             }
           }
 
@@ -581,60 +887,361 @@ public abstract class AbstractDavSyncWorker<T> implements SyncWorker {
         } catch (IOException e) {
           SyncWorkerUtil.handleException(context, e, result);
         }
+
+        batch = pipeline.take();
       }
 
-    } catch (DavException e) {
+    } catch (InterruptedException e) {
+      handlePipelineInterrupted(e, result);
+    } finally {
+      pipeline.stop();
+      handleBatcherFinished(batcher);
+    }
+
+    handleCommitPendingOperations(result);
+  }
+
+  protected void purgeRemotelyDeletedComponents(Collection<String> uidsMissingRemotely, SyncResult result) {
+    handleLogMessage("purgeRemotelyDeletedComponents()");
+    handleLogMessage("found " + uidsMissingRemotely.size()  + " local components missing remotely");
+
+    for (String remoteUid : uidsMissingRemotely) {
+      try {
+
+        handleLogMessage("deleting local component " + remoteUid + " missing from remote");
+        localCollection.removeComponent(remoteUid);
+        handleQueuedComponent(OPERATION_REMOVE, remoteUid, null, result);
+
+      } catch (RemoteException e) {
+        SyncWorkerUtil.handleException(context, e, result);
+      }
+    }
+
+    handleCommitPendingOperations(result);
+  }
+
+  private void handleQueuedComponent(int                  operation,
+                                     String               uid,
+                                     ComponentETagPair<T> component,
+                                     SyncResult           result)
+  {
+    pendingOperations.add(new PendingOperation(operation, uid, null, component));
+
+    if (!localCollection.hasSpaceForPendingOperations())
+      handleCommitPendingOperations(result);
+  }
+
+  private void handleQueuedLocalId(int operation, String uid, Long localId, SyncResult result) {
+    pendingOperations.add(new PendingOperation(operation, uid, localId, null));
+
+    if (!localCollection.hasSpaceForPendingOperations())
+      handleCommitPendingOperations(result);
+  }
+
+  private void handlePendingOperationCommitted(PendingOperation pending, SyncResult result) {
+    switch (pending.operation) {
+      case OPERATION_INSERT:
+        localIndex.handleComponentCommitted(pending.uid, pending.component.getETag());
+        result.stats.numInserts++;
+        break;
+
+      case OPERATION_UPDATE:
+        localIndex.handleComponentCommitted(pending.uid, pending.component.getETag());
+        result.stats.numUpdates++;
+        break;
+
+      case OPERATION_UPDATE_ETAG:
+        localIndex.handleComponentCommitted(pending.uid, pending.component.getETag());
+        break;
+
+      case OPERATION_REMOVE:
+        localIndex.handleComponentRemoved(pending.uid);
+        result.stats.numDeletes++;
+        break;
+
+      default:
+        return;
+    }
+
+    if (journal.isPresent())
+      journal.get().handleComponentCompleted(pending.uid);
+  }
+
+  /*
+  re-queues a single component on its own so a failure can be pinned to its UID. inserts
+  are replayed as updates (remove by UID then insert) in case part of the failed batch
+  made it in before a yield point.
+   */
+  private void handleRetryPendingOperation(PendingOperation pending, SyncResult result) {
+    try {
+
+      switch (pending.operation) {
+        case OPERATION_INSERT:
+        case OPERATION_UPDATE:
+          localCollection.updateComponent(pending.component);
+          localCollection.setComponentContentHash(pending.uid, getComponentContentHash(pending.component.getComponent()));
+          break;
+
+        case OPERATION_UPDATE_ETAG:
+          localCollection.setComponentETag(pending.uid, pending.component.getETag());
+          break;
+
+        case OPERATION_REMOVE:
+          localCollection.removeComponent(pending.uid);
+          break;
+
+        case OPERATION_CLEAN_LOCAL_ID:
+          localCollection.cleanComponent(pending.localId);
+          localCollection.setComponentContentHash(pending.uid, Optional.<String>absent());
+          break;
+
+        case OPERATION_REMOVE_LOCAL_ID:
+          localCollection.removeComponent(pending.localId);
+          break;
+      }
+
+      localCollection.commitPendingOperations();
+      handlePendingOperationCommitted(pending, result);
+
+    } catch (InvalidRemoteComponentException e) {
+      handleLogMessage("failed to commit operations for component " + pending.uid);
       SyncWorkerUtil.handleException(context, e, result);
     } catch (RemoteException e) {
+      handleLogMessage("failed to commit operations for component " + pending.uid);
+      SyncWorkerUtil.handleException(context, e, result);
+    } catch (OperationApplicationException e) {
+      handleLogMessage("failed to commit operations for component " + pending.uid);
+      SyncWorkerUtil.handleException(context, e, result);
+    }
+  }
+
+  protected void handleCommitPendingOperations(SyncResult result) {
+    if (pendingOperations.isEmpty() && localCollection.getPendingOperationCount() == 0)
+      return;
+
+    List<PendingOperation> committing = new LinkedList<PendingOperation>(pendingOperations);
+    pendingOperations.clear();
+
+    try {
+
+      int pendingCount = localCollection.getPendingOperationCount();
+      int successCount = localCollection.commitPendingOperations();
+
+      handleLogMessage("committed " + successCount + " of " + pendingCount + " operations for " +
+                       committing.size() + " components");
+
+      for (PendingOperation pending : committing)
+        handlePendingOperationCommitted(pending, result);
+
+      handleFlushJournal();
+      return;
+
+    } catch (RemoteException e) {
+      Log.e(TAG, "batch of " + committing.size() + " components failed to commit", e);
+    } catch (OperationApplicationException e) {
+      Log.e(TAG, "batch of " + committing.size() + " components failed to commit", e);
+    }
+
+    handleLogMessage("retrying " + committing.size() + " components one at a time");
+    for (PendingOperation pending : committing)
+      handleRetryPendingOperation(pending, result);
+
+    handleFlushJournal();
+  }
+
+  /*
+  the next phase starts from whatever size this one settled on.
+   */
+  private void handleBatcherFinished(AdaptiveMultiGetBatcher batcher) {
+    multiGetBatchSize = batcher.getBatchSize();
+    multiGetBatchSizes.addAll(batcher.getBatchSizeHistory());
+    if (metrics != null)
+      metrics.handleMultiGetSizes(batcher.getBatchSizeHistory());
+
+    if (!batcher.getBatchSizeHistory().isEmpty())
+      handleLogMessage("multi-get report sizes " + batcher.getBatchSizeHistory());
+  }
+
+  public List<Integer> getMultiGetBatchSizes() {
+    return multiGetBatchSizes;
+  }
+
+  /*
+  handleException() ignores interrupts, count one here so a partial pull never saves the CTag.
+   */
+  private void handlePipelineInterrupted(InterruptedException e, SyncResult result) {
+    Log.e(TAG, "interrupted while waiting on multi-get pipeline", e);
+    result.stats.numIoExceptions++;
+    Thread.currentThread().interrupt();
+  }
+
+  private String getLocalAuthority() {
+    return localCollection.getUriForComponents().getAuthority();
+  }
+
+  /*
+  a journal is only worth resuming if the remote has not changed since it was written, if it
+  has the remainder is dropped and a fresh etag diff skips whatever was already committed.
+   */
+  private Optional<SyncJournal> handleResumeJournal() {
+    Optional<SyncJournal> resumed = SyncJournal.resume(context, getLocalAuthority(), localCollection.getLocalId());
+    if (!resumed.isPresent())
+      return resumed;
+
+    if (remoteCTag.isPresent()                                 &&
+        resumed.get().getRemoteCTag().equals(remoteCTag.get()) &&
+        resumed.get().getRemotePath().equals(remoteCollection.getPath()))
+    {
+      ReconciliationPlan plan = resumed.get().getPlan();
+      handleLogMessage("resuming journal, " + plan.getUidsMissingLocally().size() + " missing locally, " +
+                       plan.getUidsChangedRemotely().size() + " changed remotely, " +
+                       plan.getUidsMissingRemotely().size() + " missing remotely remain");
+
+      nextSyncToken = resumed.get().getSyncToken();
+      return resumed;
+    }
+
+    handleLogMessage("remote changed since journal was written, discarding it");
+    resumed.get().delete();
+    return Optional.absent();
+  }
+
+  private void handleBeginJournal(ReconciliationPlan plan) {
+    if (!remoteCTag.isPresent())
+      return;
+
+    try {
+
+      journal = Optional.of(SyncJournal.begin(context, getLocalAuthority(), localCollection.getLocalId(),
+                                              remoteCollection.getPath(), remoteCTag.get(), nextSyncToken, plan));
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while writing sync journal, continuing without", e);
+    }
+  }
+
+  private void handleFlushJournal() {
+    if (!journal.isPresent())
+      return;
+
+    try {
+
+      journal.get().flush();
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while flushing sync journal, continuing without", e);
+      journal.get().close();
+      journal = Optional.absent();
+    }
+  }
+
+  private void handleDeleteJournal() {
+    if (journal.isPresent())
+      journal.get().delete();
+    else
+      SyncJournal.delete(context, getLocalAuthority(), localCollection.getLocalId());
+
+    journal = Optional.absent();
+  }
+
+  private void handlePullReconciliationPlan(ReconciliationPlan plan, SyncResult result) {
+    pullRemotelyCreatedComponents(plan.getUidsMissingLocally(), result);
+    pullRemotelyChangedComponents(plan.getUidsChangedRemotely(), result);
+    purgeRemotelyDeletedComponents(plan.getUidsMissingRemotely(), result);
+  }
+
+  protected Optional<ReconciliationPlan> handleBuildReconciliationPlan(SyncResult result) {
+    handleLogMessage("handleBuildReconciliationPlan()");
+
+    try {
+
+      HashMap<String, String>           remoteETagMap = remoteCollection.getComponentETags();
+      HashMap<String, Optional<String>> localETagMap  = localIndex.getUidETags();
+      ReconciliationPlan                plan          = ReconciliationPlan.build(remoteETagMap, localETagMap);
+
+      handleLogMessage("found " + plan.getRemoteComponentCount() + " remote components, " +
+                       plan.getUidsMissingLocally().size()  + " missing locally, "   +
+                       plan.getUidsChangedRemotely().size() + " changed remotely, "  +
+                       plan.getUidsMissingRemotely().size() + " missing remotely");
+
+      return Optional.of(plan);
+
+    } catch (DavException e) {
       SyncWorkerUtil.handleException(context, e, result);
     } catch (IOException e) {
       SyncWorkerUtil.handleException(context, e, result);
     }
+
+    return Optional.absent();
   }
 
-  protected void purgeRemotelyDeletedComponents(SyncResult result) {
-    handleLogMessage("pullRemotelyDeletedComponents()");
+  /*
+  RFC 6578, ask the server for only what has changed since the sync-token we saved at the end
+  of our last successful sync. returns false if the caller must fall back to a full etag diff.
+   */
+  protected boolean pullRemoteChangesSinceSyncToken(SyncResult result) {
+    handleLogMessage("pullRemoteChangesSinceSyncToken()");
 
     try {
 
-      HashMap<String, String> localETagMap  = localCollection.getComponentETags();
-      HashMap<String, String> remoteETagMap = remoteCollection.getComponentETags();
+      Optional<String> localSyncToken = localCollection.getSyncToken();
+      if (!localSyncToken.isPresent() || !remoteCollection.isSyncCollectionSupported()) {
+        handleLogMessage("local sync token not present or sync-collection not supported, will diff etags");
+        return false;
+      }
 
-      List<String> componentsMissingRemotely = new LinkedList<String>();
-      for (java.util.Map.Entry<String, String> localETagEntry : localETagMap.entrySet()) {
-        boolean found_remotely = false;
+      HashMap<String, String> changedETags = new HashMap<String, String>();
+      Set<String>             removedUids  = new HashSet<String>();
+      SyncCollectionResult    changes      = remoteCollection.getComponentETagsSince(localSyncToken.get());
 
-        for (java.util.Map.Entry<String, String> remoteETagEntry : remoteETagMap.entrySet()) {
-          if (localETagEntry.getKey().equals(remoteETagEntry.getKey()))
-            found_remotely = true;
+      while (true) {
+        for (String removedUid : changes.getRemovedUids()) {
+          changedETags.remove(removedUid);
+          removedUids.add(removedUid);
         }
+        for (Map.Entry<String, String> changedETag : changes.getChangedETags().entrySet()) {
+          removedUids.remove(changedETag.getKey());
+          changedETags.put(changedETag.getKey(), changedETag.getValue());
+        }
+
+        if (!changes.isTruncated() || !changes.getSyncToken().isPresent())
+          break;
 
-        if (!found_remotely)
-          componentsMissingRemotely.add(localETagEntry.getKey());
+        handleLogMessage("sync-collection report was truncated, continuing from next sync token");
+        changes = remoteCollection.getComponentETagsSince(changes.getSyncToken().get());
       }
 
-      handleLogMessage("found " + componentsMissingRemotely.size()  + " local components missing remotely");
-      for (String remoteUid : componentsMissingRemotely) {
-        try {
+      handleLogMessage("sync-collection found " + changedETags.size() + " changed and " +
+                       removedUids.size() + " removed remote components");
 
-          handleLogMessage("deleting local component " + remoteUid + " missing from remote");
-          localCollection.removeComponent(remoteUid);
-          localCollection.commitPendingOperations();
-          result.stats.numDeletes++;
+      List<String>                      uidsMissingLocally  = SyncWorkerUtil.handleFilterUidsMissingLocally(localIndex, changedETags.keySet());
+      HashMap<String, Optional<String>> uidsChangedRemotely = SyncWorkerUtil.handleFilterUidsChangedRemotely(localIndex, changedETags);
 
-        } catch (RemoteException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        } catch (OperationApplicationException e) {
-          SyncWorkerUtil.handleException(context, e, result);
-        }
-      }
+      for (String uidMissingLocally : uidsMissingLocally)
+        uidsChangedRemotely.remove(uidMissingLocally);
 
-    } catch (DavException e) {
+      removedUids.removeAll(SyncWorkerUtil.handleFilterUidsMissingLocally(localIndex, removedUids));
+
+      pullRemotelyCreatedComponents(uidsMissingLocally, result);
+      pullRemotelyChangedComponents(uidsChangedRemotely.keySet(), result);
+      purgeRemotelyDeletedComponents(removedUids, result);
+
+      nextSyncToken = changes.getSyncToken();
+      return true;
+
+    } catch (InvalidSyncTokenException e) {
+      handleLogMessage("server rejected our sync token, will fall back to diffing etags");
+      return false;
+    } catch (PropertyParseException e) {
       SyncWorkerUtil.handleException(context, e, result);
-    } catch (IOException e) {
+    } catch (DavException e) {
       SyncWorkerUtil.handleException(context, e, result);
     } catch (RemoteException e) {
       SyncWorkerUtil.handleException(context, e, result);
+    } catch (IOException e) {
+      SyncWorkerUtil.handleException(context, e, result);
     }
+
+    return true;
   }
 }
@@ -30,11 +30,16 @@ import android.os.RemoteException;
 import android.util.Log;
 import android.util.Pair;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
 import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -52,6 +57,8 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
   protected final String  remotePath;
   protected final Long    localId;
 
+  private Optional<LocalComponentIndex> componentIndex = Optional.absent();
+
   public AbstractLocalComponentCollection(ContentProviderClient client,
                                           Account               account,
                                           String                remotePath,
@@ -85,6 +92,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
   protected abstract String getColumnNameComponentLocalId();
   protected abstract String getColumnNameComponentUid();
   protected abstract String getColumnNameComponentETag();
+  protected abstract String getColumnNameComponentContentHash();
 
   protected abstract String getColumnNameDirty();
   protected abstract String getColumnNameDeleted();
@@ -95,7 +103,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
     final String   SELECTION  = getColumnNameComponentUid() + " IS NULL AND " +
                                 getColumnNameCollectionLocalId()  + "=" + localId;
 
-    Cursor     cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor     cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     List<Long> newIds = new LinkedList<Long>();
 
     if (cursor == null)
@@ -116,7 +124,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                                 getColumnNameComponentUid() + " IS NOT NULL AND " +
                                 getColumnNameCollectionLocalId() + "=" + localId;
 
-    Cursor                   cursor  = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor                   cursor  = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     List<Pair<Long, String>> idPairs = new LinkedList<Pair<Long, String>>();
 
     if (cursor == null)
@@ -137,7 +145,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                                 getColumnNameComponentUid() + " IS NOT NULL AND " +
                                 getColumnNameCollectionLocalId() + "=" + localId;
 
-    Cursor                   cursor  = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor                   cursor  = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     List<Pair<Long, String>> idPairs = new LinkedList<Pair<Long, String>>();
 
     if (cursor == null)
@@ -159,13 +167,29 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                                       getColumnNameDeleted()      + "=1) AND "       +
                                 getColumnNameCollectionLocalId()  + "=" + localId;
 
-    Cursor  cursor     = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor  cursor     = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     boolean hasChanges = cursor.moveToNext();
 
     cursor.close();
     return hasChanges;
   }
 
+  public int getComponentCount() throws RemoteException {
+    final String[] PROJECTION = new String[]{getColumnNameComponentLocalId()};
+    final String   SELECTION  = getColumnNameDeleted() + "=0 AND " +
+                                getColumnNameCollectionLocalId() + "=" + localId;
+
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    int count = cursor.getCount();
+    cursor.close();
+
+    return count;
+  }
+
   public List<Long> getComponentIds() throws RemoteException {
     final String[] PROJECTION = new String[]{getColumnNameComponentLocalId(), getColumnNameComponentUid()};
           String   selection  = null;
@@ -180,14 +204,18 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                   getColumnNameAccountType() + " IS NULL";
     }
 
-    Cursor     cursor = client.query(getUriForComponents(), PROJECTION, selection, null, null);
-    List<Long> componentIds = new LinkedList<Long>();
+    Cursor     cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, selection, null, null);
+    List<Long> componentIds;
+    Set<Long>  seenIds;
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
+    componentIds = new ArrayList<Long>(cursor.getCount());
+    seenIds      = new HashSet<Long>(cursor.getCount());
+
     while (cursor.moveToNext()) {
-      if (!componentIds.contains(cursor.getLong(0))) // android gets weird sometimes :(
+      if (seenIds.add(cursor.getLong(0))) // android gets weird sometimes :(
         componentIds.add(cursor.getLong(0));
     }
     cursor.close();
@@ -210,11 +238,11 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                   getColumnNameAccountType()       + " IS NULL";
     }
 
-    Cursor cursor = client.query(getUriForComponents(),
-                                 PROJECTION,
-                                 selection,
-                                 SELECTION_ARGS,
-                                 null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(),
+                                              PROJECTION,
+                                              selection,
+                                              SELECTION_ARGS,
+                                              null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
@@ -233,11 +261,11 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                                     getColumnNameCollectionLocalId() + "=" + localId;
     final String[] SELECTION_ARGS = new String[]{uid};
 
-    Cursor cursor = client.query(getUriForComponents(),
-                                 PROJECTION,
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(),
+                                              PROJECTION,
+                                              SELECTION,
+                                              SELECTION_ARGS,
+                                              null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
@@ -255,7 +283,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
     final String   SELECTION      = getColumnNameComponentLocalId()  + "=" + localId + " AND " +
                                     getColumnNameCollectionLocalId() + "=" + this.localId;
 
-    Cursor cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
@@ -267,6 +295,28 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
     return result;
   }
 
+  /*
+  fetches one component at a time, collections which can read many at once should override.
+   */
+  public LocalComponentLoader<T> getComponentLoader(List<Long> localIds) {
+    return new LocalComponentLoader<T>() {
+      @Override
+      public Optional<ComponentETagPair<T>> getComponent(Long localId)
+          throws RemoteException, InvalidLocalComponentException
+      {
+        Optional<String> uid = getUidForLocalId(localId);
+        if (uid.isPresent())
+          return AbstractLocalComponentCollection.this.getComponent(uid.get());
+
+        Optional<T> component = AbstractLocalComponentCollection.this.getComponent(localId);
+        if (!component.isPresent())
+          return Optional.absent();
+
+        return Optional.of(new ComponentETagPair<T>(component.get(), Optional.<String>absent()));
+      }
+    };
+  }
+
   public String populateComponentUid(Long localId)
       throws OperationApplicationException, RemoteException
   {
@@ -333,7 +383,7 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
                                 "AND " + getColumnNameDeleted() + "=0 AND " +
                                 getColumnNameCollectionLocalId() + "=" + localId;
 
-    Cursor                  cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor                  cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     HashMap<String, String> pairs  = new HashMap<String, String>();
 
     if (cursor == null)
@@ -346,6 +396,71 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
     return pairs;
   }
 
+  public HashMap<String, String> getComponentContentHashes() throws RemoteException {
+    final String[] PROJECTION = new String[]{getColumnNameComponentUid(), getColumnNameComponentContentHash()};
+    final String   SELECTION  = getColumnNameComponentUid() + " IS NOT NULL " +
+                                "AND " + getColumnNameComponentContentHash() + " IS NOT NULL " +
+                                "AND " + getColumnNameCollectionLocalId() + "=" + localId;
+
+    Cursor                  cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
+    HashMap<String, String> hashes = new HashMap<String, String>();
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext())
+      hashes.put(cursor.getString(0), cursor.getString(1));
+    cursor.close();
+
+    return hashes;
+  }
+
+  public void setComponentIndex(Optional<LocalComponentIndex> componentIndex) {
+    this.componentIndex = componentIndex;
+  }
+
+  /*
+  answers from the index a sync run already built when it can, a UID the index does not hold
+  is not in the collection. falls back to a query for UIDs committed since the index was built.
+   */
+  protected Optional<Long> getIndexedLocalIdForUid(String uid) throws RemoteException {
+    if (componentIndex.isPresent()) {
+      Optional<LocalComponentIndex.Entry> entry = componentIndex.get().getEntry(uid);
+      if (!entry.isPresent())
+        return Optional.absent();
+
+      if (entry.get().getLocalId().isPresent())
+        return entry.get().getLocalId();
+    }
+
+    return getLocalIdForUid(uid);
+  }
+
+  public LocalComponentIndex getComponentIndex() throws RemoteException {
+    final String[] PROJECTION = new String[]{getColumnNameComponentLocalId(), getColumnNameComponentUid(),
+                                             getColumnNameComponentETag(),    getColumnNameDirty(),
+                                             getColumnNameDeleted(),          getColumnNameComponentContentHash()};
+    final String   SELECTION  = getColumnNameComponentUid() + " IS NOT NULL AND " +
+                                getColumnNameCollectionLocalId() + "=" + localId;
+
+    Cursor                                     cursor  = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
+    HashMap<String, LocalComponentIndex.Entry> entries = new HashMap<String, LocalComponentIndex.Entry>();
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      entries.put(cursor.getString(1), new LocalComponentIndex.Entry(Optional.of(cursor.getLong(0)),
+                                                                     Optional.fromNullable(cursor.getString(2)),
+                                                                     Optional.fromNullable(cursor.getString(5)),
+                                                                     cursor.getInt(3) != 0,
+                                                                     cursor.getInt(4) != 0));
+    }
+    cursor.close();
+
+    return new LocalComponentIndex(entries);
+  }
+
   public void cleanComponent(Long localId) {
     Log.d(TAG, "cleanComponent() localId " + localId);
 
@@ -355,6 +470,33 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
         .build());
   }
 
+  /*
+  touches only the one column, components whose content did not change are left as is.
+   */
+  public void setComponentETag(String uid, Optional<String> eTag) {
+    final String   SELECTION      = getColumnNameComponentUid()      + "=? AND " +
+                                    getColumnNameCollectionLocalId() + "=" + localId;
+    final String[] SELECTION_ARGS = new String[]{uid};
+
+    operationQueue.queue(ContentProviderOperation
+        .newUpdate(getUriForComponents())
+        .withSelection(SELECTION, SELECTION_ARGS)
+        .withValue(getColumnNameComponentETag(), eTag.orNull())
+        .build());
+  }
+
+  public void setComponentContentHash(String uid, Optional<String> contentHash) {
+    final String   SELECTION      = getColumnNameComponentUid()      + "=? AND " +
+                                    getColumnNameCollectionLocalId() + "=" + localId;
+    final String[] SELECTION_ARGS = new String[]{uid};
+
+    operationQueue.queue(ContentProviderOperation
+        .newUpdate(getUriForComponents())
+        .withSelection(SELECTION, SELECTION_ARGS)
+        .withValue(getColumnNameComponentContentHash(), contentHash.orNull())
+        .build());
+  }
+
   public void dirtyComponent(Long localId) {
     Log.d(TAG, "dirtyComponent() localId " + localId);
 
@@ -372,6 +514,14 @@ public abstract class AbstractLocalComponentCollection<T> implements LocalCompon
         .build());
   }
 
+  public int getPendingOperationCount() {
+    return operationQueue.size();
+  }
+
+  public boolean hasSpaceForPendingOperations() {
+    return operationQueue.hasSpace();
+  }
+
   public int commitPendingOperations()
       throws OperationApplicationException, RemoteException
   {
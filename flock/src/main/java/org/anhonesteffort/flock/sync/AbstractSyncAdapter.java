@@ -43,9 +43,7 @@ import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 /**
  * Programmer: rhodey
@@ -140,18 +138,18 @@ public abstract class AbstractSyncAdapter extends AbstractThreadedSyncAdapter {
       List<SyncWorker> workers = getSyncWorkers(!forceSync && !syncIntervalHasPassed());
 
       if (workers.size() > 0) {
-        Log.d(TAG, "starting thread executor service for " + workers.size() + " " +
-                   authority + " sync workers.");
-        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        Log.d(TAG, "submitting " + workers.size() + " " + authority + " sync workers.");
+        SyncWorkerExecutor executor = SyncWorkerExecutor.getInstance(getContext());
+        List<Future<Void>> futures  = executor.submit(workers);
 
-        for (SyncWorker worker : workers)
-          executor.execute(worker);
+        try {
 
-        executor.shutdown();
-        executor.awaitTermination(60, TimeUnit.MINUTES);
+          executor.awaitCompletion(workers, futures);
 
-        for (SyncWorker worker : workers)
-          worker.cleanup();
+        } finally {
+          for (SyncWorker worker : workers)
+            worker.cleanup();
+        }
       }
 
       handlePostSyncOperations();
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.util.Log;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.WebDavConstants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class AdaptiveMultiGetBatcher {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.AdaptiveMultiGetBatcher";
+
+  protected static final int  MIN_COMPONENTS_PER_REPORT     = 1;
+  protected static final int  DEFAULT_COMPONENTS_PER_REPORT = 50;
+  protected static final int  MAX_COMPONENTS_PER_REPORT     = 500;
+  protected static final long TARGET_REPORT_SIZE_BYTES      = 1024L * 1024L;
+  protected static final long TARGET_REPORT_TIME_MS         = 10000L;
+
+  private final ArrayDeque<String> remainingUids;
+  private final List<Integer>      batchSizeHistory;
+
+  private int    batchSize;
+  private double bytesPerComponent;
+
+  public AdaptiveMultiGetBatcher(Collection<String> uids, int initialBatchSize) {
+    remainingUids     = new ArrayDeque<String>(uids);
+    batchSizeHistory  = new LinkedList<Integer>();
+    batchSize         = clamp(initialBatchSize);
+    bytesPerComponent = 0;
+  }
+
+  public AdaptiveMultiGetBatcher(Collection<String> uids) {
+    this(uids, DEFAULT_COMPONENTS_PER_REPORT);
+  }
+
+  private static int clamp(long size) {
+    return (int) Math.max(MIN_COMPONENTS_PER_REPORT, Math.min(MAX_COMPONENTS_PER_REPORT, size));
+  }
+
+  public synchronized int getRemainingCount() {
+    return remainingUids.size();
+  }
+
+  public synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  public synchronized List<Integer> getBatchSizeHistory() {
+    return new ArrayList<Integer>(batchSizeHistory);
+  }
+
+  public synchronized Optional<List<String>> nextBatch() {
+    if (remainingUids.isEmpty())
+      return Optional.absent();
+
+    List<String> batch = new ArrayList<String>(Math.min(batchSize, remainingUids.size()));
+    while (batch.size() < batchSize && !remainingUids.isEmpty())
+      batch.add(remainingUids.pollFirst());
+
+    batchSizeHistory.add(batch.size());
+    return Optional.of(batch);
+  }
+
+  /*
+  grows by at most 2x per report, shrinks straight to whatever the size and latency
+  targets allow.
+   */
+  public synchronized void handleReportCompleted(int componentCount, long componentDataSize, long elapsedMs) {
+    if (componentCount <= 0)
+      return;
+
+    double observedBytesPerComponent = (double) componentDataSize / componentCount;
+    if (bytesPerComponent == 0)
+      bytesPerComponent = observedBytesPerComponent;
+    else
+      bytesPerComponent = (bytesPerComponent + observedBytesPerComponent) / 2;
+
+    long nextSize = (long) batchSize * 2;
+
+    if (bytesPerComponent > 0)
+      nextSize = Math.min(nextSize, (long) (TARGET_REPORT_SIZE_BYTES / bytesPerComponent));
+
+    if (elapsedMs > TARGET_REPORT_TIME_MS)
+      nextSize = Math.min(nextSize, componentCount * TARGET_REPORT_TIME_MS / elapsedMs);
+
+    batchSize = clamp(nextSize);
+  }
+
+  public static boolean isBackOffStatus(int statusCode) {
+    return statusCode == WebDavConstants.SC_REQUEST_ENTITY_TOO_LARGE ||
+           statusCode == WebDavConstants.SC_INSUFFICIENT_STORAGE;
+  }
+
+  /*
+  puts the rejected UIDs back at the front of the line and halves the batch size, returns
+  false when a single component report was rejected and there is nothing left to shrink.
+   */
+  public synchronized boolean handleReportRejected(List<String> uids) {
+    if (uids.size() <= MIN_COMPONENTS_PER_REPORT)
+      return false;
+
+    batchSize = clamp(Math.min(batchSize, uids.size()) / 2);
+    Log.w(TAG, "server rejected report of " + uids.size() + " components, backing off to " + batchSize);
+
+    for (int i = uids.size() - 1; i >= 0; i--)
+      remainingUids.addFirst(uids.get(i));
+
+    return true;
+  }
+
+}
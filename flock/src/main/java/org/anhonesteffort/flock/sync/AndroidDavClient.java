@@ -31,19 +31,25 @@ import java.net.URL;
  */
 public class AndroidDavClient extends DavClient {
 
+  private static Protocol appHttps;
+
   private Context context;
 
+  private static synchronized Protocol getAppHttps(Context context) {
+    if (appHttps == null) {
+      appHttps = new Protocol("https", AppSecureSocketFactory.getInstance(context), 443);
+      Protocol.registerProtocol("https", appHttps);
+    }
+
+    return appHttps;
+  }
+
   private void fixClientTrust() {
     int port = davHost.getPort();
     if (port < 1)
       port = davHost.getDefaultPort();
 
-    boolean                useFlockTrustStore = davHost.toString().equals(OwsWebDav.HREF_WEBDAV_HOST);
-    AppSecureSocketFactory appSocketFactory   = new AppSecureSocketFactory(context, useFlockTrustStore);
-    Protocol               appHttps           = new Protocol("https", appSocketFactory, port);
-
-    hostConfiguration.setHost(davHost.getHost(), port, appHttps);
-    Protocol.registerProtocol("https", appHttps);
+    hostConfiguration.setHost(davHost.getHost(), port, getAppHttps(context));
   }
 
   public AndroidDavClient(Context context,
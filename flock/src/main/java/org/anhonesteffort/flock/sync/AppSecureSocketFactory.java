@@ -44,13 +44,23 @@ public class AppSecureSocketFactory implements SecureProtocolSocketFactory {
 
   private static final String TAG = "org.anhonesteffort.flock.sync.AppSecureSocketFactory";
 
-  private Context    appContext;
-  private boolean    useFlockTrustStore;
-  private SSLContext sslContext;
+  private static final int SESSION_TIMEOUT_SECONDS = 60 * 60;
 
-  public AppSecureSocketFactory(Context context, boolean useFlockTrustStore) {
-    this.appContext         = context;
-    this.useFlockTrustStore = useFlockTrustStore;
+  private static AppSecureSocketFactory instance;
+
+  private final Context    appContext;
+  private       SSLContext flockSSLContext;
+  private       SSLContext systemSSLContext;
+
+  private AppSecureSocketFactory(Context context) {
+    this.appContext = context;
+  }
+
+  public static synchronized AppSecureSocketFactory getInstance(Context context) {
+    if (instance == null)
+      instance = new AppSecureSocketFactory(context.getApplicationContext());
+
+    return instance;
   }
 
   private static SSLContext createAppStoreSSLContext(Context appContext, boolean useFlockTrustStore)
@@ -59,13 +69,14 @@ public class AppSecureSocketFactory implements SecureProtocolSocketFactory {
     if (appContext == null)
       throw new HttpClientError("application context is null :(");
 
-    KeyStore trustStore;
+    KeyStore    trustStore;
+    InputStream keyStoreInputStream = null;
 
     try {
 
       if (useFlockTrustStore) {
         AssetManager assetManager        = appContext.getAssets();
-        InputStream  keyStoreInputStream = assetManager.open("flock.store");
+                     keyStoreInputStream = assetManager.open("flock.store");
                      trustStore          = KeyStore.getInstance("BKS");
 
         trustStore.load(keyStoreInputStream, "owsflock".toCharArray());
@@ -80,41 +91,57 @@ public class AppSecureSocketFactory implements SecureProtocolSocketFactory {
 
       SSLContext sslContext = SSLContext.getInstance("TLS");
       sslContext.init(null, tmf.getTrustManagers(), null);
+      sslContext.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
 
       return sslContext;
 
     } catch (Exception e) {
       Log.e(TAG, "createAppStoreSSLContext() - flock store? " + useFlockTrustStore, e);
       throw new HttpClientError(e.toString());
+    } finally {
+      if (keyStoreInputStream != null) {
+        try {
+          keyStoreInputStream.close();
+        } catch (IOException e) {
+          Log.w(TAG, "caught exception while closing flock.store", e);
+        }
+      }
     }
   }
-  
-  private SSLContext getSSLContext() throws HttpClientError {
-    if (sslContext == null)
-      sslContext = createAppStoreSSLContext(appContext, useFlockTrustStore);
 
-    return sslContext;
+  private synchronized SSLContext getSSLContext(String host) throws HttpClientError {
+    if (OwsWebDav.WEBDAV_HOST.equalsIgnoreCase(host)) {
+      if (flockSSLContext == null)
+        flockSSLContext = createAppStoreSSLContext(appContext, true);
+
+      return flockSSLContext;
+    }
+
+    if (systemSSLContext == null)
+      systemSSLContext = createAppStoreSSLContext(appContext, false);
+
+    return systemSSLContext;
   }
 
   @Override
   public Socket createSocket(String host, int port)
       throws HttpClientError, IOException
   {
-    return getSSLContext().getSocketFactory().createSocket(host, port);
+    return getSSLContext(host).getSocketFactory().createSocket(host, port);
   }
 
   @Override
   public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
       throws HttpClientError, IOException
   {
-    return getSSLContext().getSocketFactory().createSocket(socket, host, port, autoClose);
+    return getSSLContext(host).getSocketFactory().createSocket(socket, host, port, autoClose);
   }
 
   @Override
   public Socket createSocket(String host, int port, InetAddress localAddress, int localPort)
       throws HttpClientError, IOException
   {
-    return getSSLContext().getSocketFactory().createSocket(host, port, localAddress, localPort);
+    return getSSLContext(host).getSocketFactory().createSocket(host, port, localAddress, localPort);
   }
 
   @Override
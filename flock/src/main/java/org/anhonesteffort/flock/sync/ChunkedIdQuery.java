@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class ChunkedIdQuery {
+
+  public static final int MAX_IDS_PER_QUERY = 250;
+
+  private final List<Long>             ids;
+  private final HashMap<Long, Integer> positions;
+
+  public ChunkedIdQuery(List<Long> ids) {
+    this.ids  = new ArrayList<Long>(ids);
+    positions = new HashMap<Long, Integer>(ids.size());
+
+    for (int i = 0; i < this.ids.size(); i++) {
+      if (!positions.containsKey(this.ids.get(i)))
+        positions.put(this.ids.get(i), i);
+    }
+  }
+
+  public static String getSelectionForIds(String column, Collection<Long> ids) {
+    StringBuilder selection = new StringBuilder(column).append(" IN (");
+    boolean       first     = true;
+
+    for (Long id : ids) {
+      if (!first)
+        selection.append(',');
+
+      selection.append(id);
+      first = false;
+    }
+
+    return selection.append(')').toString();
+  }
+
+  /*
+  ids nobody said would be asked for are loaded on their own.
+   */
+  public List<Long> getChunkStartingAt(Long id) {
+    List<Long> chunkIds = new ArrayList<Long>(MAX_IDS_PER_QUERY);
+    Integer    position = positions.get(id);
+
+    if (position == null)
+      chunkIds.add(id);
+    else {
+      for (int i = position; i < ids.size() && chunkIds.size() < MAX_IDS_PER_QUERY; i++)
+        chunkIds.add(ids.get(i));
+    }
+
+    return chunkIds;
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * rhodey
+ */
+public class ComponentContentHash {
+
+  private static final Set<String> VOLATILE_PROPERTIES = new HashSet<String>(Arrays.asList(
+      "PRODID", "REV", "DTSTAMP"
+  ));
+
+  private static List<String> getUnfoldedLines(String componentText) {
+    List<String>  lines   = new ArrayList<String>();
+    StringBuilder current = null;
+
+    for (String line : componentText.split("\r\n|\n")) {
+      if (current != null && (line.startsWith(" ") || line.startsWith("\t")))
+        current.append(line, 1, line.length());
+      else {
+        if (current != null)
+          lines.add(current.toString());
+        current = new StringBuilder(line);
+      }
+    }
+
+    if (current != null)
+      lines.add(current.toString());
+
+    return lines;
+  }
+
+  private static String getPropertyName(String line) {
+    int end = 0;
+    while (end < line.length() && line.charAt(end) != ':' && line.charAt(end) != ';')
+      end++;
+
+    return line.substring(0, end).toUpperCase();
+  }
+
+  /*
+  one BEGIN/END block of the component text, properties are kept per block so nothing
+  can move between sibling or nested components without changing the digest.
+   */
+  private static class Block {
+
+    private final String       name;
+    private final Block        parent;
+    private final List<String> properties = new ArrayList<String>();
+    private final List<String> children   = new ArrayList<String>();
+
+    private Block(String name, Block parent) {
+      this.name   = name;
+      this.parent = parent;
+    }
+
+    private String digest() {
+      Collections.sort(properties);
+      Collections.sort(children);
+
+      MessageDigest digest = newDigest();
+      update(digest, "BEGIN:" + name);
+
+      for (String property : properties)
+        update(digest, property);
+      for (String child : children)
+        update(digest, child);
+
+      update(digest, "END:" + name);
+      return toHex(digest.digest());
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+
+      return MessageDigest.getInstance("SHA-256");
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-256 is missing", e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String line) {
+    try {
+
+      digest.update(line.getBytes("UTF-8"));
+      digest.update((byte) '\n');
+
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("UTF-8 is missing", e);
+    }
+  }
+
+  private static String toHex(byte[] digest) {
+    StringBuilder hex = new StringBuilder();
+    for (byte hashByte : digest)
+      hex.append(String.format("%02x", hashByte & 0xFF));
+
+    return hex.toString();
+  }
+
+  private static String getPropertyValue(String line) {
+    int colon = line.indexOf(':');
+    return (colon < 0) ? "" : line.substring(colon + 1).trim().toUpperCase();
+  }
+
+  /*
+  properties are sorted within their block and every block is reduced to a digest before
+  its parent sorts it among its siblings, unbalanced END lines are hashed as properties.
+   */
+  public static String build(String componentText) {
+    Block root    = new Block("", null);
+    Block current = root;
+
+    for (String line : getUnfoldedLines(componentText)) {
+      if (line.length() == 0)
+        continue;
+
+      String propertyName = getPropertyName(line);
+
+      if (propertyName.equals("BEGIN"))
+        current = new Block(getPropertyValue(line), current);
+
+      else if (propertyName.equals("END") && current.parent != null &&
+               current.name.equals(getPropertyValue(line)))
+      {
+        current.parent.children.add(current.digest());
+        current = current.parent;
+      }
+
+      else if (!VOLATILE_PROPERTIES.contains(propertyName))
+        current.properties.add(line);
+    }
+
+    while (current.parent != null) {
+      current.parent.children.add(current.digest());
+      current = current.parent;
+    }
+
+    return root.digest();
+  }
+
+  /*
+  true when a locally dirty component still has the content it had when last synced.
+   */
+  public static boolean matches(Optional<String> contentHash, String lastContentHash) {
+    return contentHash.isPresent() && contentHash.get().equals(lastContentHash);
+  }
+
+}
@@ -23,6 +23,8 @@ import android.content.ContentProviderResult;
 import android.content.OperationApplicationException;
 import android.os.RemoteException;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -75,8 +77,11 @@ public class ContentProviderOperationQueue {
 
     try {
 
-      if (!operations.isEmpty())
+      if (!operations.isEmpty()) {
+        long startNanos = System.nanoTime();
         result = client.applyBatch(operations);
+        SyncMetrics.handleProviderBatch(operations.size(), System.nanoTime() - startNanos);
+      }
 
     } finally {
       operations.clear();
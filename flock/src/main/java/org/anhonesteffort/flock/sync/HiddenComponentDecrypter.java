@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.sync;
+
+import org.anhonesteffort.flock.crypto.InvalidMacException;
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.MultiStatusResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * rhodey
+ */
+public class HiddenComponentDecrypter {
+
+  private static final int  THREAD_COUNT            = Math.max(1, Runtime.getRuntime().availableProcessors());
+  private static final int  MIN_COMPONENTS_PER_TASK = 4;
+  private static final long IDLE_THREAD_TIMEOUT_MS  = 30000;
+
+  private static ThreadPoolExecutor executor;
+
+  public interface ComponentDecrypter<T> {
+    public ComponentETagPair<T> getHiddenComponent(ComponentETagPair<T> exposedComponentPair)
+        throws InvalidRemoteComponentException, InvalidMacException, GeneralSecurityException, IOException;
+  }
+
+  private static class Outcome<T> {
+
+    private final ComponentETagPair<T>            componentPair;
+    private final InvalidRemoteComponentException invalidComponentException;
+    private final InvalidMacException             invalidMacException;
+
+    private Outcome(ComponentETagPair<T>            componentPair,
+                    InvalidRemoteComponentException invalidComponentException,
+                    InvalidMacException             invalidMacException)
+    {
+      this.componentPair             = componentPair;
+      this.invalidComponentException = invalidComponentException;
+      this.invalidMacException       = invalidMacException;
+    }
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                                        IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                                        new LinkedBlockingQueue<Runnable>(),
+                                        new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "HiddenComponentDecrypter-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.allowCoreThreadTimeOut(true);
+    }
+
+    return executor;
+  }
+
+  private static <T> void handleDecryptRange(ComponentDecrypter<T>      decrypter,
+                                             List<ComponentETagPair<T>> exposedComponentPairs,
+                                             List<Outcome<T>>           outcomes,
+                                             int                        fromIndex,
+                                             int                        toIndex)
+      throws GeneralSecurityException, IOException
+  {
+    for (int i = fromIndex; i < toIndex; i++) {
+      try {
+
+        outcomes.set(i, new Outcome<T>(decrypter.getHiddenComponent(exposedComponentPairs.get(i)), null, null));
+
+      } catch (InvalidRemoteComponentException e) {
+        outcomes.set(i, new Outcome<T>(null, e, null));
+      } catch (InvalidMacException e) {
+        outcomes.set(i, new Outcome<T>(null, null, e));
+      }
+    }
+  }
+
+  private static void handleRethrowCause(ExecutionException e)
+      throws GeneralSecurityException, IOException
+  {
+    Throwable cause = e.getCause();
+
+    if (cause instanceof GeneralSecurityException)
+      throw (GeneralSecurityException) cause;
+    else if (cause instanceof IOException)
+      throw (IOException) cause;
+    else if (cause instanceof RuntimeException)
+      throw (RuntimeException) cause;
+    else if (cause instanceof Error)
+      throw (Error) cause;
+
+    throw new IOException("failed to decrypt hidden components", cause);
+  }
+
+  public static <T> DecryptedMultiStatusResult<T> getHiddenComponents(MultiStatusResult<T>        exposedComponents,
+                                                                      final ComponentDecrypter<T> decrypter)
+      throws GeneralSecurityException, IOException
+  {
+    final List<ComponentETagPair<T>> exposedComponentPairs =
+        new ArrayList<ComponentETagPair<T>>(exposedComponents.getComponentETagPairs());
+    final List<Outcome<T>> outcomes =
+        new ArrayList<Outcome<T>>(Collections.<Outcome<T>>nCopies(exposedComponentPairs.size(), null));
+
+    int taskCount = Math.min(THREAD_COUNT, exposedComponentPairs.size() / MIN_COMPONENTS_PER_TASK);
+
+    if (taskCount <= 1)
+      handleDecryptRange(decrypter, exposedComponentPairs, outcomes, 0, exposedComponentPairs.size());
+    else {
+      List<Callable<Void>> tasks         = new LinkedList<Callable<Void>>();
+      int                  componentsPer = (exposedComponentPairs.size() + taskCount - 1) / taskCount;
+
+      for (int fromIndex = 0; fromIndex < exposedComponentPairs.size(); fromIndex += componentsPer) {
+        final int taskFromIndex = fromIndex;
+        final int taskToIndex   = Math.min(fromIndex + componentsPer, exposedComponentPairs.size());
+
+        tasks.add(SyncMetrics.wrap(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            handleDecryptRange(decrypter, exposedComponentPairs, outcomes, taskFromIndex, taskToIndex);
+            return null;
+          }
+        }));
+      }
+
+      try {
+
+        for (Future<Void> future : getExecutor().invokeAll(tasks))
+          future.get();
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while decrypting hidden components");
+      } catch (ExecutionException e) {
+        handleRethrowCause(e);
+      }
+    }
+
+    DecryptedMultiStatusResult<T> decryptedComponents = new DecryptedMultiStatusResult<T>(
+        new LinkedList<ComponentETagPair<T>>(),
+        exposedComponents.getInvalidComponentExceptions(),
+        new LinkedList<InvalidMacException>()
+    );
+
+    for (Outcome<T> outcome : outcomes) {
+      if (outcome.invalidComponentException != null)
+        decryptedComponents.getInvalidComponentExceptions().add(outcome.invalidComponentException);
+      else if (outcome.invalidMacException != null)
+        decryptedComponents.getInvalidMacExceptions().add(outcome.invalidMacException);
+      else
+        decryptedComponents.getComponentETagPairs().add(outcome.componentPair);
+    }
+
+    return decryptedComponents;
+  }
+}
@@ -22,7 +22,12 @@ package org.anhonesteffort.flock.sync;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.crypto.InvalidMacException;
 import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.ComponentHandler;
+import org.anhonesteffort.flock.webdav.DavClient;
+import org.anhonesteffort.flock.webdav.InvalidSyncTokenException;
+import org.anhonesteffort.flock.webdav.MultiStatusResult;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
+import org.anhonesteffort.flock.webdav.SyncCollectionResult;
 import org.apache.jackrabbit.webdav.DavException;
 
 import java.io.IOException;
@@ -39,6 +44,10 @@ public interface HidingDavCollection<T> {
 
   public Optional<String> getCTag() throws PropertyParseException;
 
+  public Optional<String> getSyncToken() throws PropertyParseException;
+
+  public boolean isSyncCollectionSupported() throws PropertyParseException;
+
   public boolean isFlockCollection() throws PropertyParseException;
 
   public void makeFlockCollection(String displayName) throws DavException, IOException, GeneralSecurityException;
@@ -53,6 +62,9 @@ public interface HidingDavCollection<T> {
 
   public HashMap<String, String> getComponentETags() throws DavException, IOException;
 
+  public SyncCollectionResult getComponentETagsSince(String syncToken)
+      throws InvalidSyncTokenException, DavException, IOException;
+
   public Optional<ComponentETagPair<T>> getHiddenComponent(String uid)
       throws InvalidRemoteComponentException, DavException,
       InvalidMacException, GeneralSecurityException, IOException;
@@ -63,6 +75,13 @@ public interface HidingDavCollection<T> {
   public DecryptedMultiStatusResult<T> getHiddenComponents()
       throws DavException, GeneralSecurityException, IOException;
 
+  public MultiStatusResult<T> getComponents(List<String> uids) throws DavException, IOException;
+
+  public long getComponents(List<String> uids, ComponentHandler<T> handler) throws DavException, IOException;
+
+  public DecryptedMultiStatusResult<T> getHiddenComponents(MultiStatusResult<T> exposedComponents)
+      throws GeneralSecurityException, IOException;
+
   public void addHiddenComponent(T component)
       throws InvalidLocalComponentException, DavException, GeneralSecurityException, IOException;
 
@@ -71,6 +90,8 @@ public interface HidingDavCollection<T> {
 
   public void removeComponent(String path) throws DavException, IOException;
 
+  public DavClient getClient();
+
   public void closeHttpConnection();
 
 }
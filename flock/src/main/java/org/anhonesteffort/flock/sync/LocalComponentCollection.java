@@ -39,6 +39,10 @@ public interface LocalComponentCollection<T> {
 
   public void setCTag(String ctag) throws RemoteException;
 
+  public Optional<String> getSyncToken() throws RemoteException;
+
+  public void setSyncToken(String syncToken) throws RemoteException;
+
   public Optional<String> getDisplayName() throws RemoteException;
 
   public void setDisplayName(String displayName) throws RemoteException;
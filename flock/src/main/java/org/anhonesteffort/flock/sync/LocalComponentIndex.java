@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * rhodey
+ */
+public class LocalComponentIndex {
+
+  public static class Entry {
+
+    private final Optional<Long>   localId;
+    private final Optional<String> eTag;
+    private final Optional<String> contentHash;
+    private final boolean          dirty;
+    private final boolean          deleted;
+
+    public Entry(Optional<Long>   localId,
+                 Optional<String> eTag,
+                 Optional<String> contentHash,
+                 boolean          dirty,
+                 boolean          deleted)
+    {
+      this.localId     = localId;
+      this.eTag        = eTag;
+      this.contentHash = contentHash;
+      this.dirty       = dirty;
+      this.deleted     = deleted;
+    }
+
+    public Optional<Long> getLocalId() {
+      return localId;
+    }
+
+    public Optional<String> getETag() {
+      return eTag;
+    }
+
+    public Optional<String> getContentHash() {
+      return contentHash;
+    }
+
+    public boolean isDirty() {
+      return dirty;
+    }
+
+    public boolean isDeleted() {
+      return deleted;
+    }
+  }
+
+  private final HashMap<String, Entry> entries;
+
+  public LocalComponentIndex(HashMap<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public boolean containsUid(String uid) {
+    return entries.containsKey(uid);
+  }
+
+  public Optional<Entry> getEntry(String uid) {
+    return Optional.fromNullable(entries.get(uid));
+  }
+
+  public Optional<Long> getLocalIdForUid(String uid) {
+    Entry entry = entries.get(uid);
+    if (entry == null)
+      return Optional.absent();
+
+    return entry.getLocalId();
+  }
+
+  public Optional<String> getETagForUid(String uid) {
+    Entry entry = entries.get(uid);
+    if (entry == null)
+      return Optional.absent();
+
+    return entry.getETag();
+  }
+
+  /*
+  a remote component whose content matches what we last wrote or read for it locally
+  only needs its new ETag saved, never for components with local changes.
+   */
+  public boolean isContentUnchanged(String uid, Optional<String> remoteContentHash) {
+    Entry entry = entries.get(uid);
+    if (entry == null || entry.isDirty() || entry.isDeleted() || !entry.getContentHash().isPresent())
+      return false;
+
+    return ComponentContentHash.matches(remoteContentHash, entry.getContentHash().get());
+  }
+
+  public HashMap<String, Optional<String>> getUidETags() {
+    HashMap<String, Optional<String>> uidETags = new HashMap<String, Optional<String>>(entries.size() * 2);
+
+    for (Map.Entry<String, Entry> entry : entries.entrySet())
+      uidETags.put(entry.getKey(), entry.getValue().getETag());
+
+    return uidETags;
+  }
+
+  /*
+  called only after the operations which created or updated the component have been
+  committed. some collections implement update as delete + insert so the local id of the
+  row is not known without another query, use containsUid() rather than the local id to
+  test for presence.
+   */
+  public void handleComponentCommitted(String uid, Optional<String> eTag) {
+    entries.put(uid, new Entry(Optional.<Long>absent(), eTag, Optional.<String>absent(), false, false));
+  }
+
+  public void handleComponentRemoved(String uid) {
+    entries.remove(uid);
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.sync;
+
+import android.os.RemoteException;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+
+/**
+ * rhodey
+ */
+public interface LocalComponentLoader<T> {
+
+  public Optional<ComponentETagPair<T>> getComponent(Long localId)
+      throws RemoteException, InvalidLocalComponentException;
+
+}
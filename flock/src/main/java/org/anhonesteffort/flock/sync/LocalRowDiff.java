@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.util.Pair;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rhodey
+ */
+public class LocalRowDiff {
+
+  private final List<ContentValues>             insertedRows;
+  private final List<Pair<Long, ContentValues>> updatedRows;
+  private final List<Long>                      deletedRowIds;
+
+  public LocalRowDiff(List<Pair<Long, ContentValues>> existingRows,
+                      List<ContentValues>             wantedRows,
+                      String[]                        ownedColumns)
+  {
+    insertedRows  = new LinkedList<ContentValues>();
+    updatedRows   = new LinkedList<Pair<Long, ContentValues>>();
+    deletedRowIds = new LinkedList<Long>();
+
+    List<Pair<Long, ContentValues>> unmatchedRows = new LinkedList<Pair<Long, ContentValues>>(existingRows);
+    List<ContentValues>             unmatchedWant = new LinkedList<ContentValues>();
+
+    for (ContentValues wantedRow : wantedRows) {
+      boolean matched = false;
+
+      for (int i = 0; i < unmatchedRows.size() && !matched; i++) {
+        if (getChangedValues(unmatchedRows.get(i).second, wantedRow, ownedColumns).size() == 0) {
+          unmatchedRows.remove(i);
+          matched = true;
+        }
+      }
+
+      if (!matched)
+        unmatchedWant.add(wantedRow);
+    }
+
+    for (ContentValues wantedRow : unmatchedWant) {
+      if (!unmatchedRows.isEmpty()) {
+        Pair<Long, ContentValues> existingRow = unmatchedRows.remove(0);
+        ContentValues             newValues   = getChangedValues(existingRow.second, wantedRow, ownedColumns);
+
+        for (Map.Entry<String, Object> wantedValue : wantedRow.valueSet()) {
+          if (!Arrays.asList(ownedColumns).contains(wantedValue.getKey()))
+            putValue(newValues, wantedValue.getKey(), wantedValue.getValue());
+        }
+
+        updatedRows.add(new Pair<Long, ContentValues>(existingRow.first, newValues));
+      }
+      else
+        insertedRows.add(wantedRow);
+    }
+
+    for (Pair<Long, ContentValues> existingRow : unmatchedRows)
+      deletedRowIds.add(existingRow.first);
+  }
+
+  public List<ContentValues> getInsertedRows() {
+    return insertedRows;
+  }
+
+  public List<Pair<Long, ContentValues>> getUpdatedRows() {
+    return updatedRows;
+  }
+
+  public List<Long> getDeletedRowIds() {
+    return deletedRowIds;
+  }
+
+  public static ContentValues getValuesForColumns(Cursor cursor, String[] columns) {
+    ContentValues values = new ContentValues(columns.length);
+
+    for (String column : columns) {
+      int columnIndex = cursor.getColumnIndexOrThrow(column);
+
+      if (cursor.isNull(columnIndex))
+        values.putNull(column);
+      else if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB)
+        values.put(column, cursor.getBlob(columnIndex));
+      else
+        values.put(column, cursor.getString(columnIndex));
+    }
+
+    return values;
+  }
+
+  /*
+  values read back from a cursor come out as strings while values built from a component
+  are typed, compare them the way sqlite would store them.
+   */
+  public static boolean valuesEqual(Object existingValue, Object wantedValue) {
+    if (existingValue == null || wantedValue == null)
+      return existingValue == null && wantedValue == null;
+
+    if (existingValue instanceof byte[] || wantedValue instanceof byte[]) {
+      return existingValue instanceof byte[] && wantedValue instanceof byte[] &&
+             Arrays.equals((byte[]) existingValue, (byte[]) wantedValue);
+    }
+
+    if (existingValue instanceof Boolean)
+      existingValue = ((Boolean) existingValue) ? "1" : "0";
+    if (wantedValue instanceof Boolean)
+      wantedValue = ((Boolean) wantedValue) ? "1" : "0";
+
+    return existingValue.toString().equals(wantedValue.toString());
+  }
+
+  public static ContentValues getChangedValues(ContentValues existingValues,
+                                               ContentValues wantedValues,
+                                               String[]      ownedColumns)
+  {
+    ContentValues changedValues = new ContentValues();
+
+    for (String column : ownedColumns) {
+      Object wantedValue = wantedValues.get(column);
+      if (!valuesEqual(existingValues.get(column), wantedValue))
+        putValue(changedValues, column, wantedValue);
+    }
+
+    return changedValues;
+  }
+
+  private static void putValue(ContentValues values, String key, Object value) {
+    if (value == null)
+      values.putNull(key);
+    else if (value instanceof String)
+      values.put(key, (String) value);
+    else if (value instanceof Long)
+      values.put(key, (Long) value);
+    else if (value instanceof Integer)
+      values.put(key, (Integer) value);
+    else if (value instanceof Short)
+      values.put(key, (Short) value);
+    else if (value instanceof Byte)
+      values.put(key, (Byte) value);
+    else if (value instanceof Boolean)
+      values.put(key, (Boolean) value);
+    else if (value instanceof Double)
+      values.put(key, (Double) value);
+    else if (value instanceof Float)
+      values.put(key, (Float) value);
+    else if (value instanceof byte[])
+      values.put(key, (byte[]) value);
+    else
+      values.put(key, value.toString());
+  }
+
+}
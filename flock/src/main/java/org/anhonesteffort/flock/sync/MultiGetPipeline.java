@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.util.Log;
+
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.ComponentHandler;
+import org.anhonesteffort.flock.webdav.InvalidComponentException;
+import org.anhonesteffort.flock.webdav.MultiStatusResult;
+import org.apache.jackrabbit.webdav.DavException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * rhodey
+ */
+public class MultiGetPipeline<T> {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.MultiGetPipeline";
+
+  private static final int  MAX_QUEUED_BATCHES    = 1;
+  private static final int  COMPONENTS_PER_CHUNK  = 16;
+  private static final long OFFER_TIMEOUT_MS      = 250;
+  private static final long THREAD_KEEP_ALIVE_SEC = 30;
+
+  /*
+  stage threads are shared by every pipeline in the process and idle out between syncs.
+   */
+  private static final ExecutorService STAGE_EXECUTOR = new ThreadPoolExecutor(
+      0, Integer.MAX_VALUE, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS, new SynchronousQueue<Runnable>()
+  );
+
+  public static class Batch<T> {
+
+    private final List<String>                  uids;
+    private final MultiStatusResult<T>          exposedComponents;
+    private final DecryptedMultiStatusResult<T> hiddenComponents;
+    private final Exception                     exception;
+
+    private Batch(List<String>                  uids,
+                  MultiStatusResult<T>          exposedComponents,
+                  DecryptedMultiStatusResult<T> hiddenComponents,
+                  Exception                     exception)
+    {
+      this.uids              = uids;
+      this.exposedComponents = exposedComponents;
+      this.hiddenComponents  = hiddenComponents;
+      this.exception         = exception;
+    }
+
+    private boolean isEndOfStream() {
+      return uids == null;
+    }
+
+    public DecryptedMultiStatusResult<T> getComponents()
+        throws DavException, GeneralSecurityException, IOException
+    {
+      if (exception instanceof DavException)
+        throw (DavException) exception;
+      else if (exception instanceof GeneralSecurityException)
+        throw (GeneralSecurityException) exception;
+      else if (exception instanceof IOException)
+        throw (IOException) exception;
+
+      return hiddenComponents;
+    }
+  }
+
+  private final HidingDavCollection<T>  remoteCollection;
+  private final AdaptiveMultiGetBatcher batcher;
+  private final BlockingQueue<Batch<T>> fetchedBatches;
+  private final BlockingQueue<Batch<T>> decryptedBatches;
+
+  private volatile boolean   stopped = false;
+  private          Future<?> fetchStage;
+  private          Future<?> decryptStage;
+
+  public MultiGetPipeline(HidingDavCollection<T> remoteCollection, AdaptiveMultiGetBatcher batcher) {
+    this.remoteCollection = remoteCollection;
+    this.batcher          = batcher;
+    fetchedBatches        = new ArrayBlockingQueue<Batch<T>>(MAX_QUEUED_BATCHES);
+    decryptedBatches      = new ArrayBlockingQueue<Batch<T>>(MAX_QUEUED_BATCHES);
+  }
+
+  private Batch<T> endOfStream() {
+    return new Batch<T>(null, null, null, null);
+  }
+
+  /*
+  a plain put() would block forever once the consumer has stopped taking, so hand-offs
+  give up as soon as the pipeline is stopped. returns false if the batch was dropped.
+   */
+  private boolean handlePut(BlockingQueue<Batch<T>> queue, Batch<T> batch) throws InterruptedException {
+    while (!stopped) {
+      if (queue.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+        return true;
+    }
+
+    return false;
+  }
+
+  /*
+  hands parsed components to the decrypt stage every COMPONENTS_PER_CHUNK while the report is
+  still streaming in. time spent waiting on the decrypt stage is tracked so it does not count
+  against the server when the batcher sizes the next report.
+   */
+  private class ChunkingHandler implements ComponentHandler<T> {
+
+    private final List<String> uids;
+
+    private List<ComponentETagPair<T>>      components    = new LinkedList<ComponentETagPair<T>>();
+    private List<InvalidComponentException> exceptions    = new LinkedList<InvalidComponentException>();
+    private int                             receivedCount = 0;
+    private long                            blockedTimeMs = 0;
+
+    public ChunkingHandler(List<String> uids) {
+      this.uids = uids;
+    }
+
+    @Override
+    public void handleComponent(ComponentETagPair<T> component) throws IOException {
+      components.add(component);
+      receivedCount++;
+
+      if (components.size() >= COMPONENTS_PER_CHUNK)
+        handleFlush();
+    }
+
+    @Override
+    public void handleInvalidComponent(InvalidComponentException e) throws IOException {
+      exceptions.add(e);
+      receivedCount++;
+    }
+
+    public void handleFlush() throws IOException {
+      if (components.isEmpty() && exceptions.isEmpty())
+        return;
+
+      long startTime = System.currentTimeMillis();
+
+      try {
+
+        if (!handlePut(fetchedBatches, new Batch<T>(uids, new MultiStatusResult<T>(components, exceptions), null, null)))
+          throw new IOException("multi-get pipeline stopped");
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while handing off multi-get chunk");
+      } finally {
+        blockedTimeMs += System.currentTimeMillis() - startTime;
+      }
+
+      components = new LinkedList<ComponentETagPair<T>>();
+      exceptions = new LinkedList<InvalidComponentException>();
+    }
+  }
+
+  private void fetchBatches() throws InterruptedException {
+    try {
+
+      Optional<List<String>> nextUids = batcher.nextBatch();
+      while (nextUids.isPresent() && !stopped) {
+        List<String> uids = nextUids.get();
+
+        try {
+
+          long            startTime = System.currentTimeMillis();
+          ChunkingHandler handler   = new ChunkingHandler(uids);
+          long            dataSize  = remoteCollection.getComponents(uids, handler);
+
+          handler.handleFlush();
+          batcher.handleReportCompleted(uids.size(),
+                                        dataSize,
+                                        System.currentTimeMillis() - startTime - handler.blockedTimeMs);
+
+          if (handler.receivedCount != uids.size())
+            Log.w(TAG, "requested " + uids.size() + " components *BUT INSTEAD* received " + handler.receivedCount);
+
+        } catch (DavException e) {
+          if (!AdaptiveMultiGetBatcher.isBackOffStatus(e.getErrorCode()) || !batcher.handleReportRejected(uids))
+            handlePut(fetchedBatches, new Batch<T>(uids, null, null, e));
+        } catch (IOException e) {
+          handlePut(fetchedBatches, new Batch<T>(uids, null, null, e));
+        } catch (RuntimeException e) {
+          Log.e(TAG, "caught runtime exception while fetching multi-get report", e);
+          handlePut(fetchedBatches, new Batch<T>(uids, null, null, new IOException("multi-get report failed", e)));
+        }
+
+        nextUids = batcher.nextBatch();
+      }
+
+    } finally {
+      handlePut(fetchedBatches, endOfStream());
+    }
+  }
+
+  private void decryptBatches() throws InterruptedException {
+    try {
+
+      Batch<T> fetched = fetchedBatches.take();
+      while (!fetched.isEndOfStream() && !stopped) {
+        if (fetched.exception != null)
+          handlePut(decryptedBatches, fetched);
+        else {
+          try {
+
+            handlePut(decryptedBatches, new Batch<T>(fetched.uids, null,
+                                              remoteCollection.getHiddenComponents(fetched.exposedComponents), null));
+
+          } catch (GeneralSecurityException e) {
+            handlePut(decryptedBatches, new Batch<T>(fetched.uids, null, null, e));
+          } catch (IOException e) {
+            handlePut(decryptedBatches, new Batch<T>(fetched.uids, null, null, e));
+          } catch (RuntimeException e) {
+            Log.e(TAG, "caught runtime exception while decrypting multi-get report", e);
+            handlePut(decryptedBatches, new Batch<T>(fetched.uids, null, null, new IOException("multi-get decrypt failed", e)));
+          }
+        }
+
+        fetched = fetchedBatches.take();
+      }
+
+    } finally {
+      handlePut(decryptedBatches, endOfStream());
+    }
+  }
+
+  public void start() {
+    fetchStage = STAGE_EXECUTOR.submit(SyncMetrics.wrap(new Runnable() {
+      @Override
+      public void run() {
+        try {
+
+          fetchBatches();
+
+        } catch (InterruptedException e) {
+          Log.d(TAG, "fetch stage interrupted");
+        }
+      }
+    }));
+
+    decryptStage = STAGE_EXECUTOR.submit(SyncMetrics.wrap(new Runnable() {
+      @Override
+      public void run() {
+        try {
+
+          decryptBatches();
+
+        } catch (InterruptedException e) {
+          Log.d(TAG, "decrypt stage interrupted");
+        }
+      }
+    }));
+  }
+
+  /*
+  blocks until the next decrypted batch is ready, absent once every report has been handed out.
+   */
+  public Optional<Batch<T>> take() throws InterruptedException {
+    Batch<T> batch = decryptedBatches.take();
+
+    if (batch.isEndOfStream())
+      return Optional.absent();
+
+    return Optional.of(batch);
+  }
+
+  public void stop() {
+    stopped = true;
+
+    if (fetchStage != null)
+      fetchStage.cancel(true);
+    if (decryptStage != null)
+      decryptStage.cancel(true);
+  }
+
+}
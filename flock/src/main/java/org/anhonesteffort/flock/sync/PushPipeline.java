@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.util.Log;
+
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.InvalidComponentException;
+import org.apache.jackrabbit.webdav.DavException;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * rhodey
+ */
+public class PushPipeline<T> {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.PushPipeline";
+
+  public static final int DEFAULT_MAX_CONCURRENT_PUTS = 4;
+
+  public static class Push<T> {
+
+    private final Long                 localId;
+    private final String               uid;
+    private final ComponentETagPair<T> component;
+    private final Optional<String>     contentHash;
+    private final boolean              created;
+    private       Exception            exception;
+
+    public Push(Long                 localId,
+                String               uid,
+                ComponentETagPair<T> component,
+                Optional<String>     contentHash,
+                boolean              created)
+    {
+      this.localId     = localId;
+      this.uid         = uid;
+      this.component   = component;
+      this.contentHash = contentHash;
+      this.created     = created;
+    }
+
+    public Long getLocalId() {
+      return localId;
+    }
+
+    public String getUid() {
+      return uid;
+    }
+
+    public ComponentETagPair<T> getComponent() {
+      return component;
+    }
+
+    /* taken before the PUT, hiding collections are free to modify the component. */
+    public Optional<String> getContentHash() {
+      return contentHash;
+    }
+
+    public boolean isCreated() {
+      return created;
+    }
+
+    public void getResult()
+        throws InvalidComponentException, DavException, GeneralSecurityException, IOException
+    {
+      if (exception instanceof InvalidComponentException)
+        throw (InvalidComponentException) exception;
+      else if (exception instanceof DavException)
+        throw (DavException) exception;
+      else if (exception instanceof GeneralSecurityException)
+        throw (GeneralSecurityException) exception;
+      else if (exception instanceof IOException)
+        throw (IOException) exception;
+    }
+  }
+
+  private final HidingDavCollection<T>     remoteCollection;
+  private final int                        maxConcurrentPuts;
+  private final ExecutorService            executor;
+  private final CompletionService<Push<T>> completionService;
+  private       int                        inFlightCount = 0;
+
+  public PushPipeline(HidingDavCollection<T> remoteCollection, int maxConcurrentPuts) {
+    this.remoteCollection  = remoteCollection;
+    this.maxConcurrentPuts = maxConcurrentPuts;
+    executor               = Executors.newFixedThreadPool(maxConcurrentPuts);
+    completionService      = new ExecutorCompletionService<Push<T>>(executor);
+  }
+
+  private void handlePut(Push<T> push) {
+    try {
+
+      if (push.created)
+        remoteCollection.addHiddenComponent(push.component.getComponent());
+      else
+        remoteCollection.updateHiddenComponent(push.component);
+
+    } catch (InvalidComponentException e) {
+      push.exception = e;
+    } catch (DavException e) {
+      push.exception = e;
+    } catch (GeneralSecurityException e) {
+      push.exception = e;
+    } catch (IOException e) {
+      push.exception = e;
+    } catch (RuntimeException e) {
+      Log.e(TAG, "caught runtime exception while pushing component " + push.uid, e);
+      push.exception = new IOException("PUT failed", e);
+    }
+  }
+
+  public boolean hasCapacity() {
+    return inFlightCount < maxConcurrentPuts;
+  }
+
+  public boolean hasInFlight() {
+    return inFlightCount > 0;
+  }
+
+  /*
+  callers are expected to take() until hasCapacity() before submitting more, so no more than
+  maxConcurrentPuts components are ever held by the pipeline.
+   */
+  public void submit(final Push<T> push) {
+    inFlightCount++;
+    completionService.submit(SyncMetrics.wrap(new Callable<Push<T>>() {
+      @Override
+      public Push<T> call() {
+        handlePut(push);
+        return push;
+      }
+    }));
+  }
+
+  /*
+  blocks until any one in flight PUT completes, in whatever order the server answers.
+   */
+  public Push<T> take() throws InterruptedException {
+    try {
+
+      return completionService.take().get();
+
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("push task threw despite catching everything", e);
+    } finally {
+      inFlightCount--;
+    }
+  }
+
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.sync;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * rhodey
+ */
+public class ReconciliationPlan {
+
+  private final int          remoteComponentCount;
+  private final List<String> uidsMissingLocally;
+  private final Set<String>  uidsChangedRemotely;
+  private final List<String> uidsMissingRemotely;
+
+  protected ReconciliationPlan(int          remoteComponentCount,
+                               List<String> uidsMissingLocally,
+                               Set<String>  uidsChangedRemotely,
+                               List<String> uidsMissingRemotely)
+  {
+    this.remoteComponentCount = remoteComponentCount;
+    this.uidsMissingLocally   = uidsMissingLocally;
+    this.uidsChangedRemotely  = uidsChangedRemotely;
+    this.uidsMissingRemotely  = uidsMissingRemotely;
+  }
+
+  public static ReconciliationPlan build(HashMap<String, String>           remoteETags,
+                                         HashMap<String, Optional<String>> localETags)
+  {
+    List<String> uidsMissingLocally  = new LinkedList<String>();
+    Set<String>  uidsChangedRemotely = new HashSet<String>();
+
+    for (Map.Entry<String, String> remoteETag : remoteETags.entrySet()) {
+      Optional<String> localETag = localETags.get(remoteETag.getKey());
+
+      if (localETag == null)
+        uidsMissingLocally.add(remoteETag.getKey());
+      else if (!localETag.isPresent() || !localETag.get().equals(remoteETag.getValue()))
+        uidsChangedRemotely.add(remoteETag.getKey());
+    }
+
+    return new ReconciliationPlan(remoteETags.size(),
+                                  uidsMissingLocally,
+                                  uidsChangedRemotely,
+                                  getUidsMissingRemotely(localETags, remoteETags.keySet()));
+  }
+
+  /*
+  one hash lookup per local component, O(n + m) rather than comparing every local
+  UID against every remote UID.
+   */
+  public static List<String> getUidsMissingRemotely(HashMap<String, Optional<String>> localETags,
+                                                    Set<String>                       remoteUids)
+  {
+    List<String> uidsMissingRemotely = new ArrayList<String>();
+
+    for (Map.Entry<String, Optional<String>> localETag : localETags.entrySet()) {
+      if (localETag.getValue().isPresent() && !remoteUids.contains(localETag.getKey()))
+        uidsMissingRemotely.add(localETag.getKey());
+    }
+
+    return uidsMissingRemotely;
+  }
+
+  /*
+  a resumed plan can be behind the local collection if the last batch was committed but the
+  process died before its UIDs were journaled. plans are only resumed while the remote CTag
+  is unchanged so an inserted UID with an ETag is already current and is skipped, one without
+  is pulled as a change rather than inserted twice. UIDs already purged are dropped.
+   */
+  public ReconciliationPlan getReconciledWith(LocalComponentIndex localIndex) {
+    List<String> uidsMissingLocally  = new LinkedList<String>();
+    Set<String>  uidsChangedRemotely = new HashSet<String>(this.uidsChangedRemotely);
+    List<String> uidsMissingRemotely = new LinkedList<String>();
+
+    for (String uid : this.uidsMissingLocally) {
+      if (!localIndex.containsUid(uid))
+        uidsMissingLocally.add(uid);
+      else if (!localIndex.getETagForUid(uid).isPresent())
+        uidsChangedRemotely.add(uid);
+    }
+
+    for (String uid : this.uidsMissingRemotely) {
+      if (localIndex.containsUid(uid))
+        uidsMissingRemotely.add(uid);
+    }
+
+    return new ReconciliationPlan(remoteComponentCount,
+                                  uidsMissingLocally,
+                                  uidsChangedRemotely,
+                                  uidsMissingRemotely);
+  }
+
+  public int getRemoteComponentCount() {
+    return remoteComponentCount;
+  }
+
+  public List<String> getUidsMissingLocally() {
+    return uidsMissingLocally;
+  }
+
+  public Set<String> getUidsChangedRemotely() {
+    return uidsChangedRemotely;
+  }
+
+  public List<String> getUidsMissingRemotely() {
+    return uidsMissingRemotely;
+  }
+
+}
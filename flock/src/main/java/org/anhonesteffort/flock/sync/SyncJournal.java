@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * rhodey
+ */
+public class SyncJournal {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.SyncJournal";
+
+  private static final String JOURNAL_DIRECTORY = "sync_journals";
+  private static final String SUFFIX_PLAN       = ".plan";
+  private static final String SUFFIX_COMPLETED  = ".completed";
+  private static final String SUFFIX_TEMP       = ".tmp";
+  private static final int    VERSION           = 1;
+
+  private static final char ENTRY_MISSING_LOCALLY  = 'L';
+  private static final char ENTRY_CHANGED_REMOTELY = 'C';
+  private static final char ENTRY_MISSING_REMOTELY = 'R';
+
+  private final File               planFile;
+  private final File               completedFile;
+  private final String             remotePath;
+  private final String             remoteCTag;
+  private final Optional<String>   syncToken;
+  private final ReconciliationPlan plan;
+  private       FileOutputStream   completedStream;
+  private final StringBuilder      completedBuffer = new StringBuilder();
+
+  private SyncJournal(File               planFile,
+                      File               completedFile,
+                      String             remotePath,
+                      String             remoteCTag,
+                      Optional<String>   syncToken,
+                      ReconciliationPlan plan)
+  {
+    this.planFile      = planFile;
+    this.completedFile = completedFile;
+    this.remotePath    = remotePath;
+    this.remoteCTag    = remoteCTag;
+    this.syncToken     = syncToken;
+    this.plan          = plan;
+  }
+
+  private static File getJournalFile(Context context, String authority, Long localCollectionId, String suffix) {
+    File directory = new File(context.getFilesDir(), JOURNAL_DIRECTORY);
+    if (!directory.exists() && !directory.mkdirs())
+      Log.e(TAG, "unable to create journal directory " + directory.getPath());
+
+    return new File(directory, authority + "_" + localCollectionId + suffix);
+  }
+
+  private static String encode(String value) throws IOException {
+    return URLEncoder.encode(value, "UTF-8");
+  }
+
+  private static String decode(String value) throws IOException {
+    return URLDecoder.decode(value, "UTF-8");
+  }
+
+  private static String readFile(File file) throws IOException {
+    InputStream           in  = new FileInputStream(file);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try {
+
+      byte[] buffer = new byte[8192];
+      int    read;
+
+      while ((read = in.read(buffer)) != -1)
+        out.write(buffer, 0, read);
+
+      return out.toString("UTF-8");
+
+    } finally {
+      in.close();
+    }
+  }
+
+  /*
+  only lines ending with a newline made it to disk whole.
+   */
+  private static List<String> getCompleteLines(String contents) {
+    List<String> lines = new LinkedList<String>();
+    int          start = 0;
+    int          end   = contents.indexOf('\n');
+
+    while (end >= 0) {
+      lines.add(contents.substring(start, end));
+      start = end + 1;
+      end   = contents.indexOf('\n', start);
+    }
+
+    return lines;
+  }
+
+  private static void writeAll(File file, String contents) throws IOException {
+    File             tempFile = new File(file.getPath() + SUFFIX_TEMP);
+    FileOutputStream out      = new FileOutputStream(tempFile);
+
+    try {
+
+      out.write(contents.getBytes("UTF-8"));
+      out.flush();
+      out.getFD().sync();
+
+    } finally {
+      out.close();
+    }
+
+    if (!tempFile.renameTo(file))
+      throw new IOException("unable to rename " + tempFile.getPath() + " to " + file.getPath());
+  }
+
+  public static void delete(Context context, String authority, Long localCollectionId) {
+    getJournalFile(context, authority, localCollectionId, SUFFIX_COMPLETED).delete();
+    getJournalFile(context, authority, localCollectionId, SUFFIX_PLAN).delete();
+  }
+
+  public static SyncJournal begin(Context            context,
+                                  String             authority,
+                                  Long               localCollectionId,
+                                  String             remotePath,
+                                  String             remoteCTag,
+                                  Optional<String>   syncToken,
+                                  ReconciliationPlan plan)
+      throws IOException
+  {
+    File          planFile      = getJournalFile(context, authority, localCollectionId, SUFFIX_PLAN);
+    File          completedFile = getJournalFile(context, authority, localCollectionId, SUFFIX_COMPLETED);
+    StringBuilder contents      = new StringBuilder();
+
+    completedFile.delete();
+
+    contents.append(VERSION).append('\n');
+    contents.append(encode(remotePath)).append('\n');
+    contents.append(encode(remoteCTag)).append('\n');
+    contents.append(syncToken.isPresent() ? encode(syncToken.get()) : "").append('\n');
+    contents.append(plan.getRemoteComponentCount()).append('\n');
+
+    for (String uid : plan.getUidsMissingLocally())
+      contents.append(ENTRY_MISSING_LOCALLY).append(encode(uid)).append('\n');
+    for (String uid : plan.getUidsChangedRemotely())
+      contents.append(ENTRY_CHANGED_REMOTELY).append(encode(uid)).append('\n');
+    for (String uid : plan.getUidsMissingRemotely())
+      contents.append(ENTRY_MISSING_REMOTELY).append(encode(uid)).append('\n');
+
+    writeAll(planFile, contents.toString());
+
+    return new SyncJournal(planFile, completedFile, remotePath, remoteCTag, syncToken, plan);
+  }
+
+  /*
+  absent if there is no journal for the collection or the one found is unreadable, the plan
+  of the returned journal holds only the UIDs which were never committed.
+   */
+  public static Optional<SyncJournal> resume(Context context, String authority, Long localCollectionId) {
+    File planFile      = getJournalFile(context, authority, localCollectionId, SUFFIX_PLAN);
+    File completedFile = getJournalFile(context, authority, localCollectionId, SUFFIX_COMPLETED);
+
+    if (!planFile.exists())
+      return Optional.absent();
+
+    try {
+
+      List<String> planLines = getCompleteLines(readFile(planFile));
+      if (planLines.size() < 5 || Integer.parseInt(planLines.get(0)) != VERSION) {
+        Log.w(TAG, "journal " + planFile.getPath() + " is from another version, ignoring");
+        return Optional.absent();
+      }
+
+      String           remotePath  = decode(planLines.get(1));
+      String           remoteCTag  = decode(planLines.get(2));
+      Optional<String> syncToken   = planLines.get(3).isEmpty() ?
+                                       Optional.<String>absent() : Optional.of(decode(planLines.get(3)));
+      int              remoteCount = Integer.parseInt(planLines.get(4));
+
+      Set<String> completedUids = new HashSet<String>();
+      if (completedFile.exists()) {
+        for (String line : getCompleteLines(readFile(completedFile)))
+          completedUids.add(decode(line));
+      }
+
+      List<String> uidsMissingLocally  = new LinkedList<String>();
+      Set<String>  uidsChangedRemotely = new HashSet<String>();
+      List<String> uidsMissingRemotely = new LinkedList<String>();
+
+      for (String line : planLines.subList(5, planLines.size())) {
+        if (line.isEmpty())
+          continue;
+
+        String uid = decode(line.substring(1));
+        if (completedUids.contains(uid))
+          continue;
+
+        switch (line.charAt(0)) {
+          case ENTRY_MISSING_LOCALLY:
+            uidsMissingLocally.add(uid);
+            break;
+
+          case ENTRY_CHANGED_REMOTELY:
+            uidsChangedRemotely.add(uid);
+            break;
+
+          case ENTRY_MISSING_REMOTELY:
+            uidsMissingRemotely.add(uid);
+            break;
+        }
+      }
+
+      ReconciliationPlan plan = new ReconciliationPlan(remoteCount,
+                                                       uidsMissingLocally,
+                                                       uidsChangedRemotely,
+                                                       uidsMissingRemotely);
+
+      return Optional.of(new SyncJournal(planFile, completedFile, remotePath, remoteCTag, syncToken, plan));
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while reading journal " + planFile.getPath(), e);
+    } catch (RuntimeException e) {
+      Log.e(TAG, "caught exception while parsing journal " + planFile.getPath(), e);
+    }
+
+    return Optional.absent();
+  }
+
+  public String getRemotePath() {
+    return remotePath;
+  }
+
+  public String getRemoteCTag() {
+    return remoteCTag;
+  }
+
+  public Optional<String> getSyncToken() {
+    return syncToken;
+  }
+
+  public ReconciliationPlan getPlan() {
+    return plan;
+  }
+
+  public void handleComponentCompleted(String uid) {
+    try {
+
+      completedBuffer.append(encode(uid)).append('\n');
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while encoding uid " + uid, e);
+    }
+  }
+
+  /*
+  called once a batch of local operations has been committed, nothing is durable before then.
+   */
+  public void flush() throws IOException {
+    if (completedBuffer.length() == 0)
+      return;
+
+    if (completedStream == null)
+      completedStream = new FileOutputStream(completedFile, true);
+
+    completedStream.write(completedBuffer.toString().getBytes("UTF-8"));
+    completedStream.flush();
+    completedStream.getFD().sync();
+    completedBuffer.setLength(0);
+  }
+
+  public void close() {
+    if (completedStream == null)
+      return;
+
+    try {
+
+      completedStream.close();
+
+    } catch (IOException e) {
+      Log.e(TAG, "caught exception while closing journal " + completedFile.getPath(), e);
+    } finally {
+      completedStream = null;
+    }
+  }
+
+  public void delete() {
+    close();
+    completedFile.delete();
+    planFile.delete();
+  }
+
+}
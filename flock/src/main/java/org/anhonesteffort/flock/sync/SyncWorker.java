@@ -22,6 +22,13 @@ package org.anhonesteffort.flock.sync;
  */
 public interface SyncWorker extends Runnable {
 
+  /*
+  lower runs first, see SyncWorkerExecutor.
+   */
+  public long getSyncPriority();
+
+  public void cancel();
+
   public void cleanup();
 
 }
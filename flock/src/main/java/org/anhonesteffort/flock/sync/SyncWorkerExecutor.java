@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * rhodey
+ */
+public class SyncWorkerExecutor {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.SyncWorkerExecutor";
+
+  private static final int  MIN_THREADS           = 2;
+  private static final int  MAX_THREADS           = 4;
+  private static final int  MAX_THREADS_METERED   = 2;
+  private static final long THREAD_KEEP_ALIVE_SEC = 30;
+  private static final long MAX_SYNC_WAIT_MINUTES = 60;
+
+  /*
+  one pool for every sync adapter in the process, lowest sync priority runs first.
+   */
+  private static SyncWorkerExecutor instance;
+
+  private final Context            context;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong         sequence = new AtomicLong(0);
+
+  private static class PrioritizedWorker extends FutureTask<Void>
+      implements Comparable<PrioritizedWorker>
+  {
+    private final SyncWorker     worker;
+    private final long           priority;
+    private final long           sequence;
+    private final AtomicBoolean  started;
+    private final CountDownLatch exited;
+
+    private PrioritizedWorker(SyncWorker worker, long sequence) {
+      this(worker, sequence, new AtomicBoolean(false), new CountDownLatch(1));
+    }
+
+    private PrioritizedWorker(final SyncWorker     worker,
+                                    long           sequence,
+                              final AtomicBoolean  started,
+                              final CountDownLatch exited)
+    {
+      super(new Runnable() {
+        @Override
+        public void run() {
+          if (!started.compareAndSet(false, true))
+            return;
+
+          try {
+
+            worker.run();
+
+          } finally {
+            exited.countDown();
+          }
+        }
+      }, null);
+
+      this.worker   = worker;
+      this.priority = worker.getSyncPriority();
+      this.sequence = sequence;
+      this.started  = started;
+      this.exited   = exited;
+    }
+
+    /*
+    FutureTask.cancel() returns without waiting on a running task, this blocks until the
+    worker has returned from run() or is guaranteed never to start.
+     */
+    private void awaitExit() {
+      if (started.compareAndSet(false, true))
+        exited.countDown();
+
+      boolean interrupted = false;
+      while (true) {
+        try {
+
+          exited.await();
+          break;
+
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+
+      if (interrupted)
+        Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public int compareTo(PrioritizedWorker another) {
+      if (priority != another.priority)
+        return priority < another.priority ? -1 : 1;
+
+      return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+    }
+  }
+
+  private SyncWorkerExecutor(Context context) {
+    this.context = context.getApplicationContext();
+    executor     = new ThreadPoolExecutor(MIN_THREADS, MIN_THREADS,
+                                          THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                                          new PriorityBlockingQueue<Runnable>());
+
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  public static synchronized SyncWorkerExecutor getInstance(Context context) {
+    if (instance == null)
+      instance = new SyncWorkerExecutor(context);
+
+    return instance;
+  }
+
+  private int getThreadCap() {
+    ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    int                 cores        = Runtime.getRuntime().availableProcessors();
+    int                 threadCap    = Math.max(MIN_THREADS, Math.min(MAX_THREADS, cores));
+
+    if (connectivity != null && connectivity.isActiveNetworkMetered())
+      threadCap = Math.min(threadCap, MAX_THREADS_METERED);
+
+    return threadCap;
+  }
+
+  private synchronized void handleUpdateThreadCap() {
+    int threadCap = getThreadCap();
+    if (threadCap == executor.getCorePoolSize())
+      return;
+
+    Log.d(TAG, "sync worker thread cap is now " + threadCap);
+
+    if (threadCap > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threadCap);
+      executor.setCorePoolSize(threadCap);
+    }
+    else {
+      executor.setCorePoolSize(threadCap);
+      executor.setMaximumPoolSize(threadCap);
+    }
+  }
+
+  public List<Future<Void>> submit(List<SyncWorker> workers) {
+    handleUpdateThreadCap();
+
+    List<Future<Void>> futures = new LinkedList<Future<Void>>();
+    for (SyncWorker worker : workers) {
+      PrioritizedWorker prioritized = new PrioritizedWorker(worker, sequence.getAndIncrement());
+      futures.add(prioritized);
+      executor.execute(prioritized);
+    }
+
+    return futures;
+  }
+
+  /*
+  waits up to MAX_SYNC_WAIT_MINUTES for every worker to finish, if interrupted or out of
+  time the workers are cancelled, their in flight requests aborted and their run() methods
+  waited out so that callers may safely clean up after them.
+   */
+  public void awaitCompletion(List<SyncWorker> workers, List<Future<Void>> futures)
+      throws InterruptedException
+  {
+    long deadline = SystemClock.elapsedRealtime() + TimeUnit.MINUTES.toMillis(MAX_SYNC_WAIT_MINUTES);
+
+    try {
+
+      for (Future<Void> future : futures) {
+        try {
+
+          future.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+
+        } catch (TimeoutException e) {
+          Log.e(TAG, "sync workers did not finish within " + MAX_SYNC_WAIT_MINUTES + " minutes");
+          cancel(workers, futures);
+          return;
+        } catch (ExecutionException e) {
+          Log.e(TAG, "sync worker threw", e.getCause());
+        } catch (CancellationException e) {
+          Log.d(TAG, "sync worker was cancelled before it ran");
+        }
+      }
+
+    } catch (InterruptedException e) {
+      cancel(workers, futures);
+      throw e;
+    }
+  }
+
+  /*
+  blocks until every cancelled worker has exited.
+   */
+  public void cancel(List<SyncWorker> workers, List<Future<Void>> futures) {
+    Log.w(TAG, "cancelling " + workers.size() + " sync workers");
+
+    for (Future<Void> future : futures)
+      future.cancel(true);
+
+    for (SyncWorker worker : workers)
+      worker.cancel();
+
+    for (Future<Void> future : futures) {
+      if (future instanceof PrioritizedWorker)
+        ((PrioritizedWorker) future).awaitExit();
+    }
+  }
+
+}
@@ -52,8 +52,6 @@ public class SyncWorkerUtil {
 
   private static final String TAG = "org.anhonesteffort.flock.sync.SyncUtil";
 
-  protected static final int MAX_COMPONENTS_PER_REPORT = 50;
-
   public static void handleException(Context context, Exception e, SyncResult result) {
     if (e instanceof DavException) {
       DavException ex = (DavException) e;
@@ -199,55 +197,26 @@ public class SyncWorkerUtil {
     }
   }
 
-  protected static List<List<String>> handlePartitionUidsForReports(List<String> uids) {
-    LinkedList<List<String>> partitionedLists = new LinkedList<List<String>>();
-    List<String>             nextList         = new LinkedList<String>();
-
-    for (int i = 0; i < uids.size(); i++) {
-      if (i == 0)
-        partitionedLists.add(nextList);
-      else if (i >= MAX_COMPONENTS_PER_REPORT && (i % MAX_COMPONENTS_PER_REPORT) == 0) {
-        nextList = new LinkedList<String>();
-        partitionedLists.add(nextList);
-      }
-
-      nextList.add(uids.get(i));
-    }
-
-    return partitionedLists;
-  }
-
-  protected static List<List<String>> handlePartitionUidsForReports(Set<String> uidSet) {
-    List<String> uidList = new LinkedList<String>();
-    for (String uid : uidSet)
-      uidList.add(uid);
-
-    return handlePartitionUidsForReports(uidList);
-  }
-
-  protected static List<String> handleFilterUidsMissingLocally(AbstractLocalComponentCollection<?> localCollection,
-                                                               Set<String>                         uids)
-      throws RemoteException
+  protected static List<String> handleFilterUidsMissingLocally(LocalComponentIndex localIndex,
+                                                               Set<String>         uids)
   {
     List<String> uidsMissingLocally = new LinkedList<String>();
 
     for (String uid : uids) {
-      Optional<Long> localId = localCollection.getLocalIdForUid(uid);
-      if (!localId.isPresent())
+      if (!localIndex.containsUid(uid))
         uidsMissingLocally.add(uid);
     }
 
     return uidsMissingLocally;
   }
 
-  protected static <T> HashMap<String, Optional<String>> handleFilterUidsChangedRemotely(AbstractLocalComponentCollection<T> localCollection,
-                                                                                         HashMap<String, String>             remoteUidETagMap)
-      throws RemoteException
+  protected static HashMap<String, Optional<String>> handleFilterUidsChangedRemotely(LocalComponentIndex     localIndex,
+                                                                                     HashMap<String, String> remoteUidETagMap)
   {
     HashMap<String, Optional<String>> localUidETagMap = new HashMap<String, Optional<String>>();
 
     for (java.util.Map.Entry<String, String> remoteETagEntry : remoteUidETagMap.entrySet()) {
-      Optional<String> localETag = localCollection.getETagForUid(remoteETagEntry.getKey());
+      Optional<String> localETag = localIndex.getETagForUid(remoteETagEntry.getKey());
       if (!localETag.isPresent() || !localETag.get().equals(remoteETagEntry.getValue()))
         localUidETagMap.put(remoteETagEntry.getKey(), localETag);
     }
@@ -263,16 +232,10 @@ public class SyncWorkerUtil {
 
     for now we will just log them and hope the logs somehow come our way, lame :( :( :(
    */
-  protected static void handleDoStuffWithMultiStatusResult(List<String>                  uidsRequested,
-                                                           DecryptedMultiStatusResult<?> multiStatusResult,
+  protected static void handleDoStuffWithMultiStatusResult(DecryptedMultiStatusResult<?> multiStatusResult,
                                                            Context                       context,
                                                            SyncResult                    syncResult)
   {
-    if (uidsRequested.size() != multiStatusResult.getComponentETagPairs().size()) {
-      Log.w(TAG, "requested " + uidsRequested.size() + " components *BUT INSTEAD* received " +
-                 multiStatusResult.getComponentETagPairs().size());
-    }
-
     for (InvalidRemoteComponentException e : multiStatusResult.getInvalidComponentExceptions())
       SyncWorkerUtil.handleException(context, e, syncResult);
 
@@ -83,6 +83,16 @@ public class AccountSyncWorker implements SyncWorker {
     handleUpdateFlockAccountCache();
   }
 
+  @Override
+  public long getSyncPriority() {
+    return 0;
+  }
+
+  @Override
+  public void cancel() {
+
+  }
+
   @Override
   public void cleanup() {
 
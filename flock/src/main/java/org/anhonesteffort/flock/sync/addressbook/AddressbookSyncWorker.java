@@ -23,6 +23,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SyncResult;
 
+import ezvcard.Ezvcard;
 import ezvcard.VCard;
 import ezvcard.property.Uid;
 
@@ -63,6 +64,11 @@ public class AddressbookSyncWorker extends AbstractDavSyncWorker<VCard> {
     return Optional.absent();
   }
 
+  @Override
+  protected String getComponentText(VCard component) {
+    return Ezvcard.write(component).go();
+  }
+
   @Override
   protected void pushLocallyCreatedProperties(SyncResult result) {
     if (DavAccountHelper.isUsingOurServers(context))
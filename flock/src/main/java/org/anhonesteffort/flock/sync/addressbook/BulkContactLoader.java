@@ -0,0 +1,503 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.sync.addressbook;
+
+import android.accounts.Account;
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.RemoteException;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds;
+import android.util.Log;
+import android.util.Pair;
+
+import ezvcard.VCard;
+import ezvcard.property.Photo;
+
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.sync.ChunkedIdQuery;
+import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
+import org.anhonesteffort.flock.sync.LocalComponentLoader;
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class BulkContactLoader implements LocalComponentLoader<VCard> {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.addressbook.BulkContactLoader";
+
+  static final String[] PROJECTION_DATA = new String[] {
+      ContactsContract.Data.RAW_CONTACT_ID,   // 00
+      ContactsContract.Data.MIMETYPE,         // 01
+      ContactsContract.Data.IS_PRIMARY,       // 02
+      ContactsContract.Data.IS_SUPER_PRIMARY, // 03
+      ContactsContract.Data.DATA1,            // 04
+      ContactsContract.Data.DATA2,            // 05
+      ContactsContract.Data.DATA3,            // 06
+      ContactsContract.Data.DATA4,            // 07
+      ContactsContract.Data.DATA5,            // 08
+      ContactsContract.Data.DATA6,            // 09
+      ContactsContract.Data.DATA7,            // 10
+      ContactsContract.Data.DATA8,            // 11
+      ContactsContract.Data.DATA9,            // 12
+      ContactsContract.Data.DATA10,           // 13
+      ContactsContract.Data.DATA11,           // 14
+      ContactsContract.Data.DATA12,           // 15
+      ContactsContract.Data.DATA13,           // 16
+      ContactsContract.Data.DATA14,           // 17
+      ContactsContract.Data.DATA15,           // 18
+      ContactsContract.Data._ID,              // 19
+      ContactsContract.Data.SYNC1             // 20
+  };
+
+  static final HashMap<String, String[]> PROJECTIONS_FOR_MIMETYPE = new HashMap<String, String[]>();
+  static {
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE,   ContactFactory.getProjectionForStructuredName());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Phone.CONTENT_ITEM_TYPE,            ContactFactory.getProjectionForPhoneNumber());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Email.CONTENT_ITEM_TYPE,            ContactFactory.getProjectionForEmailAddress());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Photo.CONTENT_ITEM_TYPE,            ContactFactory.getProjectionForPhoto());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Organization.CONTENT_ITEM_TYPE,     ContactFactory.getProjectionForOrganization());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Im.CONTENT_ITEM_TYPE,               ContactFactory.getProjectionForInstantMessaging());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE,         ContactFactory.getProjectionForNickName());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Note.CONTENT_ITEM_TYPE,             ContactFactory.getProjectionForNote());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE, ContactFactory.getProjectionForPostalAddress());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Website.CONTENT_ITEM_TYPE,          ContactFactory.getProjectionForWebsite());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.Event.CONTENT_ITEM_TYPE,            ContactFactory.getProjectionForEvent());
+    PROJECTIONS_FOR_MIMETYPE.put(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE,       ContactFactory.getProjectionForSipAddress());
+  }
+
+  private final LocalContactCollection collection;
+  private final ContentProviderClient  client;
+  private final ChunkedIdQuery         rawContactIds;
+
+  private final HashMap<Long, ComponentETagPair<VCard>>       loadedContacts;
+  private final HashMap<Long, InvalidLocalComponentException> invalidContacts;
+
+  private Optional<Boolean> contactWithoutGroupVisible = Optional.absent();
+
+  public BulkContactLoader(LocalContactCollection collection,
+                           ContentProviderClient  client,
+                           List<Long>             rawContactIds)
+  {
+    this.collection    = collection;
+    this.client        = client;
+    this.rawContactIds = new ChunkedIdQuery(rawContactIds);
+    loadedContacts     = new HashMap<Long, ComponentETagPair<VCard>>();
+    invalidContacts    = new HashMap<Long, InvalidLocalComponentException>();
+  }
+
+  /*
+  data rows of every mimetype share the generic DATA columns, this maps the column indexes
+  of a ContactFactory projection onto the bulk projection so its readers can be reused.
+   */
+  private static class ColumnMappedCursor extends CursorWrapper {
+
+    private final int[] columnIndexes;
+
+    public ColumnMappedCursor(Cursor cursor, String[] projection) {
+      super(cursor);
+
+      columnIndexes = new int[projection.length];
+      for (int i = 0; i < projection.length; i++)
+        columnIndexes[i] = cursor.getColumnIndexOrThrow(projection[i]);
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+      return super.isNull(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+      return super.getType(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+      return super.getBlob(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+      return super.getString(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+      return super.getShort(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+      return super.getInt(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+      return super.getLong(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+      return super.getFloat(columnIndexes[columnIndex]);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+      return super.getDouble(columnIndexes[columnIndex]);
+    }
+  }
+
+  private static class ContactRows {
+
+    private final ComponentETagPair<VCard>                  vCard;
+    private final HashMap<String, List<ContentValues>>      values;
+    private final List<ContactFactory.AggregationException> aggregationExceptions;
+
+    private Optional<Long> displayPhotoFileId = Optional.absent();
+    private boolean        isMemberOfGroup    = false;
+
+    private ContactRows(ComponentETagPair<VCard> vCard) {
+      this.vCard            = vCard;
+      values                = new HashMap<String, List<ContentValues>>();
+      aggregationExceptions = new LinkedList<ContactFactory.AggregationException>();
+    }
+
+    private void addValues(String mimeType, ContentValues rowValues) {
+      List<ContentValues> mimeTypeValues = values.get(mimeType);
+      if (mimeTypeValues == null) {
+        mimeTypeValues = new LinkedList<ContentValues>();
+        values.put(mimeType, mimeTypeValues);
+      }
+
+      mimeTypeValues.add(rowValues);
+    }
+
+    private List<ContentValues> getValues(String mimeType) {
+      List<ContentValues> mimeTypeValues = values.get(mimeType);
+      if (mimeTypeValues == null)
+        return new LinkedList<ContentValues>();
+
+      return mimeTypeValues;
+    }
+  }
+
+  private boolean isContactWithoutGroupVisible() throws RemoteException {
+    if (!contactWithoutGroupVisible.isPresent())
+      contactWithoutGroupVisible = Optional.of(collection.isContactWithoutGroupVisible());
+
+    return contactWithoutGroupVisible.get();
+  }
+
+  private LinkedHashMap<Long, ContactRows> getRawContacts(List<Long> chunkIds) throws RemoteException {
+    LinkedHashMap<Long, ContactRows> contacts = new LinkedHashMap<Long, ContactRows>();
+    Cursor                           cursor   = SyncMetrics.query(client, collection.getUriForComponents(),
+                                                                          ContactFactory.getProjectionForRawContact(),
+                                                                          ChunkedIdQuery.getSelectionForIds(ContactsContract.RawContacts._ID, chunkIds),
+                                                                          null,
+                                                                          null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      ContentValues rawContactValues = ContactFactory.getValuesForRawContact(cursor);
+      Long          rawContactId     = rawContactValues.getAsLong(ContactsContract.RawContacts._ID);
+
+      contacts.put(rawContactId, new ContactRows(ContactFactory.getVCard(rawContactValues)));
+    }
+
+    cursor.close();
+    return contacts;
+  }
+
+  private static Optional<ContentValues> getValuesForDataRow(String mimeType, Cursor cursor) {
+    if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForStructuredName(cursor));
+    else if (mimeType.equals(CommonDataKinds.Phone.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForPhoneNumber(cursor));
+    else if (mimeType.equals(CommonDataKinds.Email.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForEmailAddress(cursor));
+    else if (mimeType.equals(CommonDataKinds.Photo.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForPhoto(cursor));
+    else if (mimeType.equals(CommonDataKinds.Organization.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForOrganization(cursor));
+    else if (mimeType.equals(CommonDataKinds.Im.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForInstantMessaging(cursor));
+    else if (mimeType.equals(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForNickName(cursor));
+    else if (mimeType.equals(CommonDataKinds.Note.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForNote(cursor));
+    else if (mimeType.equals(CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForPostalAddress(cursor));
+    else if (mimeType.equals(CommonDataKinds.Website.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForWebsite(cursor));
+    else if (mimeType.equals(CommonDataKinds.Event.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForEvent(cursor));
+    else if (mimeType.equals(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE))
+      return Optional.of(ContactFactory.getValuesForSipAddress(cursor));
+
+    return Optional.absent();
+  }
+
+  private void addDataRows(LinkedHashMap<Long, ContactRows> contacts) throws RemoteException {
+    Cursor cursor = SyncMetrics.query(client, collection.getUriForData(),
+                                              PROJECTION_DATA,
+                                              ChunkedIdQuery.getSelectionForIds(ContactsContract.Data.RAW_CONTACT_ID, contacts.keySet()),
+                                              null,
+                                              ContactsContract.Data.RAW_CONTACT_ID + ", " + ContactsContract.Data._ID);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    HashMap<String, Cursor> mappedCursors     = new HashMap<String, Cursor>();
+    int                     photoFileIdColumn = cursor.getColumnIndexOrThrow(CommonDataKinds.Photo.PHOTO_FILE_ID);
+
+    while (cursor.moveToNext()) {
+      ContactRows rows     = contacts.get(cursor.getLong(0));
+      String      mimeType = cursor.getString(1);
+
+      if (rows == null || mimeType == null)
+        continue;
+
+      if (mimeType.equals(CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE)) {
+        rows.isMemberOfGroup = true;
+        continue;
+      }
+
+      String[] projection = PROJECTIONS_FOR_MIMETYPE.get(mimeType);
+      if (projection == null)
+        continue;
+
+      Cursor mappedCursor = mappedCursors.get(mimeType);
+      if (mappedCursor == null) {
+        mappedCursor = new ColumnMappedCursor(cursor, projection);
+        mappedCursors.put(mimeType, mappedCursor);
+      }
+
+      if (mimeType.equals(CommonDataKinds.Photo.CONTENT_ITEM_TYPE)) {
+        if (!rows.getValues(mimeType).isEmpty())
+          continue;
+
+        if (!cursor.isNull(photoFileIdColumn))
+          rows.displayPhotoFileId = Optional.of(cursor.getLong(photoFileIdColumn));
+      }
+
+      Optional<ContentValues> values = getValuesForDataRow(mimeType, mappedCursor);
+      if (values.isPresent())
+        rows.addValues(mimeType, values.get());
+    }
+
+    cursor.close();
+  }
+
+  private HashMap<Long, Pair<Account, String>> getAccountUidPairsForRawContacts(Collection<Long> rawContactIds)
+      throws RemoteException
+  {
+    final String[] PROJECTION = new String[] {
+        ContactsContract.RawContacts._ID,
+        ContactsContract.RawContacts.ACCOUNT_NAME,
+        ContactsContract.RawContacts.ACCOUNT_TYPE,
+        ContactFactory.COLUMN_NAME_CONTACT_UID
+    };
+
+    HashMap<Long, Pair<Account, String>> accountUidPairs = new HashMap<Long, Pair<Account, String>>();
+    Cursor                               cursor          = SyncMetrics.query(client, ContactsContract.RawContacts.CONTENT_URI,
+                                                                                     PROJECTION,
+                                                                                     ChunkedIdQuery.getSelectionForIds(ContactsContract.RawContacts._ID, rawContactIds),
+                                                                                     null,
+                                                                                     null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      if (cursor.getString(3) != null) {
+        accountUidPairs.put(cursor.getLong(0), new Pair<Account, String>(
+            new Account(cursor.getString(1), cursor.getString(2)),
+            cursor.getString(3)
+        ));
+      }
+      else {
+        Log.e(TAG, "raw contact " + cursor.getLong(0) +
+                   " has no SOURCE_ID :( is likely a local contact, must ignore.");
+      }
+    }
+
+    cursor.close();
+    return accountUidPairs;
+  }
+
+  private void addAggregationExceptions(LinkedHashMap<Long, ContactRows> contacts) throws RemoteException {
+    final String[] PROJECTION = new String[] {
+        ContactsContract.AggregationExceptions.TYPE,
+        ContactsContract.AggregationExceptions.RAW_CONTACT_ID1,
+        ContactsContract.AggregationExceptions.RAW_CONTACT_ID2
+    };
+    final String   SELECTION  =
+        ChunkedIdQuery.getSelectionForIds(ContactsContract.AggregationExceptions.RAW_CONTACT_ID1, contacts.keySet()) + " OR " +
+        ChunkedIdQuery.getSelectionForIds(ContactsContract.AggregationExceptions.RAW_CONTACT_ID2, contacts.keySet());
+
+    Cursor cursor = SyncMetrics.query(client, ContactsContract.AggregationExceptions.CONTENT_URI,
+                                              PROJECTION,
+                                              SELECTION,
+                                              null,
+                                              null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    List<Pair<Long, Pair<Integer, Long>>> contactTypeIdPairs = new LinkedList<Pair<Long, Pair<Integer, Long>>>();
+    List<Long>                            otherIds           = new LinkedList<Long>();
+
+    while (cursor.moveToNext()) {
+      int  type          = cursor.getInt(0);
+      long rawContactId1 = cursor.getLong(1);
+      long rawContactId2 = cursor.getLong(2);
+
+      if (contacts.containsKey(rawContactId1)) {
+        contactTypeIdPairs.add(new Pair<Long, Pair<Integer, Long>>(rawContactId1, new Pair<Integer, Long>(type, rawContactId2)));
+        otherIds.add(rawContactId2);
+      }
+      if (rawContactId2 != rawContactId1 && contacts.containsKey(rawContactId2)) {
+        contactTypeIdPairs.add(new Pair<Long, Pair<Integer, Long>>(rawContactId2, new Pair<Integer, Long>(type, rawContactId1)));
+        otherIds.add(rawContactId1);
+      }
+    }
+    cursor.close();
+
+    if (contactTypeIdPairs.isEmpty())
+      return;
+
+    HashMap<Long, Pair<Account, String>> accountUidPairs = getAccountUidPairsForRawContacts(otherIds);
+
+    for (Pair<Long, Pair<Integer, Long>> contactTypeIdPair : contactTypeIdPairs) {
+      Pair<Integer, Long>   typeIdPair     = contactTypeIdPair.second;
+      Pair<Account, String> accountUidPair = accountUidPairs.get(typeIdPair.second);
+
+      if (accountUidPair != null) {
+        contacts.get(contactTypeIdPair.first).aggregationExceptions.add(new ContactFactory.AggregationException(
+            typeIdPair.first,
+            accountUidPair.first,
+            accountUidPair.second
+        ));
+      }
+      else
+        Log.e(TAG, "accountUidPair for raw contact " + typeIdPair.second + " is not present :(");
+    }
+  }
+
+  private void buildContact(Long rawContactId, ContactRows rows)
+      throws InvalidLocalComponentException, RemoteException
+  {
+    VCard vCard = rows.vCard.getComponent();
+
+    for (ContentValues values : rows.getValues(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE))
+      ContactFactory.addStructuredName(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Phone.CONTENT_ITEM_TYPE))
+      ContactFactory.addPhoneNumber(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Email.CONTENT_ITEM_TYPE))
+      ContactFactory.addEmailAddress(vCard, values);
+
+    Optional<Photo> photo = Optional.absent();
+    if (rows.displayPhotoFileId.isPresent())
+      photo = collection.getDisplayPhoto(rawContactId, rows.displayPhotoFileId.get());
+    if (!photo.isPresent() && !rows.getValues(CommonDataKinds.Photo.CONTENT_ITEM_TYPE).isEmpty())
+      photo = ContactFactory.getPhotoForValues(rows.getValues(CommonDataKinds.Photo.CONTENT_ITEM_TYPE).get(0));
+    if (photo.isPresent())
+      vCard.addPhoto(photo.get());
+
+    for (ContentValues values : rows.getValues(CommonDataKinds.Organization.CONTENT_ITEM_TYPE))
+      ContactFactory.addOrganization(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Im.CONTENT_ITEM_TYPE))
+      ContactFactory.addInstantMessaging(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE))
+      ContactFactory.addNickName(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Note.CONTENT_ITEM_TYPE))
+      ContactFactory.addNote(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE))
+      ContactFactory.addPostalAddress(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Website.CONTENT_ITEM_TYPE))
+      ContactFactory.addWebsite(vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.Event.CONTENT_ITEM_TYPE))
+      ContactFactory.addEvent(collection.getPath(), vCard, values);
+    for (ContentValues values : rows.getValues(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE))
+      ContactFactory.addSipAddress(vCard, values);
+
+    if (!rows.isMemberOfGroup && !isContactWithoutGroupVisible())
+      ContactFactory.addInvisibleProperty(vCard);
+
+    ContactFactory.addAggregationExceptions(vCard, rows.aggregationExceptions);
+  }
+
+  private void handleLoadContacts(List<Long> chunkIds) throws RemoteException {
+    LinkedHashMap<Long, ContactRows> contacts = getRawContacts(chunkIds);
+    if (contacts.isEmpty())
+      return;
+
+    addDataRows(contacts);
+    addAggregationExceptions(contacts);
+
+    for (Long rawContactId : contacts.keySet()) {
+      ContactRows rows = contacts.get(rawContactId);
+
+      try {
+
+        long startNanos = System.nanoTime();
+        buildContact(rawContactId, rows);
+        SyncMetrics.handleComponentBuilt(System.nanoTime() - startNanos);
+
+        loadedContacts.put(rawContactId, rows.vCard);
+
+      } catch (InvalidLocalComponentException e) {
+        invalidContacts.put(rawContactId, e);
+      }
+    }
+  }
+
+  private void handleLoadChunkStartingAt(Long rawContactId) throws RemoteException {
+    loadedContacts.clear();
+    invalidContacts.clear();
+    handleLoadContacts(rawContactIds.getChunkStartingAt(rawContactId));
+  }
+
+  @Override
+  public Optional<ComponentETagPair<VCard>> getComponent(Long rawContactId)
+      throws RemoteException, InvalidLocalComponentException
+  {
+    if (!loadedContacts.containsKey(rawContactId) && !invalidContacts.containsKey(rawContactId))
+      handleLoadChunkStartingAt(rawContactId);
+
+    InvalidLocalComponentException invalidException = invalidContacts.remove(rawContactId);
+    if (invalidException != null)
+      throw invalidException;
+
+    return Optional.fromNullable(loadedContacts.remove(rawContactId));
+  }
+
+}
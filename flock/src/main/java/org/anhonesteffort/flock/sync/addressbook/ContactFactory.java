@@ -57,6 +57,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.WordUtils;
 
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.LinkedList;
@@ -76,8 +78,10 @@ public class ContactFactory {
 
   private static final String TAG = "org.anhonesteffort.flock.sync.addressbook.ContactFactory";
 
-  public static final String COLUMN_NAME_CONTACT_UID  = ContactsContract.RawContacts.SOURCE_ID;
-  public static final String COLUMN_NAME_CONTACT_ETAG = ContactsContract.RawContacts.SYNC1;
+  public static final String COLUMN_NAME_CONTACT_UID          = ContactsContract.RawContacts.SOURCE_ID;
+  public static final String COLUMN_NAME_CONTACT_ETAG         = ContactsContract.RawContacts.SYNC1;
+  public static final String COLUMN_NAME_CONTACT_CONTENT_HASH = ContactsContract.RawContacts.SYNC2;
+  public static final String COLUMN_NAME_PHOTO_CONTENT_HASH   = ContactsContract.CommonDataKinds.Photo.SYNC1;
 
   public static final String PROPERTY_PHONETIC_GIVEN_NAME  = "X-PHONETIC-GIVEN-NAME";
   public static final String PROPERTY_PHONETIC_MIDDLE_NAME = "X-PHONETIC-MIDDLE-NAME";
@@ -574,6 +578,8 @@ public class ContactFactory {
                  ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE);
       values.put(ContactsContract.CommonDataKinds.Photo.PHOTO,
                  vCard.getPhotos().get(0).getData());
+      values.put(COLUMN_NAME_PHOTO_CONTENT_HASH,
+                 getPhotoContentHash(vCard.getPhotos().get(0).getData()));
 
       return Optional.of(values);
     }
@@ -581,6 +587,26 @@ public class ContactFactory {
     return Optional.absent();
   }
 
+  /*
+  the provider keeps only a downscaled copy of the bytes we write so the hash of what we
+  wrote is kept alongside, this is how an unchanged remote photo is recognized later.
+   */
+  public static String getPhotoContentHash(byte[] photoData) {
+    try {
+
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      StringBuilder hash   = new StringBuilder();
+
+      for (byte hashByte : digest.digest(photoData))
+        hash.append(String.format("%02x", hashByte & 0xFF));
+
+      return hash.toString();
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-256 is missing", e);
+    }
+  }
+
   public static Integer getSizeOfPhotoInBytes(ContentValues photoValues) {
     return photoValues.getAsByteArray(ContactsContract.CommonDataKinds.Photo.PHOTO).length;
   }
@@ -19,15 +19,21 @@
 
 package org.anhonesteffort.flock.sync.addressbook;
 
+import android.util.Log;
+
 import ezvcard.Ezvcard;
 import ezvcard.VCard;
+import ezvcard.VCardVersion;
 import ezvcard.parameter.ImageType;
 import ezvcard.property.Photo;
 import ezvcard.property.RawProperty;
 import ezvcard.property.StructuredName;
+import ezvcard.property.Uid;
+import ezvcard.property.VCardProperty;
 
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.sync.DecryptedMultiStatusResult;
+import org.anhonesteffort.flock.sync.HiddenComponentDecrypter;
 import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
 import org.anhonesteffort.flock.sync.InvalidRemoteComponentException;
 import org.anhonesteffort.flock.webdav.MultiStatusResult;
@@ -40,6 +46,8 @@ import org.anhonesteffort.flock.crypto.HidingUtil;
 import org.anhonesteffort.flock.webdav.ComponentETagPair;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
+import org.anhonesteffort.flock.webdav.SyncCollectionResult;
+import org.anhonesteffort.flock.webdav.InvalidSyncTokenException;
 import org.anhonesteffort.flock.webdav.carddav.CardDavCollection;
 import org.anhonesteffort.flock.webdav.carddav.CardDavStore;
 import org.apache.jackrabbit.webdav.DavException;
@@ -47,8 +55,12 @@ import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Programmer: rhodey
@@ -57,11 +69,16 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
 
   private static final String TAG = "org.anhonesteffort.flock.sync.addressbook.HidingCardDavCollection";
 
-  private static final String PROPERTY_NAME_FLOCK_HIDDEN        = "X-FLOCK-HIDDEN";
-  private static final String PARAMETER_NAME_FLOCK_HIDDEN_PHOTO = "X-FLOCK-HIDDEN-PHOTO";
+  private static final String PROPERTY_NAME_FLOCK_HIDDEN            = "X-FLOCK-HIDDEN";
+  private static final String PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_REF  = "X-FLOCK-HIDDEN-PHOTO-REF";
+  private static final String PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_DATA = "X-FLOCK-HIDDEN-PHOTO-DATA";
+  private static final String PARAMETER_NAME_FLOCK_HIDDEN_PHOTO     = "X-FLOCK-HIDDEN-PHOTO";
+  private static final String PHOTO_RESOURCE_UID_PREFIX             = "flock-photo-";
+  private static final String PHOTO_REFERENCE_HASH_LABEL            = "flock-photo";
 
   private MasterCipher             masterCipher;
   private HidingDavCollectionMixin delegate;
+  private Optional<PhotoCache>     photoCache = Optional.absent();
 
   protected HidingCardDavCollection(CardDavStore cardDavStore,
                                     String       path,
@@ -84,6 +101,14 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
     this.delegate     = new HidingDavCollectionMixin(this, masterCipher);
   }
 
+  protected void setPhotoCache(Optional<PhotoCache> photoCache) {
+    this.photoCache = photoCache;
+  }
+
+  public static boolean isPhotoResourceUid(String uid) {
+    return uid.startsWith(PHOTO_RESOURCE_UID_PREFIX);
+  }
+
   @Override
   protected DavPropertyNameSet getPropertyNamesForFetch() {
     DavPropertyNameSet addressbookProps = super.getPropertyNamesForFetch();
@@ -120,6 +145,169 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
     delegate.setHiddenDisplayName(displayName);
   }
 
+  @Override
+  public HashMap<String, String> getComponentETags() throws DavException, IOException {
+    HashMap<String, String> componentETags = super.getComponentETags();
+    Iterator<String>        uids           = componentETags.keySet().iterator();
+
+    while (uids.hasNext()) {
+      String uid = uids.next();
+      if (isPhotoResourceUid(uid))
+        uids.remove();
+    }
+
+    return componentETags;
+  }
+
+  @Override
+  public SyncCollectionResult getComponentETagsSince(String syncToken)
+      throws InvalidSyncTokenException, DavException, IOException
+  {
+    SyncCollectionResult changes     = super.getComponentETagsSince(syncToken);
+    Iterator<String>     changedUids = changes.getChangedETags().keySet().iterator();
+    Iterator<String>     removedUids = changes.getRemovedUids().iterator();
+
+    while (changedUids.hasNext()) {
+      String uid = changedUids.next();
+      if (isPhotoResourceUid(uid))
+        changedUids.remove();
+    }
+
+    while (removedUids.hasNext()) {
+      String uid = removedUids.next();
+      if (isPhotoResourceUid(uid))
+        removedUids.remove();
+    }
+
+    return changes;
+  }
+
+  private String getPhotoReference(byte[] photoData) throws GeneralSecurityException {
+    byte[]        hash      = masterCipher.getKeyedHash(PHOTO_REFERENCE_HASH_LABEL, photoData);
+    StringBuilder reference = new StringBuilder(PHOTO_RESOURCE_UID_PREFIX);
+
+    for (byte hashByte : hash)
+      reference.append(String.format("%02x", hashByte & 0xFF));
+
+    return reference.toString();
+  }
+
+  private Optional<byte[]> getRecoveredPhotoData(VCard photoResource)
+      throws InvalidMacException, GeneralSecurityException, IOException
+  {
+    RawProperty protectedPhotoData = photoResource.getExtendedProperty(PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_DATA);
+    if (protectedPhotoData == null || photoResource.getUid() == null)
+      return Optional.absent();
+
+    byte[] photoData      = HidingUtil.decodeAndDecryptIfNecessary(masterCipher, protectedPhotoData.getValue().getBytes());
+    String photoReference = photoResource.getUid().getValue();
+
+    if (!getPhotoReference(photoData).equals(photoReference)) {
+      Log.w(TAG, "photo resource " + photoReference + " does not match its content, ignoring.");
+      return Optional.absent();
+    }
+
+    return Optional.of(photoData);
+  }
+
+  private HashMap<String, byte[]> getPhotoResources(Set<String> photoReferences)
+      throws GeneralSecurityException, IOException
+  {
+    HashMap<String, byte[]> photos    = new HashMap<String, byte[]>();
+    List<String>            fetchUids = new LinkedList<String>();
+
+    for (String photoReference : photoReferences) {
+      Optional<byte[]> cachedPhoto = photoCache.isPresent() ?
+          photoCache.get().getPhotoResource(photoReference) : Optional.<byte[]>absent();
+
+      if (cachedPhoto.isPresent())
+        photos.put(photoReference, cachedPhoto.get());
+      else
+        fetchUids.add(photoReference);
+    }
+
+    if (fetchUids.isEmpty())
+      return photos;
+
+    try {
+
+      for (ComponentETagPair<VCard> photoResource : super.getComponents(fetchUids).getComponentETagPairs()) {
+        try {
+
+          Optional<byte[]> photoData = getRecoveredPhotoData(photoResource.getComponent());
+          if (!photoData.isPresent())
+            continue;
+
+          String photoReference = photoResource.getComponent().getUid().getValue();
+          photos.put(photoReference, photoData.get());
+
+          if (photoCache.isPresent())
+            photoCache.get().putPhotoResource(photoReference, photoData.get());
+
+        } catch (InvalidMacException e) {
+          Log.w(TAG, "caught invalid mac exception while recovering photo resource, ignoring.", e);
+        }
+      }
+
+    } catch (DavException e) {
+      throw new IOException("caught exception while fetching photo resources", e);
+    }
+
+    return photos;
+  }
+
+  /*
+  a contact whose photo resource cannot be recovered (missing on the server, left out of the
+  multi-get response or failing its mac) is removed from the list and failed rather than
+  applied without its photo, so its etag is never committed and the next sync tries again.
+   */
+  private List<InvalidRemoteComponentException> handleResolvePhotoReferences(List<ComponentETagPair<VCard>> recoveredComponentPairs)
+      throws GeneralSecurityException, IOException
+  {
+    List<InvalidRemoteComponentException> unresolved      = new LinkedList<InvalidRemoteComponentException>();
+    Set<String>                           photoReferences = new HashSet<String>();
+
+    for (ComponentETagPair<VCard> recoveredPair : recoveredComponentPairs) {
+      RawProperty photoReference = recoveredPair.getComponent().getExtendedProperty(PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_REF);
+      if (photoReference != null)
+        photoReferences.add(photoReference.getValue());
+    }
+
+    if (photoReferences.isEmpty())
+      return unresolved;
+
+    HashMap<String, byte[]>            photos         = getPhotoResources(photoReferences);
+    Iterator<ComponentETagPair<VCard>> recoveredPairs = recoveredComponentPairs.iterator();
+
+    while (recoveredPairs.hasNext()) {
+      VCard       recoveredVCard = recoveredPairs.next().getComponent();
+      RawProperty photoReference = recoveredVCard.getExtendedProperty(PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_REF);
+
+      if (photoReference == null)
+        continue;
+
+      recoveredVCard.removeExtendedProperty(PROPERTY_NAME_FLOCK_HIDDEN_PHOTO_REF);
+      byte[] photoData = photos.get(photoReference.getValue());
+
+      if (photoData != null)
+        recoveredVCard.addPhoto(new Photo(photoData, ImageType.PNG));
+      else {
+        String message = "photo resource " + photoReference.getValue() + " could not be recovered, will retry.";
+        Log.w(TAG, message);
+        recoveredPairs.remove();
+
+        if (recoveredVCard.getUid() != null) {
+          unresolved.add(new InvalidRemoteComponentException(message, CardDavConstants.CARDDAV_NAMESPACE,
+                                                             getPath(), recoveredVCard.getUid().getValue()));
+        }
+        else
+          unresolved.add(new InvalidRemoteComponentException(message, CardDavConstants.CARDDAV_NAMESPACE, getPath()));
+      }
+    }
+
+    return unresolved;
+  }
+
   protected ComponentETagPair<VCard> getHiddenComponent(ComponentETagPair<VCard> exposedComponentPair)
       throws InvalidRemoteComponentException, InvalidMacException, GeneralSecurityException, IOException
   {
@@ -169,7 +357,14 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
       if (!originalComponentPair.isPresent())
         return Optional.absent();
 
-      return Optional.of(getHiddenComponent(originalComponentPair.get()));
+      List<ComponentETagPair<VCard>> recoveredPair = new LinkedList<ComponentETagPair<VCard>>();
+      recoveredPair.add(getHiddenComponent(originalComponentPair.get()));
+
+      List<InvalidRemoteComponentException> unresolved = handleResolvePhotoReferences(recoveredPair);
+      if (!unresolved.isEmpty())
+        throw unresolved.get(0);
+
+      return Optional.of(recoveredPair.get(0));
 
     } catch (InvalidComponentException e) {
       throw new InvalidRemoteComponentException(e);
@@ -180,64 +375,57 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
   public DecryptedMultiStatusResult<VCard> getHiddenComponents(List<String> uids)
       throws DavException, GeneralSecurityException, IOException
   {
-    MultiStatusResult<VCard>          exposedComponentPairs   = super.getComponents(uids);
-    DecryptedMultiStatusResult<VCard> recoveredComponentPairs = new DecryptedMultiStatusResult<VCard>(
-        new LinkedList<ComponentETagPair<VCard>>(),
-        exposedComponentPairs.getInvalidComponentExceptions(),
-        new LinkedList<InvalidMacException>()
-    );
-
-    for (ComponentETagPair<VCard> exposedComponentPair : exposedComponentPairs.getComponentETagPairs()) {
-      try {
-
-        recoveredComponentPairs.getComponentETagPairs().add(getHiddenComponent(exposedComponentPair));
-
-      } catch (InvalidRemoteComponentException e) {
-        recoveredComponentPairs.getInvalidComponentExceptions().add(e);
-      } catch (InvalidMacException e) {
-        recoveredComponentPairs.getInvalidMacExceptions().add(e);
-      }
-    }
-
-    return recoveredComponentPairs;
+    return getHiddenComponents(super.getComponents(uids));
   }
 
   @Override
   public DecryptedMultiStatusResult<VCard> getHiddenComponents()
       throws DavException, GeneralSecurityException, IOException
   {
-    MultiStatusResult<VCard>          exposedComponentPairs   = super.getComponents();
-    DecryptedMultiStatusResult<VCard> recoveredComponentPairs = new DecryptedMultiStatusResult<VCard>(
-        new LinkedList<ComponentETagPair<VCard>>(),
+    return getHiddenComponents(super.getComponents());
+  }
+
+  @Override
+  public DecryptedMultiStatusResult<VCard> getHiddenComponents(MultiStatusResult<VCard> exposedComponentPairs)
+      throws GeneralSecurityException, IOException
+  {
+    List<ComponentETagPair<VCard>> contactPairs = new LinkedList<ComponentETagPair<VCard>>();
+
+    for (ComponentETagPair<VCard> exposedPair : exposedComponentPairs.getComponentETagPairs()) {
+      Uid uid = exposedPair.getComponent().getUid();
+      if (uid == null || uid.getValue() == null || !isPhotoResourceUid(uid.getValue()))
+        contactPairs.add(exposedPair);
+    }
+
+    MultiStatusResult<VCard> exposedContacts = new MultiStatusResult<VCard>(
+        contactPairs,
         exposedComponentPairs.getInvalidComponentExceptions(),
-        new LinkedList<InvalidMacException>()
+        exposedComponentPairs.getComponentDataSize()
     );
 
-    for (ComponentETagPair<VCard> exposedComponentPair : exposedComponentPairs.getComponentETagPairs()) {
-      try {
+    DecryptedMultiStatusResult<VCard> recoveredContacts = HiddenComponentDecrypter.getHiddenComponents(
+        exposedContacts,
+        new HiddenComponentDecrypter.ComponentDecrypter<VCard>() {
+      @Override
+      public ComponentETagPair<VCard> getHiddenComponent(ComponentETagPair<VCard> exposedComponentPair)
+          throws InvalidRemoteComponentException, InvalidMacException, GeneralSecurityException, IOException
+      {
+        return HidingCardDavCollection.this.getHiddenComponent(exposedComponentPair);
+      }
+    });
 
-        recoveredComponentPairs.getComponentETagPairs().add(getHiddenComponent(exposedComponentPair));
+    List<ComponentETagPair<VCard>>  resolvedContacts = new LinkedList<ComponentETagPair<VCard>>(recoveredContacts.getComponentETagPairs());
+    List<InvalidComponentException> invalidContacts  = new LinkedList<InvalidComponentException>(recoveredContacts.getInvalidComponentExceptions());
 
-      } catch (InvalidRemoteComponentException e) {
-        recoveredComponentPairs.getInvalidComponentExceptions().add(e);
-      } catch (InvalidMacException e) {
-        recoveredComponentPairs.getInvalidMacExceptions().add(e);
-      }
-    }
+    invalidContacts.addAll(handleResolvePhotoReferences(resolvedContacts));
 
-    return recoveredComponentPairs;
+    return new DecryptedMultiStatusResult<VCard>(resolvedContacts, invalidContacts, recoveredContacts.getInvalidMacExceptions());
   }
 
-  protected void putHiddenComponentToServer(VCard exposedVCard, Optional<String> ifMatchETag)
-      throws InvalidLocalComponentException, GeneralSecurityException, IOException, DavException
-  {
-    if (exposedVCard.getUid() == null)
-      throw new InvalidLocalComponentException("Cannot put a VCard to server without UID!",
-                                               CardDavConstants.CARDDAV_NAMESPACE, getPath());
-
+  private static VCard buildProtectedVCard(VCardVersion version, Uid uid) {
     VCard protectedVCard = new VCard();
-    protectedVCard.setVersion(exposedVCard.getVersion());
-    protectedVCard.setUid(exposedVCard.getUid());
+    protectedVCard.setVersion(version);
+    protectedVCard.setUid(uid);
 
     StructuredName structuredName = new StructuredName();
     structuredName.setGiven("Open");
@@ -246,6 +434,37 @@ public class HidingCardDavCollection extends CardDavCollection implements Hiding
     protectedVCard.setStructuredName(structuredName);
     protectedVCard.setFormattedName("Open Whisper Systems");
 
+    return protectedVCard;
+  }
+
+  /*
+  shallow, properties are shared but the property list is not, enough to swap photos out
+  without touching the caller's vcard.
+   */
+  private static VCard copyOf(VCard vCard) {
+    VCard copy = new VCard();
+    copy.setVersion(vCard.getVersion());
+
+    for (VCardProperty property : vCard.getProperties())
+      copy.addProperty(property);
+
+    return copy;
+  }
+
+  protected void putHiddenComponentToServer(VCard localVCard, Optional<String> ifMatchETag)
+      throws InvalidLocalComponentException, GeneralSecurityException, IOException, DavException
+  {
+    if (localVCard.getUid() == null)
+      throw new InvalidLocalComponentException("Cannot put a VCard to server without UID!",
+                                               CardDavConstants.CARDDAV_NAMESPACE, getPath());
+
+    VCard exposedVCard   = copyOf(localVCard);
+    VCard protectedVCard = buildProtectedVCard(exposedVCard.getVersion(), exposedVCard.getUid());
+
+    /*
+    photos stay inline, photo resources written by earlier builds are still read but nothing
+    deletes them once unreferenced so no more are written.
+     */
     if (exposedVCard.getPhotos().size() > 0) {
       Photo  exposedPhoto       = exposedVCard.getPhotos().get(0);
       byte[] protectedPhotoData = HidingUtil.encryptEncodeAndPrefix(masterCipher, exposedPhoto.getData());
@@ -50,8 +50,9 @@ import java.util.List;
  */
 public class HidingCardDavStore implements HidingDavStore<HidingCardDavCollection> {
 
-  private MasterCipher masterCipher;
-  private CardDavStore cardDavStore;
+  private MasterCipher         masterCipher;
+  private CardDavStore         cardDavStore;
+  private Optional<PhotoCache> photoCache = Optional.absent();
 
   public HidingCardDavStore(MasterCipher     masterCipher,
                             String           hostHREF,
@@ -74,6 +75,15 @@ public class HidingCardDavStore implements HidingDavStore<HidingCardDavCollectio
     this.cardDavStore = new CardDavStore(client, currentUserPrincipal, addressBookHomeSet);
   }
 
+  public void setPhotoCache(PhotoCache photoCache) {
+    this.photoCache = Optional.of(photoCache);
+  }
+
+  private HidingCardDavCollection handleNewCollection(HidingCardDavCollection collection) {
+    collection.setPhotoCache(photoCache);
+    return collection;
+  }
+
   @Override
   public String getHostHREF() {
     return cardDavStore.getHostHREF();
@@ -102,7 +112,7 @@ public class HidingCardDavStore implements HidingDavStore<HidingCardDavCollectio
       if (returnedCollections.size() == 0)
         Optional.absent();
 
-      return Optional.of(new HidingCardDavCollection(returnedCollections.get(0), masterCipher));
+      return Optional.of(handleNewCollection(new HidingCardDavCollection(returnedCollections.get(0), masterCipher)));
 
     } catch (DavException e) {
 
@@ -143,7 +153,7 @@ public class HidingCardDavStore implements HidingDavStore<HidingCardDavCollectio
       List<CardDavCollection>       collections       = CardDavStore.getCollectionsFromMultiStatusResponses(cardDavStore, responses);
 
       for (CardDavCollection collection : collections)
-        hidingCollections.add(new HidingCardDavCollection(collection, masterCipher));
+        hidingCollections.add(handleNewCollection(new HidingCardDavCollection(collection, masterCipher)));
 
       return hidingCollections;
 
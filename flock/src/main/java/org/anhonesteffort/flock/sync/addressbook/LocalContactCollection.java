@@ -41,16 +41,23 @@ import ezvcard.VCard;
 import ezvcard.parameter.ImageType;
 import ezvcard.property.Photo;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
 import org.anhonesteffort.flock.sync.InvalidRemoteComponentException;
 import org.anhonesteffort.flock.webdav.carddav.CardDavConstants;
 import org.anhonesteffort.flock.sync.AbstractLocalComponentCollection;
+import org.anhonesteffort.flock.sync.LocalComponentLoader;
+import org.anhonesteffort.flock.sync.LocalRowDiff;
 import org.anhonesteffort.flock.webdav.ComponentETagPair;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -63,6 +70,7 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
 
   private static final String PREFERENCES_NAME            = "org.anhonesteffort.flock.sync.addressbook.LocalContactCollection";
   private static final String KEY_PREFIX_COLLECTION_C_TAG = "LocalContactCollection.KEY_PREFIX_COLLECTION_C_TAG";
+  private static final String KEY_PREFIX_SYNC_TOKEN       = "LocalContactCollection.KEY_PREFIX_SYNC_TOKEN";
   private static final String KEY_COLLECTION_DISPLAY_NAME = "LocalContactCollection.KEY_COLLECTION_DISPLAY_NAME";
 
   private Context context;
@@ -80,6 +88,10 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     return KEY_PREFIX_COLLECTION_C_TAG.concat(getPath());
   }
 
+  private String getKeyForSyncToken() {
+    return KEY_PREFIX_SYNC_TOKEN.concat(getPath());
+  }
+
   private static SharedPreferences getSharedPreferences(Context context) {
     return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
   }
@@ -115,7 +127,7 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     return getSyncAdapterUri(ContactsContract.RawContacts.CONTENT_URI);
   }
 
-  private Uri getUriForData() {
+  Uri getUriForData() {
     return getSyncAdapterUri(ContactsContract.Data.CONTENT_URI);
   }
 
@@ -152,6 +164,11 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     return ContactFactory.COLUMN_NAME_CONTACT_ETAG;
   }
 
+  @Override
+  protected String getColumnNameComponentContentHash() {
+    return ContactFactory.COLUMN_NAME_CONTACT_CONTENT_HASH;
+  }
+
   @Override
   protected String getColumnNameDirty() {
     return ContactsContract.RawContacts.DIRTY;
@@ -195,86 +212,58 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     ).apply();
   }
 
-  private void addStructuredNames(Long rawContactId, VCard vCard) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForStructuredName(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues structuredNameValues = ContactFactory.getValuesForStructuredName(cursor);
-      ContactFactory.addStructuredName(vCard, structuredNameValues);
-    }
-    cursor.close();
+  @Override
+  public Optional<String> getSyncToken() {
+    return Optional.fromNullable(
+        getSharedPreferences(context).getString(getKeyForSyncToken(), null)
+    );
   }
 
-  private void addPhoneNumbers(Long rawContactId, VCard vCard)
-      throws RemoteException
-  {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForPhoneNumber(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues phoneNumberValues = ContactFactory.getValuesForPhoneNumber(cursor);
-      ContactFactory.addPhoneNumber(vCard, phoneNumberValues);
-    }
-    cursor.close();
+  @Override
+  public void setSyncToken(String syncToken) {
+    getSharedPreferences(context).edit().putString(
+        getKeyForSyncToken(), syncToken
+    ).apply();
   }
 
-  private void addEmailAddresses(Long rawContactId, VCard vCard)
+  Optional<Photo> getDisplayPhoto(Long rawContactId, Long photoFileId)
       throws RemoteException
   {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE
-    };
+    PhotoCache       photoCache  = PhotoCache.getInstance(context);
+    Optional<byte[]> cachedPhoto = photoCache.getPhoto(rawContactId, photoFileId);
 
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForEmailAddress(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues emailAddressValues = ContactFactory.getValuesForEmailAddress(cursor);
-      ContactFactory.addEmailAddress(vCard, emailAddressValues);
-    }
-    cursor.close();
-  }
+    if (cachedPhoto.isPresent())
+      return Optional.of(new Photo(cachedPhoto.get(), ImageType.PNG));
 
-  private Optional<Photo> getDisplayPhoto(Long rawContactId)
-      throws RemoteException
-  {
     try {
 
-      AssetFileDescriptor   fileDescriptor = client.openAssetFile(getUriForDisplayPhoto(rawContactId), "r");
-      Bitmap                bitMap         = BitmapFactory.decodeFileDescriptor(fileDescriptor.getFileDescriptor());
-      ByteArrayOutputStream outputStream   = new ByteArrayOutputStream();
+      AssetFileDescriptor fileDescriptor = client.openAssetFile(getUriForDisplayPhoto(rawContactId), "r");
+      Bitmap              bitMap         = null;
+
+      try {
+        bitMap = BitmapFactory.decodeFileDescriptor(fileDescriptor.getFileDescriptor());
+      } finally {
+        try {
+          fileDescriptor.close();
+        } catch (IOException e) {
+          Log.w(TAG, "caught exception while closing display photo", e);
+        }
+      }
+
+      if (bitMap == null) {
+        Log.w(TAG, "unable to decode display photo for raw contact " + rawContactId);
+        return Optional.absent();
+      }
 
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
       bitMap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+      bitMap.recycle();
+
+      byte[] photoData = outputStream.toByteArray();
+      photoCache.putPhoto(rawContactId, photoFileId, photoData);
 
       return Optional.of(
-          new Photo(outputStream.toByteArray(), ImageType.PNG)
+          new Photo(photoData, ImageType.PNG)
       );
 
     } catch (FileNotFoundException e) {
@@ -282,242 +271,9 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     }
   }
 
-  private Optional<Photo> getDataRowsPhoto(Long rawContactId) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId()     + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[] {
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE
-    };
-
-    Optional<Photo> photo  = Optional.absent();
-    Cursor          cursor = client.query(getUriForData(),
-                                          ContactFactory.getProjectionForPhoto(),
-                                          SELECTION,
-                                          SELECTION_ARGS,
-                                          null);
-
-    if (cursor.moveToNext()) {
-      ContentValues photoValues = ContactFactory.getValuesForPhoto(cursor);
-                    photo       = ContactFactory.getPhotoForValues(photoValues);
-    }
-
-    cursor.close();
-    return photo;
-  }
-
-  private void addPhotos(Long rawContactId, VCard vCard)
-      throws RemoteException
-  {
-    Optional<Photo> photo = getDisplayPhoto(rawContactId);
-    if (!photo.isPresent())
-      photo = getDataRowsPhoto(rawContactId);
-
-    if (photo.isPresent())
-      vCard.addPhoto(photo.get());
-  }
-
-  private void addOrganizations(Long rawContactId, VCard vCard) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForOrganization(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues organizationValues = ContactFactory.getValuesForOrganization(cursor);
-      ContactFactory.addOrganization(vCard, organizationValues);
-    }
-    cursor.close();
-  }
-
-  private void addInstantMessaging(Long rawContactId, VCard vCard)
-      throws RemoteException
-  {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForInstantMessaging(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues instantMessagingValues = ContactFactory.getValuesForInstantMessaging(cursor);
-      ContactFactory.addInstantMessaging(vCard, instantMessagingValues);
-    }
-    cursor.close();
-  }
-
-  private void addNickNames(Long rawContactId, VCard vCard) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForNickName(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues nickNameValues = ContactFactory.getValuesForNickName(cursor);
-      ContactFactory.addNickName(vCard, nickNameValues);
-    }
-    cursor.close();
-  }
-
-  private void addNotes(Long rawContactId, VCard vCard) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Note.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForNote(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues noteValues = ContactFactory.getValuesForNote(cursor);
-      ContactFactory.addNote(vCard, noteValues);
-    }
-    cursor.close();
-  }
-
-  private void addPostalAddresses(Long rawContactId, VCard vCard)
-      throws RemoteException
-  {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForPostalAddress(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues postalAddressValues = ContactFactory.getValuesForPostalAddress(cursor);
-      ContactFactory.addPostalAddress(vCard, postalAddressValues);
-    }
-    cursor.close();
-  }
-
-  private void addWebsites(Long rawContactId, VCard vCard)
-      throws RemoteException
-  {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Website.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForWebsite(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues websiteValues = ContactFactory.getValuesForWebsite(cursor);
-      ContactFactory.addWebsite(vCard, websiteValues);
-    }
-    cursor.close();
-  }
-
-  private void addEvents(Long rawContactId, VCard vCard)
-      throws InvalidLocalComponentException, RemoteException
-  {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForEvent(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues eventValues = ContactFactory.getValuesForEvent(cursor);
-      ContactFactory.addEvent(getPath(), vCard, eventValues);
-    }
-    cursor.close();
-  }
-
-  private void addSipAddresses(Long rawContactId, VCard vCard) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[]{
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE
-    };
-
-    Cursor cursor = client.query(getUriForData(),
-                                 ContactFactory.getProjectionForSipAddress(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues sipAddressValues = ContactFactory.getValuesForSipAddress(cursor);
-      ContactFactory.addSipAddress(vCard, sipAddressValues);
-    }
-    cursor.close();
-  }
-
-  private List<Long> getGroupIdsForContact(Long rawContactId) throws RemoteException {
-    String   SELECTION      = getColumnNameComponentDataLocalId() + "=? " +
-                              "AND " + ContactsContract.Data.MIMETYPE + "=?";
-    String[] SELECTION_ARGS = new String[] {
-        rawContactId.toString(),
-        ContactsContract.CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE
-    };
-
-    List<Long> groupIds = new LinkedList<Long>();
-    Cursor     cursor   = client.query(getUriForData(),
-                                       ContactFactory.getProjectionForGroupMembership(),
-                                       SELECTION,
-                                       SELECTION_ARGS,
-                                       null);
-
-    while (cursor.moveToNext())
-      groupIds.add(ContactFactory.getIdForGroupMembership(cursor));
-
-    cursor.close();
-    return groupIds;
-  }
-
-  private boolean isContactWithoutGroupVisible() throws RemoteException {
+  boolean isContactWithoutGroupVisible() throws RemoteException {
     boolean contactWithoutGroupVisible = true;
-    Cursor  cursor                     = client.query(getSyncAdapterUri(ContactsContract.Settings.CONTENT_URI),
+    Cursor  cursor                     = SyncMetrics.query(client, getSyncAdapterUri(ContactsContract.Settings.CONTENT_URI),
         new String[] {
             ContactsContract.Settings.UNGROUPED_VISIBLE,
         },
@@ -531,141 +287,21 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     cursor.close();
     return contactWithoutGroupVisible;
   }
-
-  private void addInvisibleProperty(Long rawContactId, VCard vCard) throws RemoteException {
-    boolean isMemberOfGroup = getGroupIdsForContact(rawContactId).size() > 0;
-
-    if (!isMemberOfGroup && !isContactWithoutGroupVisible())
-      ContactFactory.addInvisibleProperty(vCard);
-  }
-
-  private List<Pair<Integer, Long>> getAggregateExceptionTypeIdPairs(Long rawContactId)
-      throws RemoteException
-  {
-    String[] PROJECTION     = new String[] {
-        ContactsContract.AggregationExceptions.TYPE,
-        ContactsContract.AggregationExceptions.RAW_CONTACT_ID1,
-        ContactsContract.AggregationExceptions.RAW_CONTACT_ID2
-    };
-    String   SELECTION      = ContactsContract.AggregationExceptions.RAW_CONTACT_ID1 + "=? OR " +
-                              ContactsContract.AggregationExceptions.RAW_CONTACT_ID2 + "=?";
-    String[] SELECTION_ARGS = new String[] { rawContactId.toString(), rawContactId.toString() };
-
-    List<Pair<Integer, Long>> typeIdPairs = new LinkedList<Pair<Integer, Long>>();
-    Cursor cursor = client.query(ContactsContract.AggregationExceptions.CONTENT_URI,
-                                 PROJECTION,
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      if (cursor.getLong(1) != rawContactId)
-        typeIdPairs.add(new Pair<Integer, Long>(cursor.getInt(0), cursor.getLong(1)));
-      else
-        typeIdPairs.add(new Pair<Integer, Long>(cursor.getInt(0), cursor.getLong(2)));
-    }
-
-    cursor.close();
-    return typeIdPairs;
-  }
-
-  private Optional<Pair<Account, String>> getAccountUidPairForRawContact(Long rawContactId)
-      throws RemoteException
-  {
-    String[] PROJECTION     = new String[] {
-        ContactsContract.RawContacts.ACCOUNT_NAME,
-        ContactsContract.RawContacts.ACCOUNT_TYPE,
-        ContactFactory.COLUMN_NAME_CONTACT_UID
-    };
-    String   SELECTION      = ContactsContract.RawContacts._ID + "=? ";
-    String[] SELECTION_ARGS = new String[] { rawContactId.toString() };
-
-    Pair<Account, String> accountUidPair = null;
-    Cursor                cursor         = client.query(ContactsContract.RawContacts.CONTENT_URI,
-                                                        PROJECTION,
-                                                        SELECTION,
-                                                        SELECTION_ARGS,
-                                                        null);
-
-    if (cursor.moveToNext()) {
-      if (cursor.getString(2) != null) {
-        accountUidPair = new Pair<Account, String>(
-            new Account(cursor.getString(0), cursor.getString(1)),
-            cursor.getString(2)
-        );
-      }
-      else {
-        Log.e(TAG, "raw contact " + rawContactId +
-                   " has no SOURCE_ID :( is likely a local contact, must ignore.");
-      }
-    }
-
-    cursor.close();
-    return Optional.fromNullable(accountUidPair);
-  }
-
-  private void addAggregationExceptions(Long rawContactId, VCard vCard) throws RemoteException {
-    List<ContactFactory.AggregationException> exceptions  = new LinkedList<ContactFactory.AggregationException>();
-    List<Pair<Integer, Long>>                 typeIdPairs = getAggregateExceptionTypeIdPairs(rawContactId);
-
-    for (Pair<Integer, Long> typeIdPair : typeIdPairs) {
-      Optional<Pair<Account, String>> accountUidPair = getAccountUidPairForRawContact(typeIdPair.second);
-      if (accountUidPair.isPresent()) {
-        exceptions.add(new ContactFactory.AggregationException(
-            typeIdPair.first,
-            accountUidPair.get().first,
-            accountUidPair.get().second
-        ));
-      }
-      else
-        Log.e(TAG, "accountUidPair for raw contact " + typeIdPair.second + " is not present :(");
-    }
-
-    ContactFactory.addAggregationExceptions(vCard, exceptions);
-  }
-
-  private void buildContact(Long rawContactId, VCard vCard)
-      throws InvalidLocalComponentException, RemoteException
-  {
-    addStructuredNames(      rawContactId, vCard);
-    addPhoneNumbers(         rawContactId, vCard);
-    addEmailAddresses(       rawContactId, vCard);
-    addPhotos(               rawContactId, vCard);
-    addOrganizations(        rawContactId, vCard);
-    addInstantMessaging(     rawContactId, vCard);
-    addNickNames(            rawContactId, vCard);
-    addNotes(                rawContactId, vCard);
-    addPostalAddresses(      rawContactId, vCard);
-    addWebsites(             rawContactId, vCard);
-    addEvents(               rawContactId, vCard);
-    addSipAddresses(         rawContactId, vCard);
-    addInvisibleProperty(    rawContactId, vCard);
-    addAggregationExceptions(rawContactId, vCard);
+  @Override
+  public LocalComponentLoader<VCard> getComponentLoader(List<Long> rawContactIds) {
+    return new BulkContactLoader(this, client, rawContactIds);
   }
 
   @Override
   public Optional<VCard> getComponent(Long rawContactId)
       throws InvalidLocalComponentException, RemoteException
   {
-    Cursor cursor = client.query(ContentUris.withAppendedId(getUriForComponents(), rawContactId),
-                                 ContactFactory.getProjectionForRawContact(),
-                                 null,
-                                 null,
-                                 null);
-
-    if (cursor == null)
-      throw new RemoteException("Content provider client gave us a null cursor!");
-
-    if (cursor.moveToNext()) {
-      ContentValues            rawContactValues = ContactFactory.getValuesForRawContact(cursor);
-      ComponentETagPair<VCard> vCard            = ContactFactory.getVCard(rawContactValues);
+    Optional<ComponentETagPair<VCard>> vCard =
+        getComponentLoader(Arrays.asList(rawContactId)).getComponent(rawContactId);
 
-      buildContact(rawContactId, vCard.getComponent());
-      cursor.close();
-      return Optional.of(vCard.getComponent());
-    }
+    if (vCard.isPresent())
+      return Optional.of(vCard.get().getComponent());
 
-    cursor.close();
     return Optional.absent();
   }
 
@@ -673,27 +309,24 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
   public Optional<ComponentETagPair<VCard>> getComponent(String uid)
       throws InvalidLocalComponentException, RemoteException
   {
-    String   SELECTION      = getColumnNameComponentUid() + "=?";
-    String[] SELECTION_ARGS = new String[]{uid};
+    final String[] PROJECTION     = new String[]{getColumnNameComponentLocalId()};
+    final String   SELECTION      = getColumnNameComponentUid() + "=?";
+    final String[] SELECTION_ARGS = new String[]{uid};
 
-    Cursor cursor = client.query(getUriForComponents(),
-                                 ContactFactory.getProjectionForRawContact(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(),
+                                              PROJECTION,
+                                              SELECTION,
+                                              SELECTION_ARGS,
+                                              null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
     if (cursor.moveToNext()) {
-      ContentValues            rawContactValues = ContactFactory.getValuesForRawContact(cursor);
-      Long                     rawContactId     = rawContactValues.getAsLong(getColumnNameComponentLocalId());
-      ComponentETagPair<VCard> vCard            = ContactFactory.getVCard(rawContactValues);
-
-      buildContact(rawContactId, vCard.getComponent());
+      Long rawContactId = cursor.getLong(0);
       cursor.close();
 
-      return Optional.of(vCard);
+      return getComponentLoader(Arrays.asList(rawContactId)).getComponent(rawContactId);
     }
 
     cursor.close();
@@ -704,45 +337,34 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
   public List<ComponentETagPair<VCard>> getComponents()
       throws InvalidLocalComponentException, RemoteException
   {
-    List<ComponentETagPair<VCard>> vCards = new LinkedList<ComponentETagPair<VCard>>();
+    List<ComponentETagPair<VCard>> vCards       = new LinkedList<ComponentETagPair<VCard>>();
+    List<Long>                     componentIds = getComponentIds();
+    LocalComponentLoader<VCard>    loader       = getComponentLoader(componentIds);
 
-
-    Cursor cursor = client.query(getUriForComponents(),
-                                 ContactFactory.getProjectionForRawContact(),
-                                 null, null, null);
-
-    if (cursor == null)
-      throw new RemoteException("Content provider client gave us a null cursor!");
-
-    while (cursor.moveToNext()) {
-      ContentValues            rawContactValues = ContactFactory.getValuesForRawContact(cursor);
-      Long                     rawContactId     = rawContactValues.getAsLong(getColumnNameComponentLocalId());
-      ComponentETagPair<VCard> vCard            = ContactFactory.getVCard(rawContactValues);
-
-      buildContact(rawContactId, vCard.getComponent());
-      vCards.add(vCard);
+    for (Long rawContactId : componentIds) {
+      Optional<ComponentETagPair<VCard>> vCard = loader.getComponent(rawContactId);
+      if (vCard.isPresent())
+        vCards.add(vCard.get());
     }
 
-    cursor.close();
     return vCards;
   }
 
-  private ArrayList<ContentProviderOperation> getOperationsForAggregationExceptions(VCard vCard,
-                                                                                    int   idBackReference)
+  private List<ContentValues> getValuesForAggregationExceptions(VCard vCard)
       throws RemoteException
   {
-    ArrayList<ContentProviderOperation>       operations = new ArrayList<ContentProviderOperation>();
+    List<ContentValues>                       valuesList = new LinkedList<ContentValues>();
     List<ContactFactory.AggregationException> exceptions = null;
 
     try {
 
       exceptions = ContactFactory.getAggregationExceptions(vCard);
       if (exceptions.isEmpty())
-        return operations;
+        return valuesList;
 
     } catch (IllegalArgumentException e) {
       Log.e(TAG, "error parsing aggregation exceptions from vCard, ignoring :(", e);
-      return operations;
+      return valuesList;
     }
 
     Log.d(TAG, "need to insert values for " + exceptions.size() + " aggregation exceptions.");
@@ -759,12 +381,7 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
         values.put(ContactsContract.AggregationExceptions.TYPE,            exception.getType());
         values.put(ContactsContract.AggregationExceptions.RAW_CONTACT_ID2, exceptionLocalId.get());
 
-        operations.add(
-            ContentProviderOperation.newUpdate(ContactsContract.AggregationExceptions.CONTENT_URI)
-                .withValues(values)
-                .withValueBackReference(ContactsContract.AggregationExceptions.RAW_CONTACT_ID1, idBackReference)
-                .build()
-        );
+        valuesList.add(values);
       }
       else {
         Log.e(TAG, "exceptionLocalId is not present for raw contact " + exception.getContactUid() +
@@ -773,6 +390,78 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
       }
     }
 
+    return valuesList;
+  }
+
+  private ArrayList<ContentProviderOperation> getOperationsForAggregationExceptions(VCard vCard,
+                                                                                    int   idBackReference)
+      throws RemoteException
+  {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+
+    for (ContentValues values : getValuesForAggregationExceptions(vCard)) {
+      operations.add(
+          ContentProviderOperation.newUpdate(ContactsContract.AggregationExceptions.CONTENT_URI)
+              .withValues(values)
+              .withValueBackReference(ContactsContract.AggregationExceptions.RAW_CONTACT_ID1, idBackReference)
+              .build()
+      );
+    }
+
+    return operations;
+  }
+
+  private List<Long> getAggregationExceptionIds(Long rawContactId) throws RemoteException {
+    final String[] PROJECTION = new String[] {
+        ContactsContract.AggregationExceptions.RAW_CONTACT_ID1,
+        ContactsContract.AggregationExceptions.RAW_CONTACT_ID2
+    };
+    final String   SELECTION  = ContactsContract.AggregationExceptions.RAW_CONTACT_ID1 + "=" + rawContactId + " OR " +
+                                ContactsContract.AggregationExceptions.RAW_CONTACT_ID2 + "=" + rawContactId;
+
+    Cursor cursor = SyncMetrics.query(client, ContactsContract.AggregationExceptions.CONTENT_URI, PROJECTION, SELECTION, null, null);
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    List<Long> otherIds = new LinkedList<Long>();
+    while (cursor.moveToNext()) {
+      if (cursor.getLong(0) != rawContactId)
+        otherIds.add(cursor.getLong(0));
+      else
+        otherIds.add(cursor.getLong(1));
+    }
+
+    cursor.close();
+    return otherIds;
+  }
+
+  private ArrayList<ContentProviderOperation> getOperationsForAggregationExceptions(VCard vCard,
+                                                                                    Long  rawContactId)
+      throws RemoteException
+  {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+    List<Long>                          staleIds   = getAggregationExceptionIds(rawContactId);
+
+    for (ContentValues values : getValuesForAggregationExceptions(vCard)) {
+      staleIds.remove(values.getAsLong(ContactsContract.AggregationExceptions.RAW_CONTACT_ID2));
+      operations.add(
+          ContentProviderOperation.newUpdate(ContactsContract.AggregationExceptions.CONTENT_URI)
+              .withValues(values)
+              .withValue(ContactsContract.AggregationExceptions.RAW_CONTACT_ID1, rawContactId)
+              .build()
+      );
+    }
+
+    for (Long staleId : staleIds) {
+      operations.add(
+          ContentProviderOperation.newUpdate(ContactsContract.AggregationExceptions.CONTENT_URI)
+              .withValue(ContactsContract.AggregationExceptions.TYPE,            ContactsContract.AggregationExceptions.TYPE_AUTOMATIC)
+              .withValue(ContactsContract.AggregationExceptions.RAW_CONTACT_ID1, rawContactId)
+              .withValue(ContactsContract.AggregationExceptions.RAW_CONTACT_ID2, staleId)
+              .build()
+      );
+    }
+
     return operations;
   }
 
@@ -916,19 +605,259 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
     return operationQueue.size() - rawContactOpIndex;
   }
 
+  private static LinkedHashMap<String, List<ContentValues>> getWantedDataRows(VCard vCard) {
+    LinkedHashMap<String, List<ContentValues>> rows = new LinkedHashMap<String, List<ContentValues>>();
+
+    List<ContentValues>     structuredNames = new LinkedList<ContentValues>();
+    Optional<ContentValues> structuredName  = ContactFactory.getValuesForStructuredName(vCard);
+    if (structuredName.isPresent())
+      structuredNames.add(structuredName.get());
+
+    List<ContentValues>     photos = new LinkedList<ContentValues>();
+    Optional<ContentValues> photo  = ContactFactory.getValuesForPhoto(vCard);
+    if (photo.isPresent())
+      photos.add(photo.get());
+
+    rows.put(ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE,   structuredNames);
+    rows.put(ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE,            ContactFactory.getValuesForPhoneNumbers(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE,            ContactFactory.getValuesForEmailAddresses(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE,            photos);
+    rows.put(ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE,     ContactFactory.getValuesForOrganizations(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE,               ContactFactory.getValuesForInstantMessaging(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE,         ContactFactory.getValuesForNickNames(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Note.CONTENT_ITEM_TYPE,             ContactFactory.getValuesForNotes(vCard));
+    rows.put(ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE, ContactFactory.getValuesForPostalAddresses(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Website.CONTENT_ITEM_TYPE,          ContactFactory.getValuesForWebsites(vCard));
+    rows.put(ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE,            ContactFactory.getValuesForEvents(vCard));
+    rows.put(ContactsContract.CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE,       ContactFactory.getValuesForSipAddresses(vCard));
+
+    return rows;
+  }
+
+  private static final String[] COLUMNS_EXISTING_PHOTO = new String[] {
+      ContactsContract.CommonDataKinds.Photo.PHOTO_FILE_ID,
+      ContactFactory.COLUMN_NAME_PHOTO_CONTENT_HASH
+  };
+
+  private HashMap<String, List<Pair<Long, ContentValues>>> getExistingDataRows(Long rawContactId)
+      throws RemoteException
+  {
+    HashMap<String, List<Pair<Long, ContentValues>>> rows   = new HashMap<String, List<Pair<Long, ContentValues>>>();
+    Cursor                                           cursor = SyncMetrics.query(client, getUriForData(),
+                                                                                        BulkContactLoader.PROJECTION_DATA,
+                                                                                        ContactsContract.Data.RAW_CONTACT_ID + "=" + rawContactId,
+                                                                                        null,
+                                                                                        ContactsContract.Data._ID);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      String   mimeType     = cursor.getString(1);
+      String[] ownedColumns = BulkContactLoader.PROJECTIONS_FOR_MIMETYPE.get(mimeType);
+
+      if (ownedColumns == null)
+        continue;
+
+      if (mimeType.equals(ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE))
+        ownedColumns = COLUMNS_EXISTING_PHOTO;
+
+      List<Pair<Long, ContentValues>> mimeTypeRows = rows.get(mimeType);
+      if (mimeTypeRows == null) {
+        mimeTypeRows = new LinkedList<Pair<Long, ContentValues>>();
+        rows.put(mimeType, mimeTypeRows);
+      }
+
+      mimeTypeRows.add(new Pair<Long, ContentValues>(
+          cursor.getLong(cursor.getColumnIndexOrThrow(ContactsContract.Data._ID)),
+          LocalRowDiff.getValuesForColumns(cursor, ownedColumns)
+      ));
+    }
+
+    cursor.close();
+    return rows;
+  }
+
+  private void handleQueueDataRowDiff(Long rawContactId, String mimeType, LocalRowDiff diff) {
+    for (ContentValues insertedRow : diff.getInsertedRows()) {
+      operationQueue.queue(
+          ContentProviderOperation.newInsert(getUriForData())
+              .withValues(insertedRow)
+              .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
+              .build(),
+          256);
+    }
+
+    for (Pair<Long, ContentValues> updatedRow : diff.getUpdatedRows()) {
+      updatedRow.second.remove(ContactsContract.Data.MIMETYPE);
+      operationQueue.queue(
+          ContentProviderOperation.newUpdate(ContentUris.withAppendedId(getUriForData(), updatedRow.first))
+              .withValues(updatedRow.second)
+              .build(),
+          256);
+    }
+
+    for (Long deletedRowId : diff.getDeletedRowIds()) {
+      operationQueue.queue(ContentProviderOperation
+          .newDelete(ContentUris.withAppendedId(getUriForData(), deletedRowId))
+          .build());
+    }
+  }
+
+  /*
+  PHOTO of an existing row only holds the thumbnail the provider scaled down from what was
+  written, so a wanted photo is compared against the hash recorded when it was written and
+  then against the display photo we would push for the existing row.
+   */
+  private boolean isPhotoUnchanged(Long rawContactId, ContentValues existingRow, ContentValues wantedRow)
+      throws RemoteException
+  {
+    byte[] wantedPhoto = wantedRow.getAsByteArray(ContactsContract.CommonDataKinds.Photo.PHOTO);
+    String wantedHash  = wantedRow.getAsString(ContactFactory.COLUMN_NAME_PHOTO_CONTENT_HASH);
+
+    if (wantedHash != null && wantedHash.equals(existingRow.getAsString(ContactFactory.COLUMN_NAME_PHOTO_CONTENT_HASH)))
+      return true;
+
+    Long photoFileId = existingRow.getAsLong(ContactsContract.CommonDataKinds.Photo.PHOTO_FILE_ID);
+    if (photoFileId == null)
+      return false;
+
+    Optional<Photo> displayPhoto = getDisplayPhoto(rawContactId, photoFileId);
+    return displayPhoto.isPresent() && Arrays.equals(displayPhoto.get().getData(), wantedPhoto);
+  }
+
+  private void handleQueuePhotoDiff(Long                            rawContactId,
+                                    List<Pair<Long, ContentValues>> existingRows,
+                                    List<ContentValues>             wantedRows)
+      throws RemoteException
+  {
+    List<Pair<Long, ContentValues>> unmatchedRows = new LinkedList<Pair<Long, ContentValues>>(existingRows);
+
+    for (ContentValues wantedRow : wantedRows) {
+      Pair<Long, ContentValues> matchedRow = null;
+
+      for (Pair<Long, ContentValues> existingRow : unmatchedRows) {
+        if (isPhotoUnchanged(rawContactId, existingRow.second, wantedRow)) {
+          matchedRow = existingRow;
+          break;
+        }
+      }
+
+      if (matchedRow != null) {
+        unmatchedRows.remove(matchedRow);
+        continue;
+      }
+
+      if (!unmatchedRows.isEmpty()) {
+        ContentValues updatedRow = new ContentValues(wantedRow);
+        updatedRow.remove(ContactsContract.Data.MIMETYPE);
+
+        operationQueue.queue(
+            ContentProviderOperation.newUpdate(ContentUris.withAppendedId(getUriForData(), unmatchedRows.remove(0).first))
+                .withValues(updatedRow)
+                .build(),
+            ContactFactory.getSizeOfPhotoInBytes(updatedRow));
+      }
+      else {
+        operationQueue.queue(
+            ContentProviderOperation.newInsert(getUriForData())
+                .withValues(wantedRow)
+                .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
+                .build(),
+            ContactFactory.getSizeOfPhotoInBytes(wantedRow));
+      }
+    }
+
+    for (Pair<Long, ContentValues> deletedRow : unmatchedRows) {
+      operationQueue.queue(ContentProviderOperation
+          .newDelete(ContentUris.withAppendedId(getUriForData(), deletedRow.first))
+          .build());
+    }
+  }
+
+  private ContentValues getExistingRawContactValues(Long rawContactId, String[] columns)
+      throws RemoteException
+  {
+    Cursor cursor = SyncMetrics.query(client, ContentUris.withAppendedId(getUriForComponents(), rawContactId),
+                                              columns, null, null, null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    try {
+
+      if (cursor.moveToNext())
+        return LocalRowDiff.getValuesForColumns(cursor, columns);
+
+      return new ContentValues();
+
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /*
+  applies the remote vCard onto the raw contact we already have so the raw contact id
+  and any unchanged data rows survive, only falls back to an insert if we have no copy.
+   */
   @Override
   public int updateComponent(ComponentETagPair<VCard> vCard)
       throws InvalidRemoteComponentException, RemoteException
   {
-    if (vCard.getComponent().getUid() != null) {
-      removeComponent(vCard.getComponent().getUid().getValue());
-      return addComponent(vCard);
-    }
-    else {
+    if (vCard.getComponent().getUid() == null) {
       Log.e(TAG, "was given a vcard with missing uid");
       throw new InvalidRemoteComponentException("Cannot update a vCard without UID!",
                                                 CardDavConstants.CARDDAV_NAMESPACE, getPath());
     }
+
+    Optional<Long> rawContactId = getIndexedLocalIdForUid(vCard.getComponent().getUid().getValue());
+    if (!rawContactId.isPresent())
+      return addComponent(vCard);
+
+    int                                              rawContactOpIndex = operationQueue.size();
+    HashMap<String, List<Pair<Long, ContentValues>>> existingRows      = getExistingDataRows(rawContactId.get());
+    LinkedHashMap<String, List<ContentValues>>       wantedRows        = getWantedDataRows(vCard.getComponent());
+
+    ContentValues wantedRawContact  = ContactFactory.getValuesForRawContact(vCard);
+    String[]      rawContactColumns = wantedRawContact.keySet().toArray(new String[wantedRawContact.size()]);
+    ContentValues changedRawContact = LocalRowDiff.getChangedValues(
+        getExistingRawContactValues(rawContactId.get(), rawContactColumns),
+        wantedRawContact,
+        rawContactColumns
+    );
+
+    if (changedRawContact.size() > 0) {
+      operationQueue.queue(
+          ContentProviderOperation.newUpdate(ContentUris.withAppendedId(getUriForComponents(), rawContactId.get()))
+              .withValues(changedRawContact)
+              .build(),
+          128
+      );
+    }
+
+    for (String mimeType : wantedRows.keySet()) {
+      List<Pair<Long, ContentValues>> mimeTypeRows = existingRows.get(mimeType);
+      if (mimeTypeRows == null)
+        mimeTypeRows = new LinkedList<Pair<Long, ContentValues>>();
+
+      if (mimeType.equals(ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE)) {
+        handleQueuePhotoDiff(rawContactId.get(), mimeTypeRows, wantedRows.get(mimeType));
+        continue;
+      }
+
+      handleQueueDataRowDiff(rawContactId.get(), mimeType, new LocalRowDiff(
+          mimeTypeRows,
+          wantedRows.get(mimeType),
+          BulkContactLoader.PROJECTIONS_FOR_MIMETYPE.get(mimeType)
+      ));
+    }
+
+    operationQueue.queueAll(
+        getOperationsForAggregationExceptions(vCard.getComponent(), rawContactId.get()),
+        256
+    );
+
+    return operationQueue.size() - rawContactOpIndex;
   }
 
   private boolean handleCommitPendingIfFull(LocalContactCollection toCollection,
@@ -975,21 +904,22 @@ public class LocalContactCollection extends AbstractLocalComponentCollection<VCa
   public void copyToAccount(Account toAccount, ContactCopiedListener listener)
       throws RemoteException
   {
-    LocalContactCollection toCollection           = new LocalContactCollection(context, client, toAccount, getPath());
-    List<Long>             componentIds           = getComponentIds();
-    List<Integer>          contactOperationCounts = new LinkedList<Integer>();
+    LocalContactCollection      toCollection           = new LocalContactCollection(context, client, toAccount, getPath());
+    List<Long>                  componentIds           = getComponentIds();
+    List<Integer>               contactOperationCounts = new LinkedList<Integer>();
+    LocalComponentLoader<VCard> loader                 = getComponentLoader(componentIds);
 
     Log.d(TAG, "copy my " + componentIds.size() + " contacts to " + toAccount.name);
 
     for (Long contactId : componentIds) {
       try {
 
-        Optional<VCard> copyContact = getComponent(contactId);
+        Optional<ComponentETagPair<VCard>> copyContact = loader.getComponent(contactId);
         if (copyContact.isPresent()) {
-          if (!ContactFactory.hasInvisibleProperty(copyContact.get())) {
-            copyContact.get().setUid(null);
+          if (!ContactFactory.hasInvisibleProperty(copyContact.get().getComponent())) {
+            copyContact.get().getComponent().setUid(null);
             ComponentETagPair<VCard> correctedContact =
-                new ComponentETagPair<VCard>(copyContact.get(), Optional.<String>absent());
+                new ComponentETagPair<VCard>(copyContact.get().getComponent(), Optional.<String>absent());
 
             contactOperationCounts.add(toCollection.addComponent(correctedContact));
 
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync.addressbook;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * rhodey
+ */
+public class PhotoCache {
+
+  private static final String TAG = "org.anhonesteffort.flock.sync.addressbook.PhotoCache";
+
+  private static final String DIRECTORY_NAME       = "display_photos";
+  private static final String SUFFIX_TEMP          = ".tmp";
+  private static final long   MIN_CACHE_BYTES      = 8  * 1024 * 1024;
+  private static final long   MAX_CACHE_BYTES      = 64 * 1024 * 1024;
+  private static final long   USABLE_SPACE_DIVISOR = 10;
+
+  private static PhotoCache instance;
+
+  private final File                        directory;
+  private final long                        maxCacheBytes;
+  private final LinkedHashMap<String, Long> entrySizes;
+
+  private long    cacheBytes = 0;
+  private boolean loaded     = false;
+
+  public PhotoCache(File directory, long maxCacheBytes) {
+    this.directory     = directory;
+    this.maxCacheBytes = maxCacheBytes;
+    entrySizes         = new LinkedHashMap<String, Long>(16, 0.75f, true);
+  }
+
+  /*
+  a full resync touches every display photo in the address book, a tenth of the free cache
+  partition holds that working set for typical books without crowding out other apps.
+   */
+  private static long getMaxCacheBytes(File cacheDirectory) {
+    long usableBytes = cacheDirectory.getUsableSpace() / USABLE_SPACE_DIVISOR;
+    return Math.max(MIN_CACHE_BYTES, Math.min(MAX_CACHE_BYTES, usableBytes));
+  }
+
+  public static synchronized PhotoCache getInstance(Context context) {
+    if (instance == null) {
+      instance = new PhotoCache(new File(context.getCacheDir(), DIRECTORY_NAME),
+                                getMaxCacheBytes(context.getCacheDir()));
+    }
+
+    return instance;
+  }
+
+  private static String getPrefixForRawContact(Long rawContactId) {
+    return rawContactId + "-";
+  }
+
+  private static String getEntryName(Long rawContactId, Long photoFileId) {
+    return getPrefixForRawContact(rawContactId) + photoFileId;
+  }
+
+  private static String getEntryName(String photoReference) {
+    return "ref-" + photoReference;
+  }
+
+  private void handleLoadEntries() {
+    if (loaded)
+      return;
+
+    loaded = true;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Log.e(TAG, "unable to create photo cache directory " + directory);
+      return;
+    }
+
+    File[] files = directory.listFiles();
+    if (files == null)
+      return;
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File lhs, File rhs) {
+        long lhsModified = lhs.lastModified();
+        long rhsModified = rhs.lastModified();
+        return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+      }
+    });
+
+    for (File file : files) {
+      if (file.getName().endsWith(SUFFIX_TEMP)) {
+        file.delete();
+        continue;
+      }
+
+      entrySizes.put(file.getName(), file.length());
+      cacheBytes += file.length();
+    }
+  }
+
+  private void handleRemoveEntry(String entryName) {
+    Long size = entrySizes.remove(entryName);
+    if (size != null)
+      cacheBytes -= size;
+
+    if (!new File(directory, entryName).delete())
+      Log.w(TAG, "unable to delete cached photo " + entryName);
+  }
+
+  private void handleRemoveStaleEntries(Long rawContactId, String currentEntryName) {
+    String           prefix  = getPrefixForRawContact(rawContactId);
+    Iterator<String> entries = entrySizes.keySet().iterator();
+
+    while (entries.hasNext()) {
+      String entryName = entries.next();
+      if (entryName.startsWith(prefix) && !entryName.equals(currentEntryName)) {
+        cacheBytes -= entrySizes.get(entryName);
+        entries.remove();
+        new File(directory, entryName).delete();
+      }
+    }
+  }
+
+  private void handleTrimToSize() {
+    Iterator<Map.Entry<String, Long>> entries = entrySizes.entrySet().iterator();
+
+    while (cacheBytes > maxCacheBytes && entries.hasNext()) {
+      Map.Entry<String, Long> entry = entries.next();
+
+      cacheBytes -= entry.getValue();
+      entries.remove();
+      new File(directory, entry.getKey()).delete();
+    }
+  }
+
+  private Optional<byte[]> handleReadEntry(String entryName) {
+    handleLoadEntries();
+
+    Long entrySize = entrySizes.get(entryName);
+
+    if (entrySize == null)
+      return Optional.absent();
+
+    File            file  = new File(directory, entryName);
+    byte[]          photo = new byte[entrySize.intValue()];
+    FileInputStream input = null;
+
+    try {
+
+      input = new FileInputStream(file);
+
+      int offset = 0;
+      while (offset < photo.length) {
+        int read = input.read(photo, offset, photo.length - offset);
+        if (read < 0)
+          throw new IOException("cached photo " + entryName + " is shorter than expected");
+        offset += read;
+      }
+
+      file.setLastModified(System.currentTimeMillis());
+      return Optional.of(photo);
+
+    } catch (IOException e) {
+      Log.w(TAG, "unable to read cached photo " + entryName + ", dropping it", e);
+      handleRemoveEntry(entryName);
+      return Optional.absent();
+    } finally {
+      if (input != null) {
+        try {
+          input.close();
+        } catch (IOException e) {
+          Log.w(TAG, "caught exception while closing cached photo", e);
+        }
+      }
+    }
+  }
+
+  /*
+  entries are written through a temp file and a rename, sizes are trusted when loaded after
+  a restart so a torn write must never be left under an entry name.
+   */
+  private void handleWriteEntry(String entryName, byte[] photo) {
+    File             tempFile = new File(directory, entryName + SUFFIX_TEMP);
+    FileOutputStream output   = null;
+
+    try {
+
+      output = new FileOutputStream(tempFile, false);
+      output.write(photo);
+      output.flush();
+      output.getFD().sync();
+      output.close();
+      output = null;
+
+      if (!tempFile.renameTo(new File(directory, entryName)))
+        throw new IOException("unable to rename " + tempFile.getPath() + " to " + entryName);
+
+      Long oldSize = entrySizes.put(entryName, (long) photo.length);
+      if (oldSize != null)
+        cacheBytes -= oldSize;
+
+      cacheBytes += photo.length;
+      handleTrimToSize();
+
+    } catch (IOException e) {
+      Log.w(TAG, "unable to cache photo " + entryName, e);
+      handleRemoveEntry(entryName);
+    } finally {
+      if (output != null) {
+        try {
+          output.close();
+        } catch (IOException e) {
+          Log.w(TAG, "caught exception while closing cached photo", e);
+        }
+      }
+      tempFile.delete();
+    }
+  }
+
+  public synchronized Optional<byte[]> getPhoto(Long rawContactId, Long photoFileId) {
+    return handleReadEntry(getEntryName(rawContactId, photoFileId));
+  }
+
+  public synchronized void putPhoto(Long rawContactId, Long photoFileId, byte[] photo) {
+    handleLoadEntries();
+
+    if (photo.length > maxCacheBytes)
+      return;
+
+    String entryName = getEntryName(rawContactId, photoFileId);
+
+    handleRemoveStaleEntries(rawContactId, entryName);
+    handleWriteEntry(entryName, photo);
+  }
+
+  public synchronized Optional<byte[]> getPhotoResource(String photoReference) {
+    return handleReadEntry(getEntryName(photoReference));
+  }
+
+  public synchronized void putPhotoResource(String photoReference, byte[] photo) {
+    handleLoadEntries();
+
+    if (photo.length > maxCacheBytes)
+      return;
+
+    handleWriteEntry(getEntryName(photoReference), photo);
+  }
+
+}
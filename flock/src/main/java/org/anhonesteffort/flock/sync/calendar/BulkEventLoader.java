@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.sync.calendar;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.provider.CalendarContract;
+
+import net.fortuna.ical4j.model.Calendar;
+
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.sync.ChunkedIdQuery;
+import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
+import org.anhonesteffort.flock.sync.LocalComponentLoader;
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.anhonesteffort.flock.webdav.ComponentETagPair;
+import org.anhonesteffort.flock.webdav.caldav.CalDavConstants;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class BulkEventLoader implements LocalComponentLoader<Calendar> {
+
+  public interface EventReadListener {
+
+    public void onEventRead(Long eventId, ComponentETagPair<Calendar> event)
+        throws RemoteException;
+
+    public void onEventReadFailed(Long eventId, InvalidLocalComponentException e)
+        throws RemoteException;
+
+  }
+
+  private final LocalEventCollection  collection;
+  private final ContentProviderClient client;
+  private final ChunkedIdQuery        eventIds;
+
+  private final HashMap<Long, ComponentETagPair<Calendar>>    loadedEvents;
+  private final HashMap<Long, InvalidLocalComponentException> invalidEvents;
+
+  public BulkEventLoader(LocalEventCollection  collection,
+                         ContentProviderClient client,
+                         List<Long>            eventIds)
+  {
+    this.collection = collection;
+    this.client     = client;
+    this.eventIds   = new ChunkedIdQuery(eventIds);
+    loadedEvents    = new HashMap<Long, ComponentETagPair<Calendar>>();
+    invalidEvents   = new HashMap<Long, InvalidLocalComponentException>();
+  }
+
+  public BulkEventLoader(LocalEventCollection collection, ContentProviderClient client) {
+    this(collection, client, new LinkedList<Long>());
+  }
+
+  private HashMap<Long, List<ContentValues>> getAttendees(Collection<Long> windowIds)
+      throws RemoteException
+  {
+    HashMap<Long, List<ContentValues>> attendees = new HashMap<Long, List<ContentValues>>();
+    Cursor                             cursor    = SyncMetrics.query(client, collection.getUriForAttendees(),
+                                                                             EventFactory.getProjectionForAttendee(),
+                                                                             ChunkedIdQuery.getSelectionForIds(CalendarContract.Attendees.EVENT_ID, windowIds),
+                                                                             null,
+                                                                             CalendarContract.Attendees.EVENT_ID + ", " + CalendarContract.Attendees._ID);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      ContentValues       attendeeValues = EventFactory.getValuesForAttendee(cursor);
+      Long                eventId        = attendeeValues.getAsLong(CalendarContract.Attendees.EVENT_ID);
+      List<ContentValues> eventAttendees = attendees.get(eventId);
+
+      if (eventAttendees == null) {
+        eventAttendees = new LinkedList<ContentValues>();
+        attendees.put(eventId, eventAttendees);
+      }
+      eventAttendees.add(attendeeValues);
+    }
+
+    cursor.close();
+    return attendees;
+  }
+
+  private HashMap<Long, List<ContentValues>> getReminders(Collection<Long> windowIds)
+      throws RemoteException
+  {
+    HashMap<Long, List<ContentValues>> reminders = new HashMap<Long, List<ContentValues>>();
+    Cursor                             cursor    = SyncMetrics.query(client, collection.getUriForReminders(),
+                                                                             EventFactory.getProjectionForReminder(),
+                                                                             ChunkedIdQuery.getSelectionForIds(CalendarContract.Reminders.EVENT_ID, windowIds),
+                                                                             null,
+                                                                             CalendarContract.Reminders.EVENT_ID + ", " + CalendarContract.Reminders._ID);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    while (cursor.moveToNext()) {
+      Optional<ContentValues> reminderValues = EventFactory.getValuesForReminder(cursor);
+      if (!reminderValues.isPresent())
+        continue;
+
+      Long                eventId        = reminderValues.get().getAsLong(CalendarContract.Reminders.EVENT_ID);
+      List<ContentValues> eventReminders = reminders.get(eventId);
+
+      if (eventReminders == null) {
+        eventReminders = new LinkedList<ContentValues>();
+        reminders.put(eventId, eventReminders);
+      }
+      eventReminders.add(reminderValues.get());
+    }
+
+    cursor.close();
+    return reminders;
+  }
+
+  private ComponentETagPair<Calendar> buildEvent(ContentValues       eventValues,
+                                                 List<ContentValues> attendees,
+                                                 List<ContentValues> reminders)
+      throws InvalidLocalComponentException
+  {
+    ComponentETagPair<Calendar> event = EventFactory.getEventComponent(collection.getPath(), eventValues);
+
+    if (attendees != null) {
+      for (ContentValues attendeeValues : attendees)
+        EventFactory.addAttendee(collection.getPath(), event.getComponent(), attendeeValues);
+    }
+
+    if (reminders != null) {
+      for (ContentValues reminderValues : reminders)
+        EventFactory.addReminder(event.getComponent(), reminderValues);
+    }
+
+    return event;
+  }
+
+  private void handleBuildWindow(LinkedHashMap<Long, ContentValues> window, EventReadListener listener)
+      throws RemoteException
+  {
+    HashMap<Long, List<ContentValues>> attendees = getAttendees(window.keySet());
+    HashMap<Long, List<ContentValues>> reminders = getReminders(window.keySet());
+
+    for (Long eventId : window.keySet()) {
+      ComponentETagPair<Calendar> event;
+
+      try {
+
+        long startNanos = System.nanoTime();
+        event = buildEvent(window.get(eventId), attendees.get(eventId), reminders.get(eventId));
+        SyncMetrics.handleComponentBuilt(System.nanoTime() - startNanos);
+
+      } catch (InvalidLocalComponentException e) {
+        if (e.getUid().isPresent())
+          listener.onEventReadFailed(eventId, new InvalidLocalComponentException(e.getMessage(),
+              CalDavConstants.CALDAV_NAMESPACE, collection.getPath(), e.getUid().get(), eventId, e));
+        else
+          listener.onEventReadFailed(eventId, new InvalidLocalComponentException(e.getMessage(),
+              CalDavConstants.CALDAV_NAMESPACE, collection.getPath(), eventId, e));
+        continue;
+      }
+
+      listener.onEventRead(eventId, event);
+    }
+  }
+
+  private void handleReadEvents(Cursor cursor, EventReadListener listener) throws RemoteException {
+    LinkedHashMap<Long, ContentValues> window = new LinkedHashMap<Long, ContentValues>();
+
+    try {
+
+      while (cursor.moveToNext()) {
+        ContentValues eventValues = EventFactory.getValuesForEvent(cursor);
+        window.put(eventValues.getAsLong(CalendarContract.Events._ID), eventValues);
+
+        if (window.size() >= ChunkedIdQuery.MAX_IDS_PER_QUERY) {
+          handleBuildWindow(window, listener);
+          window.clear();
+        }
+      }
+
+      if (!window.isEmpty())
+        handleBuildWindow(window, listener);
+
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /*
+  streams every event of the collection from a single cursor, listener is called for
+  each event in order of local id as soon as the window containing it has been built.
+   */
+  public void readEvents(EventReadListener listener) throws RemoteException {
+    Cursor cursor = SyncMetrics.query(client, collection.getUriForComponents(),
+                                              EventFactory.getProjectionForEvent(),
+                                              CalendarContract.Events.CALENDAR_ID + "=" + collection.getLocalId(),
+                                              null,
+                                              CalendarContract.Events._ID);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    handleReadEvents(cursor, listener);
+  }
+
+  private void handleLoadChunkStartingAt(Long eventId) throws RemoteException {
+    List<Long> chunkIds = eventIds.getChunkStartingAt(eventId);
+
+    loadedEvents.clear();
+    invalidEvents.clear();
+
+    Cursor cursor = SyncMetrics.query(client, collection.getUriForComponents(),
+                                              EventFactory.getProjectionForEvent(),
+                                              ChunkedIdQuery.getSelectionForIds(CalendarContract.Events._ID, chunkIds),
+                                              null,
+                                              null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    handleReadEvents(cursor, new EventReadListener() {
+      @Override
+      public void onEventRead(Long eventId, ComponentETagPair<Calendar> event) {
+        loadedEvents.put(eventId, event);
+      }
+
+      @Override
+      public void onEventReadFailed(Long eventId, InvalidLocalComponentException e) {
+        invalidEvents.put(eventId, e);
+      }
+    });
+  }
+
+  @Override
+  public Optional<ComponentETagPair<Calendar>> getComponent(Long eventId)
+      throws RemoteException, InvalidLocalComponentException
+  {
+    if (!loadedEvents.containsKey(eventId) && !invalidEvents.containsKey(eventId))
+      handleLoadChunkStartingAt(eventId);
+
+    InvalidLocalComponentException invalidException = invalidEvents.remove(eventId);
+    if (invalidException != null)
+      throw invalidException;
+
+    return Optional.fromNullable(loadedEvents.remove(eventId));
+  }
+
+}
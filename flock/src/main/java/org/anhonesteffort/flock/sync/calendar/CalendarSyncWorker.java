@@ -88,6 +88,11 @@ public class CalendarSyncWorker extends AbstractDavSyncWorker<Calendar> {
     }
   }
 
+  @Override
+  protected String getComponentText(Calendar component) {
+    return component.toString();
+  }
+
   @Override
   protected void prePushLocallyCreatedComponent(Calendar component) {
     VEvent vEvent = (VEvent) component.getComponent(VEvent.VEVENT);
@@ -99,6 +104,15 @@ public class CalendarSyncWorker extends AbstractDavSyncWorker<Calendar> {
     }
   }
 
+  /*
+  servers reject a recurrence exception whose master they have not seen yet.
+   */
+  @Override
+  protected boolean isPushDeferred(Calendar component) {
+    VEvent vEvent = (VEvent) component.getComponent(VEvent.VEVENT);
+    return vEvent != null && EventFactory.isRecurrenceException(vEvent);
+  }
+
   @Override
   protected void pushLocallyCreatedProperties(SyncResult result) {
     super.pushLocallyCreatedProperties(result);
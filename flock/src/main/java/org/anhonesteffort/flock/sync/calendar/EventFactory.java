@@ -98,9 +98,10 @@ public class EventFactory {
 
   private static final String TAG = "org.anhonesteffort.flock.sync.calendar.EventFactory";
 
-  protected static final String COLUMN_NAME_EVENT_UID       = CalendarContract.Events._SYNC_ID;
-  protected static final String COLUMN_NAME_EVENT_ETAG      = CalendarContract.Events.SYNC_DATA1;
-  protected static final String COLUMN_NAME_COPIED_EVENT_ID = CalendarContract.Events.SYNC_DATA2;
+  protected static final String COLUMN_NAME_EVENT_UID          = CalendarContract.Events._SYNC_ID;
+  protected static final String COLUMN_NAME_EVENT_ETAG         = CalendarContract.Events.SYNC_DATA1;
+  protected static final String COLUMN_NAME_COPIED_EVENT_ID    = CalendarContract.Events.SYNC_DATA2;
+  protected static final String COLUMN_NAME_EVENT_CONTENT_HASH = CalendarContract.Events.SYNC_DATA3;
 
   private   static final String PROPERTY_NAME_FLOCK_ALL_DAY                = "X-FLOCK-ALL-DAY";
   private   static final String PROPERTY_NAME_FLOCK_ORIGINAL_SYNC_ID       = "X-FLOCK-ORIGINAL-SYNC-ID";
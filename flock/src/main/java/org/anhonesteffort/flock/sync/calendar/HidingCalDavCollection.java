@@ -23,6 +23,7 @@ import android.util.Log;
 
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.sync.DecryptedMultiStatusResult;
+import org.anhonesteffort.flock.sync.HiddenComponentDecrypter;
 import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
 import org.anhonesteffort.flock.sync.InvalidRemoteComponentException;
 import org.anhonesteffort.flock.webdav.MultiStatusResult;
@@ -66,7 +67,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.security.GeneralSecurityException;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -227,52 +227,29 @@ public class HidingCalDavCollection extends CalDavCollection implements HidingDa
   public DecryptedMultiStatusResult<Calendar> getHiddenComponents(List<String> uids)
       throws DavException, GeneralSecurityException, IOException
   {
-    MultiStatusResult<Calendar>          exposedComponentPairs   = super.getComponents(uids);
-    DecryptedMultiStatusResult<Calendar> decryptedComponentPairs = new DecryptedMultiStatusResult<Calendar>(
-        new LinkedList<ComponentETagPair<Calendar>>(),
-        exposedComponentPairs.getInvalidComponentExceptions(),
-        new LinkedList<InvalidMacException>()
-    );
-
-    for (ComponentETagPair<Calendar> exposedComponentPair : exposedComponentPairs.getComponentETagPairs()) {
-      try {
-
-        decryptedComponentPairs.getComponentETagPairs().add(getHiddenComponent(exposedComponentPair));
-
-      } catch (InvalidRemoteComponentException e) {
-        decryptedComponentPairs.getInvalidComponentExceptions().add(e);
-      } catch (InvalidMacException e) {
-        decryptedComponentPairs.getInvalidMacExceptions().add(e);
-      }
-    }
-
-    return decryptedComponentPairs;
+    return getHiddenComponents(super.getComponents(uids));
   }
 
   @Override
   public DecryptedMultiStatusResult<Calendar> getHiddenComponents()
       throws DavException, GeneralSecurityException, IOException
   {
-    MultiStatusResult<Calendar>          exposedComponentPairs   = super.getComponents();
-    DecryptedMultiStatusResult<Calendar> decryptedComponentPairs = new DecryptedMultiStatusResult<Calendar>(
-        new LinkedList<ComponentETagPair<Calendar>>(),
-        exposedComponentPairs.getInvalidComponentExceptions(),
-        new LinkedList<InvalidMacException>()
-    );
-
-    for (ComponentETagPair<Calendar> exposedComponentPair : exposedComponentPairs.getComponentETagPairs()) {
-      try {
-
-        decryptedComponentPairs.getComponentETagPairs().add(getHiddenComponent(exposedComponentPair));
+    return getHiddenComponents(super.getComponents());
+  }
 
-      } catch (InvalidRemoteComponentException e) {
-        decryptedComponentPairs.getInvalidComponentExceptions().add(e);
-      } catch (InvalidMacException e) {
-        decryptedComponentPairs.getInvalidMacExceptions().add(e);
+  @Override
+  public DecryptedMultiStatusResult<Calendar> getHiddenComponents(MultiStatusResult<Calendar> exposedComponentPairs)
+      throws GeneralSecurityException, IOException
+  {
+    return HiddenComponentDecrypter.getHiddenComponents(exposedComponentPairs,
+                                                        new HiddenComponentDecrypter.ComponentDecrypter<Calendar>() {
+      @Override
+      public ComponentETagPair<Calendar> getHiddenComponent(ComponentETagPair<Calendar> exposedComponentPair)
+          throws InvalidRemoteComponentException, InvalidMacException, GeneralSecurityException, IOException
+      {
+        return HidingCalDavCollection.this.getHiddenComponent(exposedComponentPair);
       }
-    }
-
-    return decryptedComponentPairs;
+    });
   }
 
   // NOTICE: All events starting within a given month will appear to start on the first day
@@ -29,6 +29,7 @@ import android.os.RemoteException;
 import android.provider.CalendarContract;
 import android.util.Log;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.auth.DavAccount;
 import org.anhonesteffort.flock.sync.LocalComponentStore;
@@ -70,11 +71,11 @@ public class LocalCalendarStore implements LocalComponentStore<LocalEventCollect
                                     "AND " + CalendarContract.Calendars.NAME + "=?";
     final String[] SELECTION_ARGS = new String[]{remotePath};
 
-    Cursor cursor = client.query(LocalEventCollection.getCollectionsUri(account),
-                                 PROJECTION,
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
+    Cursor cursor = SyncMetrics.query(client, LocalEventCollection.getCollectionsUri(account),
+                                              PROJECTION,
+                                              SELECTION,
+                                              SELECTION_ARGS,
+                                              null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
@@ -191,9 +192,9 @@ public class LocalCalendarStore implements LocalComponentStore<LocalEventCollect
     if (account.type.equals(DavAccount.SYNC_ACCOUNT_TYPE))
       SELECTION += " AND " + LocalEventCollection.COLUMN_NAME_COLLECTION_COPIED + "=0";
 
-    Cursor cursor = client.query(LocalEventCollection.getCollectionsUri(account),
-                                 PROJECTION,
-                                 SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, LocalEventCollection.getCollectionsUri(account),
+                                              PROJECTION,
+                                              SELECTION, null, null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
@@ -219,9 +220,9 @@ public class LocalCalendarStore implements LocalComponentStore<LocalEventCollect
     if (account.type.equals(DavAccount.SYNC_ACCOUNT_TYPE))
       SELECTION += " AND " + LocalEventCollection.COLUMN_NAME_COLLECTION_COPIED + "=0";
 
-    Cursor cursor = client.query(LocalEventCollection.getCollectionsUri(account),
-                                 PROJECTION,
-                                 SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, LocalEventCollection.getCollectionsUri(account),
+                                              PROJECTION,
+                                              SELECTION, null, null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
@@ -249,9 +250,9 @@ public class LocalCalendarStore implements LocalComponentStore<LocalEventCollect
     if (!account.type.equals(DavAccount.SYNC_ACCOUNT_TYPE))
       throw new RemoteException("Unable to determine which collections are copied!");
 
-    Cursor cursor = client.query(LocalEventCollection.getCollectionsUri(account),
-                                 PROJECTION,
-                                 SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, LocalEventCollection.getCollectionsUri(account),
+                                              PROJECTION,
+                                              SELECTION, null, null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
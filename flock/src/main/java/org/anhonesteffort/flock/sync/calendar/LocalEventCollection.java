@@ -28,9 +28,12 @@ import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 import android.provider.CalendarContract;
 import android.util.Log;
+import android.util.Pair;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.sync.InvalidRemoteComponentException;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
@@ -50,11 +53,15 @@ import net.fortuna.ical4j.model.property.Version;
 import net.fortuna.ical4j.util.Calendars;
 import org.anhonesteffort.flock.sync.AbstractLocalComponentCollection;
 import org.anhonesteffort.flock.sync.InvalidLocalComponentException;
+import org.anhonesteffort.flock.sync.LocalComponentLoader;
+import org.anhonesteffort.flock.sync.LocalRowDiff;
 import org.anhonesteffort.flock.webdav.ComponentETagPair;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
@@ -66,9 +73,25 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
 
   private static final String TAG = "org.anhonesteffort.flock.sync.calendar.LocalEventCollection";
 
-  private   static final String COLUMN_NAME_COLLECTION_C_TAG  = CalendarContract.Calendars.CAL_SYNC2;
-  private   static final String COLUMN_NAME_COLLECTION_ORDER  = CalendarContract.Calendars.CAL_SYNC3;
-  protected static final String COLUMN_NAME_COLLECTION_COPIED = CalendarContract.Calendars.CAL_SYNC4;
+  private static final String[] NULLABLE_EVENT_COLUMNS = new String[] {
+      CalendarContract.Events.TITLE,
+      CalendarContract.Events.EVENT_LOCATION,
+      CalendarContract.Events.DESCRIPTION,
+      CalendarContract.Events.ORGANIZER,
+      CalendarContract.Events.RRULE,
+      CalendarContract.Events.RDATE,
+      CalendarContract.Events.EXRULE,
+      CalendarContract.Events.EXDATE,
+      CalendarContract.Events.DTEND,
+      CalendarContract.Events.DURATION,
+      CalendarContract.Events.EVENT_TIMEZONE,
+      CalendarContract.Events.EVENT_END_TIMEZONE
+  };
+
+  private   static final String COLUMN_NAME_COLLECTION_C_TAG      = CalendarContract.Calendars.CAL_SYNC2;
+  private   static final String COLUMN_NAME_COLLECTION_ORDER      = CalendarContract.Calendars.CAL_SYNC3;
+  protected static final String COLUMN_NAME_COLLECTION_COPIED     = CalendarContract.Calendars.CAL_SYNC4;
+  private   static final String COLUMN_NAME_COLLECTION_SYNC_TOKEN = CalendarContract.Calendars.CAL_SYNC5;
 
   public LocalEventCollection(ContentProviderClient client,
                               Account               account,
@@ -117,11 +140,11 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
         .build();
   }
 
-  private Uri getUriForAttendees() {
+  Uri getUriForAttendees() {
     return getSyncAdapterUri(CalendarContract.Attendees.CONTENT_URI);
   }
 
-  private Uri getUriForReminders() {
+  Uri getUriForReminders() {
     return getSyncAdapterUri(CalendarContract.Reminders.CONTENT_URI);
   }
 
@@ -145,6 +168,11 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     return EventFactory.COLUMN_NAME_EVENT_ETAG;
   }
 
+  @Override
+  protected String getColumnNameComponentContentHash() {
+    return EventFactory.COLUMN_NAME_EVENT_CONTENT_HASH;
+  }
+
   @Override
   protected String getColumnNameDirty() {
     return CalendarContract.Events.DIRTY;
@@ -167,7 +195,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
                                       EventFactory.COLUMN_NAME_COPIED_EVENT_ID + " > 0) AND "   +
                                       getColumnNameCollectionLocalId()         + "=" + localId;
 
-    Cursor     cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor     cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     List<Long> newIds = new LinkedList<Long>();
 
     if (cursor == null)
@@ -191,7 +219,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
                                       EventFactory.COLUMN_NAME_COPIED_EVENT_ID + "> 0) AND "    +
                                 getColumnNameCollectionLocalId()  + "=" + localId;
 
-    Cursor  cursor     = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor  cursor     = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     boolean hasChanges = cursor.moveToNext();
 
     cursor.close();
@@ -213,7 +241,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public Optional<String> getDisplayName() throws RemoteException {
     final String[] PROJECTION = new String[]{CalendarContract.Calendars.CALENDAR_DISPLAY_NAME};
 
-    Cursor cursor      = client.query(getCollectionUri(), PROJECTION, null, null, null);
+    Cursor cursor      = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
     String displayName = null;
 
     if (cursor == null)
@@ -244,7 +272,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public Optional<Integer> getColor() throws RemoteException {
     final String[] PROJECTION = new String[]{CalendarContract.Calendars.CALENDAR_COLOR};
 
-    Cursor  cursor = client.query(getCollectionUri(), PROJECTION, null, null, null);
+    Cursor  cursor = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
     Integer color  = null;
 
     if (cursor == null)
@@ -270,7 +298,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public Optional<String> getCTag() throws RemoteException {
     final String[] PROJECTION = new String[]{COLUMN_NAME_COLLECTION_C_TAG};
 
-    Cursor cursor = client.query(getCollectionUri(), PROJECTION, null, null, null);
+    Cursor cursor = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
     String cTag   = null;
 
     if (cursor == null)
@@ -292,10 +320,36 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
         cTag.getBytes().length);
   }
 
+  @Override
+  public Optional<String> getSyncToken() throws RemoteException {
+    final String[] PROJECTION = new String[]{COLUMN_NAME_COLLECTION_SYNC_TOKEN};
+
+    Cursor cursor    = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
+    String syncToken = null;
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    if (cursor.moveToNext())
+      syncToken = cursor.getString(0);
+    cursor.close();
+
+    return Optional.fromNullable(syncToken);
+  }
+
+  @Override
+  public void setSyncToken(String syncToken) throws RemoteException {
+    operationQueue.queue(
+        ContentProviderOperation.newUpdate(getCollectionUri())
+            .withValue(COLUMN_NAME_COLLECTION_SYNC_TOKEN, syncToken)
+            .build(),
+        syncToken.getBytes().length);
+  }
+
   public Optional<Calendar> getTimeZone() throws RemoteException {
     final String[] PROJECTION = new String[]{CalendarContract.Calendars.CALENDAR_TIME_ZONE};
 
-    Cursor cursor     = client.query(getCollectionUri(), PROJECTION, null, null, null);
+    Cursor cursor     = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
     String timeZoneId = null;
 
     if (cursor == null)
@@ -335,7 +389,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public Optional<Integer> getOrder() throws RemoteException {
     final String[] PROJECTION = new String[]{COLUMN_NAME_COLLECTION_ORDER};
 
-    Cursor  cursor = client.query(getCollectionUri(), PROJECTION, null, null, null);
+    Cursor  cursor = SyncMetrics.query(client, getCollectionUri(), PROJECTION, null, null, null);
     Integer order  = null;
 
     if (cursor == null)
@@ -354,75 +408,21 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
         .build());
   }
 
-  private void addAttendees(Long eventId, Calendar component)
-      throws InvalidLocalComponentException, RemoteException
-  {
-    String   SELECTION      = CalendarContract.Attendees.EVENT_ID + "=?";
-    String[] SELECTION_ARGS = new String[]{eventId.toString()};
-
-    Cursor cursor = client.query(getUriForAttendees(),
-                                 EventFactory.getProjectionForAttendee(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      ContentValues attendeeValues = EventFactory.getValuesForAttendee(cursor);
-      EventFactory.addAttendee(getPath(), component, attendeeValues);
-    }
-    cursor.close();
-  }
-
-  private void addReminders(Long eventId, Calendar component)
-      throws InvalidLocalComponentException, RemoteException
-  {
-    String   SELECTION      = CalendarContract.Reminders.EVENT_ID + "=?";
-    String[] SELECTION_ARGS = new String[]{eventId.toString()};
-
-    Cursor cursor = client.query(getUriForReminders(),
-                                 EventFactory.getProjectionForReminder(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
-
-    while (cursor.moveToNext()) {
-      Optional<ContentValues> reminderValues = EventFactory.getValuesForReminder(cursor);
-      if (reminderValues.isPresent())
-        EventFactory.addReminder(component, reminderValues.get());
-    }
-    cursor.close();
-  }
-
-  private void buildEvent(Long eventId, Calendar component)
-      throws InvalidLocalComponentException, RemoteException
-  {
-    addAttendees(eventId, component);
-    addReminders(eventId, component);
+  @Override
+  public LocalComponentLoader<Calendar> getComponentLoader(List<Long> eventIds) {
+    return new BulkEventLoader(this, client, eventIds);
   }
 
   @Override
   public Optional<Calendar> getComponent(Long eventId)
       throws RemoteException, InvalidLocalComponentException
   {
-    Cursor cursor = client.query(ContentUris.withAppendedId(getUriForComponents(), eventId),
-                                 EventFactory.getProjectionForEvent(),
-                                 null,
-                                 null,
-                                 null);
+    Optional<ComponentETagPair<Calendar>> component =
+        getComponentLoader(Arrays.asList(eventId)).getComponent(eventId);
 
-    if (cursor == null)
-      throw new RemoteException("Content provider client gave us a null cursor!");
-
-    if (cursor.moveToNext()) {
-      ContentValues               eventValues = EventFactory.getValuesForEvent(cursor);
-      ComponentETagPair<Calendar> component   = EventFactory.getEventComponent(getPath(), eventValues);
-
-        buildEvent(eventId, component.getComponent());
-        cursor.close();
-        return Optional.of(component.getComponent());
-    }
+    if (component.isPresent())
+      return Optional.of(component.get().getComponent());
 
-    cursor.close();
     return Optional.absent();
   }
 
@@ -430,68 +430,57 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public Optional<ComponentETagPair<Calendar>> getComponent(String uid)
       throws RemoteException, InvalidLocalComponentException
   {
-    String   SELECTION      = getColumnNameComponentUid() + "=?";
-    String[] SELECTION_ARGS = new String[]{uid};
+    final String[] PROJECTION     = new String[]{getColumnNameComponentLocalId()};
+    final String   SELECTION      = getColumnNameComponentUid() + "=?";
+    final String[] SELECTION_ARGS = new String[]{uid};
 
-    Cursor cursor = client.query(getUriForComponents(),
-                                 EventFactory.getProjectionForEvent(),
-                                 SELECTION,
-                                 SELECTION_ARGS,
-                                 null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(),
+                                              PROJECTION,
+                                              SELECTION,
+                                              SELECTION_ARGS,
+                                              null);
 
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
     if (cursor.moveToNext()) {
-      ContentValues               eventValues = EventFactory.getValuesForEvent(cursor);
-      ComponentETagPair<Calendar> component   = EventFactory.getEventComponent(getPath(), eventValues);
-
-      buildEvent(eventValues.getAsLong(CalendarContract.Events._ID), component.getComponent());
+      Long eventId = cursor.getLong(0);
       cursor.close();
-      return Optional.of(component);
+
+      return getComponentLoader(Arrays.asList(eventId)).getComponent(eventId);
     }
 
     cursor.close();
     return Optional.absent();
   }
 
+  public void readComponents(BulkEventLoader.EventReadListener listener) throws RemoteException {
+    new BulkEventLoader(this, client).readEvents(listener);
+  }
+
   @Override
   public List<ComponentETagPair<Calendar>> getComponents()
       throws RemoteException, InvalidLocalComponentException
   {
-    String   SELECTION      = getColumnNameCollectionLocalId() + "=?";
-    String[] SELECTION_ARGS = new String[]{localId.toString()};
-
-    List<ComponentETagPair<Calendar>> components = new LinkedList<ComponentETagPair<Calendar>>();
-    Cursor                            cursor     = client.query(getUriForComponents(),
-                                                                EventFactory.getProjectionForEvent(),
-                                                                SELECTION,
-                                                                SELECTION_ARGS, null);
-
-    if (cursor == null)
-      throw new RemoteException("Content provider client gave us a null cursor!");
-
-    while (cursor.moveToNext()) {
-      ContentValues eventValues = EventFactory.getValuesForEvent(cursor);
-      Long          eventId     = eventValues.getAsLong(getColumnNameComponentLocalId());
-
-      try {
-
-        ComponentETagPair<Calendar> component = EventFactory.getEventComponent(getPath(), eventValues);
-        buildEvent(eventValues.getAsLong(CalendarContract.Events._ID), component.getComponent());
-        components.add(component);
-
-      } catch (InvalidLocalComponentException e) {
-        if (e.getUid().isPresent())
-          throw new InvalidLocalComponentException(e.getMessage(), CalDavConstants.CALDAV_NAMESPACE,
-                                                   getPath(), e.getUid().get(), eventId, e);
+    final List<ComponentETagPair<Calendar>>    components = new LinkedList<ComponentETagPair<Calendar>>();
+    final List<InvalidLocalComponentException> exceptions = new LinkedList<InvalidLocalComponentException>();
+
+    readComponents(new BulkEventLoader.EventReadListener() {
+      @Override
+      public void onEventRead(Long eventId, ComponentETagPair<Calendar> event) {
+        if (exceptions.isEmpty())
+          components.add(event);
+      }
 
-        throw new InvalidLocalComponentException(e.getMessage(), CalDavConstants.CALDAV_NAMESPACE,
-                                                 getPath(), eventId, e);
+      @Override
+      public void onEventReadFailed(Long eventId, InvalidLocalComponentException e) {
+        exceptions.add(e);
       }
-    }
+    });
+
+    if (!exceptions.isEmpty())
+      throw exceptions.get(0);
 
-    cursor.close();
     return components;
   }
 
@@ -535,7 +524,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
   public void removeComponent(String remoteUId) throws RemoteException {
     final String         SELECTION      = getColumnNameComponentUid() + "=?";
     final String[]       SELECTION_ARGS = new String[]{remoteUId};
-    final Optional<Long> LOCAL_ID       = getLocalIdForUid(remoteUId);
+    final Optional<Long> LOCAL_ID       = getIndexedLocalIdForUid(remoteUId);
 
     operationQueue.queue(ContentProviderOperation
         .newDelete(getUriForComponents())
@@ -556,13 +545,151 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     }
   }
 
+  private Optional<ContentValues> getExistingEventValues(Long eventId, String[] columns)
+      throws RemoteException
+  {
+    Cursor cursor = SyncMetrics.query(client, ContentUris.withAppendedId(getUriForComponents(), eventId),
+                                              columns,
+                                              null,
+                                              null,
+                                              null);
+
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    Optional<ContentValues> values = Optional.absent();
+    if (cursor.moveToNext())
+      values = Optional.of(LocalRowDiff.getValuesForColumns(cursor, columns));
+
+    cursor.close();
+    return values;
+  }
+
+  private List<Pair<Long, ContentValues>> getExistingRows(Uri uri, String eventIdColumn, Long eventId, String[] columns)
+      throws RemoteException
+  {
+    String[] projection = Arrays.copyOf(columns, columns.length + 1);
+    projection[columns.length] = BaseColumns._ID;
+
+    Cursor cursor = SyncMetrics.query(client, uri, projection, eventIdColumn + "=" + eventId, null, BaseColumns._ID);
+    if (cursor == null)
+      throw new RemoteException("Content provider client gave us a null cursor!");
+
+    List<Pair<Long, ContentValues>> rows = new LinkedList<Pair<Long, ContentValues>>();
+    while (cursor.moveToNext())
+      rows.add(new Pair<Long, ContentValues>(cursor.getLong(columns.length), LocalRowDiff.getValuesForColumns(cursor, columns)));
+
+    cursor.close();
+    return rows;
+  }
+
+  private void handleQueueRowDiff(Uri uri, String eventIdColumn, Long eventId, LocalRowDiff diff) {
+    for (ContentValues insertedRow : diff.getInsertedRows()) {
+      operationQueue.queue(
+          ContentProviderOperation.newInsert(uri)
+              .withValues(insertedRow)
+              .withValue(eventIdColumn, eventId)
+              .build(),
+          256);
+    }
+
+    for (Pair<Long, ContentValues> updatedRow : diff.getUpdatedRows()) {
+      operationQueue.queue(
+          ContentProviderOperation.newUpdate(ContentUris.withAppendedId(uri, updatedRow.first))
+              .withValues(updatedRow.second)
+              .build(),
+          256);
+    }
+
+    for (Long deletedRowId : diff.getDeletedRowIds()) {
+      operationQueue.queue(ContentProviderOperation
+          .newDelete(ContentUris.withAppendedId(uri, deletedRowId))
+          .build());
+    }
+  }
+
+  /*
+  values built from a component leave out whatever the component does not have, when
+  updating in place those columns must be cleared or the existing row keeps its old values.
+   */
+  public static void handleClearUnsetEventColumns(ContentValues wantedValues) {
+    for (String column : NULLABLE_EVENT_COLUMNS) {
+      if (!wantedValues.containsKey(column))
+        wantedValues.putNull(column);
+    }
+    if (!wantedValues.containsKey(CalendarContract.Events.ALL_DAY))
+      wantedValues.put(CalendarContract.Events.ALL_DAY, 0);
+  }
+
+  /*
+  recurrence exceptions are tied to their parent by local id so they are still replaced
+  outright, everything else is updated in place to keep the event id and its instances.
+   */
+  private Optional<Integer> handleUpdateComponentInPlace(Long eventId, ComponentETagPair<Calendar> component)
+      throws RemoteException, InvalidRemoteComponentException
+  {
+    ContentValues wantedValues = EventFactory.getValuesForEvent(this, localId, component);
+    if (wantedValues.containsKey(CalendarContract.Events.ORIGINAL_ID) ||
+        wantedValues.containsKey(CalendarContract.Events.ORIGINAL_SYNC_ID))
+      return Optional.absent();
+
+    handleClearUnsetEventColumns(wantedValues);
+
+    String[] eventColumns = wantedValues.keySet().toArray(new String[wantedValues.size() + 1]);
+    eventColumns[wantedValues.size()] = CalendarContract.Events.ORIGINAL_ID;
+
+    Optional<ContentValues> existingValues = getExistingEventValues(eventId, eventColumns);
+    if (!existingValues.isPresent() || existingValues.get().get(CalendarContract.Events.ORIGINAL_ID) != null)
+      return Optional.absent();
+
+    int           eventOpIndex  = operationQueue.size();
+    ContentValues changedValues = LocalRowDiff.getChangedValues(
+        existingValues.get(),
+        wantedValues,
+        wantedValues.keySet().toArray(new String[wantedValues.size()])
+    );
+
+    if (changedValues.size() > 0) {
+      operationQueue.queue(
+          ContentProviderOperation.newUpdate(ContentUris.withAppendedId(getUriForComponents(), eventId))
+              .withValues(changedValues)
+              .build(),
+          512);
+    }
+
+    String[] attendeeColumns = Arrays.copyOfRange(EventFactory.getProjectionForAttendee(), 1,
+                                                  EventFactory.getProjectionForAttendee().length);
+    handleQueueRowDiff(getUriForAttendees(), CalendarContract.Attendees.EVENT_ID, eventId, new LocalRowDiff(
+        getExistingRows(getUriForAttendees(), CalendarContract.Attendees.EVENT_ID, eventId, attendeeColumns),
+        EventFactory.getValuesForAttendees(component.getComponent()),
+        attendeeColumns
+    ));
+
+    String[] reminderColumns = Arrays.copyOfRange(EventFactory.getProjectionForReminder(), 1,
+                                                  EventFactory.getProjectionForReminder().length);
+    handleQueueRowDiff(getUriForReminders(), CalendarContract.Reminders.EVENT_ID, eventId, new LocalRowDiff(
+        getExistingRows(getUriForReminders(), CalendarContract.Reminders.EVENT_ID, eventId, reminderColumns),
+        EventFactory.getValuesForReminders(component.getComponent()),
+        reminderColumns
+    ));
+
+    return Optional.of(operationQueue.size() - eventOpIndex);
+  }
+
   @Override
   public int updateComponent(ComponentETagPair<Calendar> component)
       throws RemoteException, InvalidRemoteComponentException
   {
     try {
 
-      String componentUid = Calendars.getUid(component.getComponent()).getValue();
+      String         componentUid = Calendars.getUid(component.getComponent()).getValue();
+      Optional<Long> eventId      = getIndexedLocalIdForUid(componentUid);
+
+      if (eventId.isPresent()) {
+        Optional<Integer> operationCount = handleUpdateComponentInPlace(eventId.get(), component);
+        if (operationCount.isPresent())
+          return operationCount.get();
+      }
 
       removeComponent(componentUid);
       return addComponent(component);
@@ -587,21 +714,21 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     Log.d(TAG, "corrected " + updateCount + " event reminders.");
   }
 
-  private boolean hasRecurrenceExceptions(Long eventId) throws RemoteException {
-    final String[] PROJECTION = new String[]{getColumnNameComponentLocalId(), CalendarContract.Events.ORIGINAL_ID};
-    final String   SELECTION  = CalendarContract.Events.ORIGINAL_ID + "=" + eventId;
+  private HashSet<Long> getIdsWithRecurrenceExceptions() throws RemoteException {
+    final String[] PROJECTION = new String[]{CalendarContract.Events.ORIGINAL_ID};
+    final String   SELECTION  = CalendarContract.Events.ORIGINAL_ID    + " IS NOT NULL AND " +
+                                getColumnNameCollectionLocalId() + "=" + localId;
 
-    Cursor cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
-    if (cursor.moveToNext()) {
-      cursor.close();
-      return true;
-    }
+    HashSet<Long> originalIds = new HashSet<Long>();
+    while (cursor.moveToNext())
+      originalIds.add(cursor.getLong(0));
 
     cursor.close();
-    return false;
+    return originalIds;
   }
 
   private Optional<Long> getOriginalIdForRecurrenceException(Long recurrenceExceptionId)
@@ -610,7 +737,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     final String[] PROJECTION = new String[]{CalendarContract.Events.ORIGINAL_ID};
     final String   SELECTION  = getColumnNameComponentLocalId() + "=" + recurrenceExceptionId;
 
-    Cursor cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
@@ -626,7 +753,7 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     final String[] PROJECTION = new String[]{getColumnNameComponentUid()};
     final String   SELECTION  = EventFactory.COLUMN_NAME_COPIED_EVENT_ID + "=" + copiedEventId;
 
-    Cursor cursor = client.query(getUriForComponents(), PROJECTION, SELECTION, null, null);
+    Cursor cursor = SyncMetrics.query(client, getUriForComponents(), PROJECTION, SELECTION, null, null);
     if (cursor == null)
       throw new RemoteException("Content provider client gave us a null cursor!");
 
@@ -709,36 +836,33 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
     return true;
   }
 
-  private void handleCopyRecurrenceExceptions(Account                toAccount,
-                                              LocalEventCollection   toCollection,
-                                              CalendarCopiedListener listener)
+  private void handleCopyRecurrenceExceptions(final Account                toAccount,
+                                              final LocalEventCollection   toCollection,
+                                              final CalendarCopiedListener listener)
       throws RemoteException
   {
-    List<Long>    componentIds         = getComponentIds();
-    List<Integer> eventOperationCounts = new LinkedList<Integer>();
-
-    for (Long eventId : componentIds) {
-      try {
+    final List<Integer> eventOperationCounts = new LinkedList<Integer>();
 
-        Optional<Calendar> copyComponent = getComponent(eventId);
-        if (!copyComponent.isPresent())
-          throw new InvalidLocalComponentException("absent returned on copy of " + eventId + " from " + localId,
-                                                   CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+    readComponents(new BulkEventLoader.EventReadListener() {
+      @Override
+      public void onEventRead(Long eventId, ComponentETagPair<Calendar> event) throws RemoteException {
+        try {
 
-        VEvent vEvent = (VEvent) copyComponent.get().getComponent(VEvent.VEVENT);
-        if (vEvent != null) {
+          VEvent vEvent = (VEvent) event.getComponent().getComponent(VEvent.VEVENT);
+          if (vEvent != null) {
+            if (!EventFactory.isRecurrenceException(vEvent))
+              return;
 
-          Uid uid = vEvent.getUid();
-          if (uid != null)
-            uid.setValue(null);
+            Log.d(TAG, "found recurrence exception (" + eventId + ") during copy, will copy over now");
 
-          handleCorrectOrganizersAndAttendees(vEvent, toAccount);
+            Uid uid = vEvent.getUid();
+            if (uid != null)
+              uid.setValue(null);
 
-          ComponentETagPair<Calendar> correctedComponent =
-              new ComponentETagPair<Calendar>(copyComponent.get(), Optional.<String>absent());
+            handleCorrectOrganizersAndAttendees(vEvent, toAccount);
 
-          if (EventFactory.isRecurrenceException(vEvent)) {
-            Log.d(TAG, "found recurrence exception (" + eventId + ") during copy, will copy over now");
+            ComponentETagPair<Calendar> correctedComponent =
+                new ComponentETagPair<Calendar>(event.getComponent(), Optional.<String>absent());
 
             Optional<Long> originalId = getOriginalIdForRecurrenceException(eventId);
             if (!originalId.isPresent()) {
@@ -758,34 +882,36 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
             if (handleCommitPendingIfFull(toCollection, eventOperationCounts, listener, false))
               eventOperationCounts.clear();
           }
+          else
+            throw new InvalidLocalComponentException("could not parse VEvent from calendar component.",
+                                                     CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+
+        } catch (InvalidComponentException e) {
+          listener.onEventCopyFailed(e, getAccount(), toAccount, localId);
         }
-        else
-          throw new InvalidLocalComponentException("could not parse VEvent from calendar component.",
-                                                   CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+      }
 
-      } catch (InvalidComponentException e) {
+      @Override
+      public void onEventReadFailed(Long eventId, InvalidLocalComponentException e) {
         listener.onEventCopyFailed(e, getAccount(), toAccount, localId);
       }
-    }
+    });
 
     if (toCollection.operationQueue.size() > 0)
       handleCommitPendingIfFull(toCollection, eventOperationCounts, listener, true);
   }
 
-  public void copyToAccount(Account                toAccount,
-                            String                 newCalendarName,
-                            int                    newCalendarColor,
-                            CalendarCopiedListener listener)
+  public void copyToAccount(final Account                toAccount,
+                                  String                 newCalendarName,
+                                  int                    newCalendarColor,
+                            final CalendarCopiedListener listener)
       throws RemoteException
   {
     LocalCalendarStore             toStore        = new LocalCalendarStore(client, toAccount);
     String                         tempRemotePath = UUID.randomUUID().toString();
     Optional<LocalEventCollection> toCollection   = Optional.absent();
 
-    List<Long>    componentIds         = getComponentIds();
-    List<Integer> eventOperationCounts = new LinkedList<Integer>();
-
-    Log.d(TAG, "copy my " + componentIds.size() + " events to account " + toAccount.name);
+    Log.d(TAG, "copy my events to account " + toAccount.name);
 
     try {
 
@@ -812,54 +938,61 @@ public class LocalEventCollection extends AbstractLocalComponentCollection<Calen
       return;
     }
 
-    for (Long eventId : componentIds) {
-      try {
+    final LocalEventCollection toCalendar           = toCollection.get();
+    final HashSet<Long>        idsWithExceptions    = getIdsWithRecurrenceExceptions();
+    final List<Integer>        eventOperationCounts = new LinkedList<Integer>();
 
-        Optional<Calendar> copyComponent = getComponent(eventId);
-        if (!copyComponent.isPresent())
-          throw new InvalidLocalComponentException("absent returned on copy of " + eventId + " from " + localId,
-                                                   CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+    readComponents(new BulkEventLoader.EventReadListener() {
+      @Override
+      public void onEventRead(Long eventId, ComponentETagPair<Calendar> event) throws RemoteException {
+        try {
 
-        VEvent vEvent = (VEvent) copyComponent.get().getComponent(VEvent.VEVENT);
-        if (vEvent != null) {
+          VEvent vEvent = (VEvent) event.getComponent().getComponent(VEvent.VEVENT);
+          if (vEvent != null) {
 
-          Uid uid = vEvent.getUid();
-          if (uid != null)
-            uid.setValue(null);
+            Uid uid = vEvent.getUid();
+            if (uid != null)
+              uid.setValue(null);
 
-          handleCorrectOrganizersAndAttendees(vEvent, toAccount);
+            handleCorrectOrganizersAndAttendees(vEvent, toAccount);
 
-          ComponentETagPair<Calendar> correctedComponent =
-              new ComponentETagPair<Calendar>(copyComponent.get(), Optional.<String>absent());
+            ComponentETagPair<Calendar> correctedComponent =
+                new ComponentETagPair<Calendar>(event.getComponent(), Optional.<String>absent());
 
-          if (EventFactory.isRecurrenceException(vEvent))
-            Log.d(TAG, "found recurrence exception (" + eventId + ") during copy, will copy over next");
-          else if (hasRecurrenceExceptions(eventId)) {
-            EventFactory.handleAttachPropertiesForCopiedRecurrenceWithExceptions(vEvent, eventId);
-            eventOperationCounts.add(toCollection.get().addComponent(correctedComponent));
+            if (EventFactory.isRecurrenceException(vEvent))
+              Log.d(TAG, "found recurrence exception (" + eventId + ") during copy, will copy over next");
+            else if (idsWithExceptions.contains(eventId)) {
+              EventFactory.handleAttachPropertiesForCopiedRecurrenceWithExceptions(vEvent, eventId);
+              eventOperationCounts.add(toCalendar.addComponent(correctedComponent));
 
-            if (handleCommitPendingIfFull(toCollection.get(), eventOperationCounts, listener, false))
-              eventOperationCounts.clear();
-          }
-          else {
-            eventOperationCounts.add(toCollection.get().addComponent(correctedComponent));
+              if (handleCommitPendingIfFull(toCalendar, eventOperationCounts, listener, false))
+                eventOperationCounts.clear();
+            }
+            else {
+              eventOperationCounts.add(toCalendar.addComponent(correctedComponent));
 
-            if (handleCommitPendingIfFull(toCollection.get(), eventOperationCounts, listener, false))
-              eventOperationCounts.clear();
+              if (handleCommitPendingIfFull(toCalendar, eventOperationCounts, listener, false))
+                eventOperationCounts.clear();
+            }
           }
+          else
+            throw new InvalidLocalComponentException("could not parse VEvent from calendar component.",
+                                                     CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+
+        } catch (InvalidComponentException e) {
+          listener.onEventCopyFailed(e, getAccount(), toAccount, localId);
         }
-        else
-          throw new InvalidLocalComponentException("could not parse VEvent from calendar component.",
-                                                   CalDavConstants.CALDAV_NAMESPACE, getPath(), eventId);
+      }
 
-      } catch (InvalidComponentException e) {
+      @Override
+      public void onEventReadFailed(Long eventId, InvalidLocalComponentException e) {
         listener.onEventCopyFailed(e, getAccount(), toAccount, localId);
       }
-    }
+    });
 
-    if (toCollection.get().operationQueue.size() > 0)
-      handleCommitPendingIfFull(toCollection.get(), eventOperationCounts, listener, true);
+    if (toCalendar.operationQueue.size() > 0)
+      handleCommitPendingIfFull(toCalendar, eventOperationCounts, listener, true);
 
-    handleCopyRecurrenceExceptions(toAccount, toCollection.get(), listener);
+    handleCopyRecurrenceExceptions(toAccount, toCalendar, listener);
   }
 }
@@ -8,13 +8,11 @@ import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.sync.OwsWebDav;
 import org.anhonesteffort.flock.webdav.AbstractDavComponentCollection;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
-import org.anhonesteffort.flock.webdav.MultiStatusResult;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
 import org.anhonesteffort.flock.webdav.caldav.CalDavCollection;
 import org.anhonesteffort.flock.webdav.caldav.CalDavConstants;
 import org.anhonesteffort.flock.webdav.caldav.CalDavStore;
 import org.apache.jackrabbit.webdav.DavException;
-import org.apache.jackrabbit.webdav.MultiStatusResponse;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
 import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
 import org.apache.jackrabbit.webdav.property.DavPropertySet;
@@ -119,8 +117,14 @@ public class DavKeyCollection extends AbstractDavComponentCollection<Calendar> {
   }
 
   @Override
-  protected MultiStatusResult<Calendar> getComponentsFromMultiStatus(MultiStatusResponse[] msResponses) {
-    return null;
+  protected DavPropertyName getPropertyNameForComponentData() {
+    return CalDavConstants.PROPERTY_NAME_CALENDAR_DATA;
+  }
+
+  @Override
+  protected Calendar getComponentFromData(String componentData) throws InvalidComponentException {
+    throw new InvalidComponentException("key collection does not hold components",
+                                        OwsWebDav.NAMESPACE, getPath());
   }
 
   @Override
@@ -159,6 +159,16 @@ public class KeySyncWorker implements SyncWorker {
     }
   }
 
+  @Override
+  public long getSyncPriority() {
+    return 0;
+  }
+
+  @Override
+  public void cancel() {
+
+  }
+
   @Override
   public void cleanup() {
 
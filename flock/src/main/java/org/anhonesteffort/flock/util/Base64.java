@@ -1203,11 +1203,61 @@ public class Base64
             "Base64-encoded string must have at least four characters, but length specified was " + len );
         }   // end if
 
-        byte[] DECODABET = getDecodabet( options );
-
         int    len34   = len * 3 / 4;       // Estimate on array size
         byte[] outBuff = new byte[ len34 ]; // Upper limit on size of output
-        int    outBuffPosn = 0;             // Keep track of where we're writing
+        int    outBuffPosn = decode( source, off, len, outBuff, 0, options );
+
+        byte[] out = new byte[ outBuffPosn ];
+        System.arraycopy( outBuff, 0, out, 0, outBuffPosn );
+        return out;
+    }   // end decode
+
+
+    /**
+     * Low-level access to decoding ASCII characters directly into a
+     * caller supplied buffer, avoiding the intermediate arrays allocated
+     * by {@link #decode(byte[], int, int, int)}. <strong>Ignores GUNZIP
+     * option, if it's set.</strong> The destination must have room for
+     * at least <var>len</var> * 3 / 4 bytes after <var>destOffset</var>.
+     *
+     * @param source      The Base64 encoded data
+     * @param off         The offset of where to begin decoding
+     * @param len         The length of characters to decode
+     * @param destination The array to hold the decoded data
+     * @param destOffset  The index where output will be put
+     * @param options     Can specify options such as alphabet type to use
+     * @return the number of decoded bytes written to destination
+     * @throws java.io.IOException If bogus characters exist in source data
+     */
+    public static int decode( byte[] source, int off, int len, byte[] destination, int destOffset, int options )
+    throws IOException {
+
+        if( source == null ){
+            throw new NullPointerException( "Cannot decode null source array." );
+        }   // end if
+        if( destination == null ){
+            throw new NullPointerException( "Destination array was null." );
+        }   // end if
+        if( off < 0 || off + len > source.length ){
+            throw new IllegalArgumentException( String.format(
+            "Source array with length %d cannot have offset of %d and process %d bytes.", source.length, off, len ) );
+        }   // end if
+        if( destOffset < 0 || destOffset + ( len * 3 / 4 ) > destination.length ){
+            throw new IllegalArgumentException( String.format(
+            "Destination array with length %d cannot have offset of %d and hold %d bytes.", destination.length, destOffset, len * 3 / 4 ) );
+        }   // end if
+
+        if( len == 0 ){
+            return 0;
+        }else if( len < 4 ){
+            throw new IllegalArgumentException(
+            "Base64-encoded string must have at least four characters, but length specified was " + len );
+        }   // end if
+
+        byte[] DECODABET = getDecodabet( options );
+
+        byte[] outBuff     = destination;   // Caller supplied output buffer
+        int    outBuffPosn = destOffset;    // Keep track of where we're writing
 
         byte[] b4        = new byte[4];     // Four byte buffer from source, eliminating white space
         int    b4Posn    = 0;               // Keep track of four byte input buffer
@@ -1244,9 +1294,7 @@ public class Base64
             }   // end else:
         }   // each input character
 
-        byte[] out = new byte[ outBuffPosn ];
-        System.arraycopy( outBuff, 0, out, 0, outBuffPosn );
-        return out;
+        return outBuffPosn - destOffset;
     }   // end decode
 
 
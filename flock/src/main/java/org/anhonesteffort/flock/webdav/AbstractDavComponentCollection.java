@@ -30,21 +30,23 @@ import org.apache.jackrabbit.webdav.client.methods.DeleteMethod;
 import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
 import org.apache.jackrabbit.webdav.client.methods.PropPatchMethod;
 import org.apache.jackrabbit.webdav.client.methods.ReportMethod;
-import org.apache.jackrabbit.webdav.property.DavProperty;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
 import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
 import org.apache.jackrabbit.webdav.property.DavPropertySet;
 import org.apache.jackrabbit.webdav.property.DefaultDavProperty;
 import org.apache.jackrabbit.webdav.security.SecurityConstants;
+import org.apache.jackrabbit.webdav.security.report.PrincipalMatchReport;
 import org.apache.jackrabbit.webdav.version.report.ReportInfo;
 import org.apache.jackrabbit.webdav.version.report.ReportType;
 import org.apache.jackrabbit.webdav.xml.DomUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -98,6 +100,10 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
     this.client = client;
   }
   
+  public DavClient getClient() {
+    return client;
+  }
+
   public AbstractDavComponentStore<?> getStore() {
     return store;
   }
@@ -265,12 +271,47 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
     return Optional.absent();
   }
 
-  // TODO: make use of this in REPORT methods if present.
   @Override
   public Optional<String> getSyncToken() throws PropertyParseException {
     return getProperty(WebDavConstants.PROPERTY_NAME_SYNC_TOKEN, String.class);
   }
 
+  private static boolean containsSyncCollectionReport(Object reportSetValue) {
+    if (reportSetValue instanceof Collection<?>) {
+      for (Object child : (Collection<?>) reportSetValue) {
+        if (containsSyncCollectionReport(child))
+          return true;
+      }
+    }
+    else if (reportSetValue instanceof Element) {
+      Element element = (Element) reportSetValue;
+      if (WebDavConstants.PROPERTY_SYNC_COLLECTION.equals(element.getLocalName()))
+        return true;
+
+      return element.getElementsByTagNameNS(DavConstants.NAMESPACE.getURI(),
+                                            WebDavConstants.PROPERTY_SYNC_COLLECTION).getLength() > 0;
+    }
+
+    return false;
+  }
+
+  @Override
+  public boolean isSyncCollectionSupported() throws PropertyParseException {
+    if (properties.get(WebDavConstants.PROPERTY_NAME_SUPPORTED_REPORT_SET) == null)
+      return false;
+
+    try {
+
+      return containsSyncCollectionReport(
+          properties.get(WebDavConstants.PROPERTY_NAME_SUPPORTED_REPORT_SET).getValue()
+      );
+
+    } catch (RuntimeException e) {
+      throw new PropertyParseException("caught exception while parsing supported report set",
+                                       path, WebDavConstants.PROPERTY_NAME_SUPPORTED_REPORT_SET, e);
+    }
+  }
+
   public void fetchProperties(DavPropertyNameSet fetchProps) throws DavException, IOException {
     PropFindMethod propFindMethod = new PropFindMethod(getPath(), fetchProps, PropFindMethod.DEPTH_0);
 
@@ -322,7 +363,7 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
 
   @Override
   public HashMap<String, String> getComponentETags() throws DavException, IOException {
-    HashMap<String, String> componentETagPairs  = new HashMap<String, String>();
+    final HashMap<String, String> componentETagPairs = new HashMap<String, String>();
 
     DavPropertyNameSet fetchProps = new DavPropertyNameSet();
     fetchProps.add(DavPropertyName.GETETAG);
@@ -331,21 +372,23 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
 
     try {
 
-      client.execute(propFindMethod);
+      client.execute(propFindMethod, true);
 
       if (propFindMethod.getStatusCode() == DavServletResponse.SC_MULTI_STATUS) {
-        MultiStatus           multiStatus = propFindMethod.getResponseBodyAsMultiStatus();
-        MultiStatusResponse[] responses   = multiStatus.getResponses();
-
-        for (MultiStatusResponse msResponse : responses) {
-          DavPropertySet   foundProperties = msResponse.getProperties(WebDavConstants.SC_OK);
-          Optional<String> componentUid    = getUidFromComponentPath(msResponse.getHref());
-
-          if (componentUid.isPresent() && foundProperties.get(DavPropertyName.PROPERTY_GETETAG) != null) {
-            DavProperty getETagProp = foundProperties.get(DavPropertyName.PROPERTY_GETETAG);
-            componentETagPairs.put(componentUid.get(), (String) getETagProp.getValue());
+        MultiStatusReader reader = new MultiStatusReader(fetchProps, new MultiStatusReader.ResponseHandler() {
+          @Override
+          public void handleResponse(String href, int status, HashMap<DavPropertyName, String> properties) {
+            Optional<String> componentUid = getUidFromComponentPath(href);
+            String           eTag         = properties.get(DavPropertyName.GETETAG);
+
+            if (componentUid.isPresent() && eTag != null)
+              componentETagPairs.put(componentUid.get(), eTag.trim());
           }
-        }
+        });
+
+        InputStream responseStream = client.getResponseBodyAsStream(propFindMethod);
+        if (responseStream != null)
+          reader.read(responseStream);
       }
       else
         throw new DavException(propFindMethod.getStatusCode(),
@@ -358,11 +401,219 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
     return componentETagPairs;
   }
 
-  protected abstract MultiStatusResult<T> getComponentsFromMultiStatus(MultiStatusResponse[] msResponses);
+  protected ReportType getSyncCollectionReportType() {
+    return ReportType.register(WebDavConstants.PROPERTY_SYNC_COLLECTION,
+        DavConstants.NAMESPACE,
+        PrincipalMatchReport.class);
+  }
+
+  private Document getResponseBodyAsDocument(ReportMethod reportMethod) throws IOException {
+    InputStream responseStream = client.getResponseBodyAsStream(reportMethod);
+    if (responseStream == null)
+      return null;
+
+    try {
+
+      return DomUtil.parseDocument(responseStream);
+
+    } catch (ParserConfigurationException e) {
+      throw new IOException("Caught exception while parsing response body.", e);
+    } catch (SAXException e) {
+      throw new IOException("Caught exception while parsing response body.", e);
+    }
+  }
+
+  private boolean isValidSyncTokenError(ReportMethod reportMethod) {
+    try {
+
+      Document errorDocument = getResponseBodyAsDocument(reportMethod);
+      if (errorDocument == null)
+        return false;
+
+      return errorDocument.getElementsByTagNameNS(DavConstants.NAMESPACE.getURI(),
+                                                  WebDavConstants.PROPERTY_VALID_SYNC_TOKEN).getLength() > 0;
+
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /*
+  a long offline delta can be as large as a full listing, stream it rather than build a DOM.
+   */
+  private SyncCollectionResult getSyncCollectionResult(InputStream responseStream) throws IOException {
+    final HashMap<String, String> changedETags = new HashMap<String, String>();
+    final List<String>            removedUids  = new LinkedList<String>();
+    final boolean[]               truncated    = new boolean[]{false};
+
+    DavPropertyNameSet fetchProps = new DavPropertyNameSet();
+    fetchProps.add(DavPropertyName.GETETAG);
+
+    MultiStatusReader reader = new MultiStatusReader(fetchProps, new MultiStatusReader.ResponseHandler() {
+      @Override
+      public void handleResponse(String href, int status, HashMap<DavPropertyName, String> properties) {
+        Optional<String> componentUid = getUidFromComponentPath(href);
+
+        if (status != -1) {
+          if (status == WebDavConstants.SC_NOT_FOUND && componentUid.isPresent())
+            removedUids.add(componentUid.get());
+          else if (status == WebDavConstants.SC_INSUFFICIENT_STORAGE)
+            truncated[0] = true;
+
+          return;
+        }
+
+        String eTag = properties.get(DavPropertyName.GETETAG);
+        if (componentUid.isPresent() && eTag != null)
+          changedETags.put(componentUid.get(), eTag.trim());
+      }
+    });
+
+    reader.read(responseStream);
+    return new SyncCollectionResult(changedETags, removedUids, reader.getSyncToken(), truncated[0]);
+  }
+
+  @Override
+  public SyncCollectionResult getComponentETagsSince(String syncToken)
+      throws InvalidSyncTokenException, DavException, IOException
+  {
+    DavPropertyNameSet fetchProps = new DavPropertyNameSet();
+    fetchProps.add(DavPropertyName.GETETAG);
+
+    ReportInfo reportInfo = new ReportInfo(getSyncCollectionReportType(), DavConstants.DEPTH_0, fetchProps);
+
+    try {
+
+      Document document     = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      Element  tokenElement = DomUtil.createElement(document, WebDavConstants.PROPERTY_SYNC_TOKEN, DavConstants.NAMESPACE);
+      Element  levelElement = DomUtil.createElement(document, WebDavConstants.PROPERTY_SYNC_LEVEL, DavConstants.NAMESPACE);
+
+      tokenElement.setTextContent(syncToken);
+      levelElement.setTextContent("1");
+      reportInfo.setContentElement(tokenElement);
+      reportInfo.setContentElement(levelElement);
+
+      ReportMethod reportMethod = new ReportMethod(getPath(), reportInfo);
+
+      try {
+
+        client.execute(reportMethod, true);
+        int status = reportMethod.getStatusCode();
+
+        if (status == DavServletResponse.SC_MULTI_STATUS) {
+          InputStream responseStream = client.getResponseBodyAsStream(reportMethod);
+          if (responseStream == null)
+            throw new DavException(status, "sync-collection REPORT returned an empty multi-status");
+
+          return getSyncCollectionResult(responseStream);
+        }
+
+        if ((status == WebDavConstants.SC_FORBIDDEN || status == WebDavConstants.SC_CONFLICT) &&
+            isValidSyncTokenError(reportMethod))
+        {
+          throw new InvalidSyncTokenException(status, "server rejected our sync-token", getPath());
+        }
+
+        throw new DavException(status, reportMethod.getStatusText());
+
+      } finally {
+        reportMethod.releaseConnection();
+      }
+
+    } catch (ParserConfigurationException e) {
+      throw new IOException("Caught exception while building document.", e);
+    }
+  }
+
+  protected abstract DavPropertyName getPropertyNameForComponentData();
+
+  protected abstract T getComponentFromData(String componentData) throws InvalidComponentException;
+
+  private static class ComponentCollector<T> implements ComponentHandler<T> {
+
+    private final List<ComponentETagPair<T>>      components = new LinkedList<ComponentETagPair<T>>();
+    private final List<InvalidComponentException> exceptions = new LinkedList<InvalidComponentException>();
+
+    @Override
+    public void handleComponent(ComponentETagPair<T> component) {
+      components.add(component);
+    }
+
+    @Override
+    public void handleInvalidComponent(InvalidComponentException e) {
+      exceptions.add(e);
+    }
+
+    public MultiStatusResult<T> getResult(long dataSize) {
+      return new MultiStatusResult<T>(components, exceptions, dataSize);
+    }
+  }
+
+  /*
+  components are parsed one <response> at a time as the body streams in and handed to the
+  handler immediately, peak memory is the largest single component rather than the whole
+  multi-status. returns the number of component data bytes parsed.
+   */
+  protected long getComponentsFromMultiStatus(InputStream responseStream, final ComponentHandler<T> handler)
+      throws IOException
+  {
+    final long[] dataSize = new long[]{0L};
+
+    MultiStatusReader reader = new MultiStatusReader(getPropertyNamesForReports(), new MultiStatusReader.ResponseHandler() {
+      @Override
+      public void handleResponse(String href, int status, HashMap<DavPropertyName, String> properties)
+          throws IOException
+      {
+        String componentData = properties.get(getPropertyNameForComponentData());
+        String eTag          = properties.get(DavPropertyName.GETETAG);
+
+        if (componentData == null)
+          return;
+
+        dataSize[0] += componentData.length();
+
+        T component;
+        try {
+
+          component = getComponentFromData(componentData);
+
+        } catch (InvalidComponentException e) {
+          handler.handleInvalidComponent(e);
+          return;
+        }
+
+        handler.handleComponent(new ComponentETagPair<T>(component, Optional.fromNullable(eTag != null ? eTag.trim() : null)));
+      }
+    });
+
+    if (responseStream != null)
+      reader.read(responseStream);
+
+    return dataSize[0];
+  }
+
+  protected MultiStatusResult<T> getComponentsFromMultiStatus(InputStream responseStream)
+      throws IOException
+  {
+    ComponentCollector<T> collector = new ComponentCollector<T>();
+    long                  dataSize  = getComponentsFromMultiStatus(responseStream, collector);
+
+    return collector.getResult(dataSize);
+  }
 
   @Override
   public MultiStatusResult<T> getComponents(List<String> uids)
       throws DavException, IOException
+  {
+    ComponentCollector<T> collector = new ComponentCollector<T>();
+    long                  dataSize  = getComponents(uids, collector);
+
+    return collector.getResult(dataSize);
+  }
+
+  @Override
+  public long getComponents(List<String> uids, ComponentHandler<T> handler)
+      throws DavException, IOException
   {
     ReportInfo reportInfo = new ReportInfo(getMultiGetReportType(), 1, getPropertyNamesForReports());
 
@@ -381,12 +632,12 @@ public abstract class AbstractDavComponentCollection<T> implements DavComponentC
 
       try {
 
-        client.execute(reportMethod);
+        client.execute(reportMethod, true);
 
         if (reportMethod.getStatusCode() == DavServletResponse.SC_MULTI_STATUS)
-          return getComponentsFromMultiStatus(reportMethod.getResponseBodyAsMultiStatus().getResponses());
+          return getComponentsFromMultiStatus(client.getResponseBodyAsStream(reportMethod), handler);
         else if (reportMethod.getStatusCode() == WebDavConstants.SC_NOT_FOUND)
-          return new MultiStatusResult<T>(new LinkedList<ComponentETagPair<T>>(), new LinkedList<InvalidComponentException>());
+          return 0L;
         else
           throw new DavException(reportMethod.getStatusCode(), reportMethod.getStatusText());
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.webdav;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * rhodey
+ */
+public class CountingInputStream extends FilterInputStream {
+
+  private final AtomicLong count;
+
+  public CountingInputStream(InputStream in, AtomicLong count) {
+    super(in);
+    this.count = count;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int result = super.read();
+    if (result >= 0)
+      count.incrementAndGet();
+
+    return result;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int result = super.read(buffer, offset, length);
+    if (result > 0)
+      count.addAndGet(result);
+
+    return result;
+  }
+
+  @Override
+  public long skip(long byteCount) throws IOException {
+    long result = super.skip(byteCount);
+    if (result > 0)
+      count.addAndGet(result);
+
+    return result;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+}
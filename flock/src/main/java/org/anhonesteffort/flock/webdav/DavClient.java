@@ -19,31 +19,58 @@
 
 package org.anhonesteffort.flock.webdav;
 
+import org.anhonesteffort.flock.metrics.SyncMetrics;
+import org.anhonesteffort.flock.util.guava.Optional;
 import org.apache.commons.httpclient.Credentials;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthPolicy;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.client.methods.OptionsMethod;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Programmer: rhodey
  */
 public class DavClient {
 
-  private static final int KEEP_ALIVE_TIMEOUT_SECONDS = 15;
+  private static final int KEEP_ALIVE_TIMEOUT_SECONDS  = 15;
+  private static final int MAX_CONNECTIONS_PER_HOST    = 4;
+  private static final int MAX_CONNECTIONS_TOTAL       = 16;
+  private static final int IDLE_CHECK_INTERVAL_SECONDS = 5;
+
+  private static final String HEADER_ACCEPT_ENCODING  = "Accept-Encoding";
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  private static final String ACCEPTED_ENCODINGS      = "gzip, deflate";
+
+  private static MultiThreadedHttpConnectionManager sharedConnectionManager;
+  private static IdleConnectionTimeoutThread        idleConnectionThread;
 
   protected URL    davHost;
   protected String davUsername;
@@ -53,6 +80,37 @@ public class DavClient {
   protected HostConfiguration     hostConfiguration;
   private   HttpConnectionManager connectionManager;
 
+  private final AtomicLong responseBytesOnWire  = new AtomicLong(0);
+  private final AtomicLong responseBytesDecoded = new AtomicLong(0);
+
+  /* weak so methods drop out once callers release them, aborting a released method is harmless. */
+  private final Set<HttpMethodBase> inFlightMethods =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<HttpMethodBase, Boolean>()));
+
+  /*
+  every client in the process shares one pool so keep-alive connections and their TLS
+  sessions outlive the client which opened them, idle connections are evicted once the
+  server would have dropped them anyway.
+   */
+  private static synchronized HttpConnectionManager getSharedConnectionManager() {
+    if (sharedConnectionManager == null) {
+      sharedConnectionManager = new MultiThreadedHttpConnectionManager();
+
+      HttpConnectionManagerParams params = sharedConnectionManager.getParams();
+      params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+      params.setMaxTotalConnections(MAX_CONNECTIONS_TOTAL);
+      params.setStaleCheckingEnabled(true);
+
+      idleConnectionThread = new IdleConnectionTimeoutThread();
+      idleConnectionThread.setConnectionTimeout(KEEP_ALIVE_TIMEOUT_SECONDS * 1000L);
+      idleConnectionThread.setTimeoutInterval(IDLE_CHECK_INTERVAL_SECONDS * 1000L);
+      idleConnectionThread.addConnectionManager(sharedConnectionManager);
+      idleConnectionThread.start();
+    }
+
+    return sharedConnectionManager;
+  }
+
   protected void initClient() {
     HttpClientParams params    = new HttpClientParams();
     List<String>     authPrefs = new ArrayList<String>(2);
@@ -62,7 +120,7 @@ public class DavClient {
     params.setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, authPrefs);
     params.setAuthenticationPreemptive(true);
 
-    client            = new HttpClient(params);
+    client            = new HttpClient(params, getSharedConnectionManager());
     hostConfiguration = client.getHostConfiguration();
     connectionManager = client.getHttpConnectionManager();
 
@@ -115,11 +173,103 @@ public class DavClient {
   public int execute(HttpMethodBase method) throws IOException {
     method.addRequestHeader("Connection", "Keep-Alive");
     method.addRequestHeader("Keep-Alive", "timeout=" + KEEP_ALIVE_TIMEOUT_SECONDS);
-    return client.executeMethod(hostConfiguration, method);
+
+    long bytesOut = 0;
+    if (method instanceof EntityEnclosingMethod && ((EntityEnclosingMethod) method).getRequestEntity() != null)
+      bytesOut = ((EntityEnclosingMethod) method).getRequestEntity().getContentLength();
+
+    SyncMetrics.handleHttpRequest(bytesOut);
+    inFlightMethods.add(method);
+
+    int status = client.executeMethod(hostConfiguration, method);
+    SyncMetrics.handleHttpBytesIn(method.getResponseContentLength());
+
+    return status;
+  }
+
+  /*
+  interrupting a thread does not unblock a socket read, aborting the method does.
+   */
+  public void abortInFlightRequests() {
+    List<HttpMethodBase> aborting;
+    synchronized (inFlightMethods) {
+      aborting = new ArrayList<HttpMethodBase>(inFlightMethods);
+      inFlightMethods.clear();
+    }
+
+    for (HttpMethodBase method : aborting)
+      method.abort();
+  }
+
+  /*
+  only callers which read the body through getResponseBodyAsStream(method) may ask for a
+  compressed response, jackrabbit's own body parsing knows nothing about content coding.
+   */
+  public int execute(HttpMethodBase method, boolean acceptCompressedResponse) throws IOException {
+    if (acceptCompressedResponse)
+      method.setRequestHeader(HEADER_ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+
+    return execute(method);
+  }
+
+  private static boolean isZlibHeader(int byte0, int byte1) {
+    return (byte0 & 0x0f) == 8 && ((byte0 << 8) | byte1) % 31 == 0;
+  }
+
+  private static InputStream getInflatingStream(InputStream responseStream) throws IOException {
+    PushbackInputStream pushbackStream = new PushbackInputStream(responseStream, 2);
+    byte[]              header         = new byte[2];
+    int                 headerLength   = 0;
+
+    while (headerLength < header.length) {
+      int read = pushbackStream.read(header, headerLength, header.length - headerLength);
+      if (read < 0)
+        break;
+      headerLength += read;
+    }
+    pushbackStream.unread(header, 0, headerLength);
+
+    /* some servers send raw deflate rather than the zlib wrapped stream the rfc asks for */
+    boolean nowrap = headerLength < 2 || !isZlibHeader(header[0] & 0xff, header[1] & 0xff);
+    return new InflaterInputStream(pushbackStream, new Inflater(nowrap));
+  }
+
+  public InputStream getResponseBodyAsStream(HttpMethodBase method) throws IOException {
+    InputStream responseStream = method.getResponseBodyAsStream();
+    if (responseStream == null)
+      return null;
+
+    responseStream = new CountingInputStream(responseStream, responseBytesOnWire);
+
+    Optional<AtomicLong> metricsBytesIn = SyncMetrics.getHttpBytesInCounter();
+    if (metricsBytesIn.isPresent() && method.getResponseContentLength() < 0)
+      responseStream = new CountingInputStream(responseStream, metricsBytesIn.get());
+
+    Header contentEncoding = method.getResponseHeader(HEADER_CONTENT_ENCODING);
+    if (contentEncoding != null && contentEncoding.getValue() != null) {
+      String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.US);
+
+      if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+        responseStream = new GZIPInputStream(responseStream);
+      else if (encoding.equals("deflate"))
+        responseStream = getInflatingStream(responseStream);
+      else if (!encoding.equals("identity"))
+        throw new IOException("unsupported content encoding " + encoding);
+    }
+
+    return new CountingInputStream(responseStream, responseBytesDecoded);
+  }
+
+  public long getResponseBytesOnWire() {
+    return responseBytesOnWire.get();
+  }
+
+  public long getResponseBytesDecoded() {
+    return responseBytesDecoded.get();
   }
 
   protected void closeHttpConnection() {
-    connectionManager.closeIdleConnections(0);
+    connectionManager.closeIdleConnections(KEEP_ALIVE_TIMEOUT_SECONDS * 1000L);
   }
 
 }
@@ -53,6 +53,8 @@ public interface DavComponentCollection<T> {
 
   public Optional<String> getSyncToken() throws PropertyParseException;
 
+  public boolean isSyncCollectionSupported() throws PropertyParseException;
+
   public Optional<String> getDisplayName() throws PropertyParseException;
 
   public void setDisplayName(String displayName) throws DavException, IOException;
@@ -62,10 +64,15 @@ public interface DavComponentCollection<T> {
 
   public HashMap<String, String> getComponentETags() throws DavException, IOException;
 
+  public SyncCollectionResult getComponentETagsSince(String syncToken)
+      throws InvalidSyncTokenException, DavException, IOException;
+
   public Optional<ComponentETagPair<T>> getComponent(String uid) throws InvalidComponentException, DavException, IOException;
 
   public MultiStatusResult<T> getComponents(List<String> uids) throws DavException, IOException;
 
+  public long getComponents(List<String> uids, ComponentHandler<T> handler) throws DavException, IOException;
+
   public MultiStatusResult<T> getComponents() throws DavException, IOException;
 
   public void addComponent(T component) throws InvalidComponentException, DavException, IOException;
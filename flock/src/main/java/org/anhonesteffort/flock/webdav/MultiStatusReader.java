@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.anhonesteffort.flock.webdav;
+
+import android.util.Xml;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.Status;
+import org.apache.jackrabbit.webdav.property.DavPropertyName;
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+/**
+ * rhodey
+ */
+public class MultiStatusReader {
+
+  public static interface ResponseHandler {
+    public void handleResponse(String href, int status, HashMap<DavPropertyName, String> properties)
+        throws IOException;
+  }
+
+  private static final String DAV_NAMESPACE = DavConstants.NAMESPACE.getURI();
+
+  private final DavPropertyNameSet propertyNames;
+  private final ResponseHandler    handler;
+  private       Optional<String>   syncToken = Optional.absent();
+
+  public MultiStatusReader(DavPropertyNameSet propertyNames, ResponseHandler handler) {
+    this.propertyNames = propertyNames;
+    this.handler       = handler;
+  }
+
+  private static boolean isDavElement(XmlPullParser parser, String name) {
+    return name.equals(parser.getName()) && DAV_NAMESPACE.equals(parser.getNamespace());
+  }
+
+  private DavPropertyName getRequestedPropertyName(XmlPullParser parser) {
+    for (DavPropertyName propertyName : propertyNames.getContent()) {
+      if (propertyName.getName().equals(parser.getName()) &&
+          propertyName.getNamespace().getURI().equals(parser.getNamespace()))
+      {
+        return propertyName;
+      }
+    }
+    return null;
+  }
+
+  private static int parseStatus(String statusLine) {
+    try {
+
+      return Status.parse(statusLine.trim()).getStatusCode();
+
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  private static String readText(XmlPullParser parser) throws XmlPullParserException, IOException {
+    StringBuilder text  = new StringBuilder();
+    int           depth = parser.getDepth();
+    int           event = parser.next();
+
+    while (event != XmlPullParser.END_DOCUMENT &&
+           !(event == XmlPullParser.END_TAG && parser.getDepth() == depth))
+    {
+      if (event == XmlPullParser.TEXT)
+        text.append(parser.getText());
+
+      event = parser.next();
+    }
+
+    return text.toString();
+  }
+
+  public void read(InputStream responseStream) throws IOException {
+    try {
+
+      XmlPullParser parser = Xml.newPullParser();
+      parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+      parser.setInput(responseStream, null);
+
+      String                           href               = null;
+      int                              responseStatus     = -1;
+      int                              propStatStatus     = -1;
+      boolean                          inProp             = false;
+      HashMap<DavPropertyName, String> properties         = null;
+      HashMap<DavPropertyName, String> propStatProperties = null;
+
+      int event = parser.getEventType();
+      while (event != XmlPullParser.END_DOCUMENT) {
+        if (event == XmlPullParser.START_TAG) {
+          if (isDavElement(parser, DavConstants.XML_RESPONSE)) {
+            href           = null;
+            responseStatus = -1;
+            properties     = new HashMap<DavPropertyName, String>();
+          }
+          else if (properties != null && isDavElement(parser, DavConstants.XML_PROPSTAT)) {
+            propStatStatus     = -1;
+            propStatProperties = new HashMap<DavPropertyName, String>();
+          }
+          else if (propStatProperties != null && isDavElement(parser, DavConstants.XML_PROP))
+            inProp = true;
+          else if (inProp) {
+            DavPropertyName propertyName = getRequestedPropertyName(parser);
+            if (propertyName != null)
+              propStatProperties.put(propertyName, readText(parser));
+          }
+          else if (properties == null && isDavElement(parser, WebDavConstants.PROPERTY_SYNC_TOKEN)) {
+            String token = readText(parser).trim();
+            if (!token.isEmpty())
+              syncToken = Optional.of(token);
+          }
+          else if (properties != null && isDavElement(parser, DavConstants.XML_HREF))
+            href = readText(parser).trim();
+          else if (properties != null && isDavElement(parser, DavConstants.XML_STATUS)) {
+            if (propStatProperties != null)
+              propStatStatus = parseStatus(readText(parser));
+            else
+              responseStatus = parseStatus(readText(parser));
+          }
+        }
+
+        else if (event == XmlPullParser.END_TAG) {
+          if (inProp && isDavElement(parser, DavConstants.XML_PROP))
+            inProp = false;
+          else if (propStatProperties != null && isDavElement(parser, DavConstants.XML_PROPSTAT)) {
+            if (propStatStatus == WebDavConstants.SC_OK)
+              properties.putAll(propStatProperties);
+            propStatProperties = null;
+          }
+          else if (properties != null && isDavElement(parser, DavConstants.XML_RESPONSE)) {
+            if (href != null)
+              handler.handleResponse(href, responseStatus, properties);
+            properties = null;
+          }
+        }
+
+        event = parser.next();
+      }
+
+    } catch (XmlPullParserException e) {
+      throw new IOException("Caught exception while parsing multi-status response.", e);
+    }
+  }
+
+  /*
+  the sync-token sent at the top level of a sync-collection multi-status, if any.
+   */
+  public Optional<String> getSyncToken() {
+    return syncToken;
+  }
+
+}
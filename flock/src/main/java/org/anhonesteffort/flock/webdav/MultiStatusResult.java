@@ -26,12 +26,21 @@ public class MultiStatusResult<T> {
 
   protected List<ComponentETagPair<T>>      componentETagPairs;
   protected List<InvalidComponentException> invalidComponentExceptions;
+  protected long                            componentDataSize;
 
   public MultiStatusResult(List<ComponentETagPair<T>>      componentETagPairs,
-                           List<InvalidComponentException> invalidComponentExceptions)
+                           List<InvalidComponentException> invalidComponentExceptions,
+                           long                            componentDataSize)
   {
     this.componentETagPairs         = componentETagPairs;
     this.invalidComponentExceptions = invalidComponentExceptions;
+    this.componentDataSize          = componentDataSize;
+  }
+
+  public MultiStatusResult(List<ComponentETagPair<T>>      componentETagPairs,
+                           List<InvalidComponentException> invalidComponentExceptions)
+  {
+    this(componentETagPairs, invalidComponentExceptions, 0L);
   }
 
   public List<ComponentETagPair<T>> getComponentETagPairs() {
@@ -42,4 +51,12 @@ public class MultiStatusResult<T> {
     return invalidComponentExceptions;
   }
 
+  /*
+  total length of the calendar-data or address-data returned, close enough to response size
+  for deciding how many components to ask for at once.
+   */
+  public long getComponentDataSize() {
+    return componentDataSize;
+  }
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Open Whisper Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.flock.webdav;
+
+import org.anhonesteffort.flock.util.guava.Optional;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * rhodey
+ */
+public class SyncCollectionResult {
+
+  private final HashMap<String, String> changedETags;
+  private final List<String>            removedUids;
+  private final Optional<String>        syncToken;
+  private final boolean                 truncated;
+
+  public SyncCollectionResult(HashMap<String, String> changedETags,
+                              List<String>            removedUids,
+                              Optional<String>        syncToken,
+                              boolean                 truncated)
+  {
+    this.changedETags = changedETags;
+    this.removedUids  = removedUids;
+    this.syncToken    = syncToken;
+    this.truncated    = truncated;
+  }
+
+  public HashMap<String, String> getChangedETags() {
+    return changedETags;
+  }
+
+  public List<String> getRemovedUids() {
+    return removedUids;
+  }
+
+  public Optional<String> getSyncToken() {
+    return syncToken;
+  }
+
+  // server hit its result limit, must report again using the new sync-token to get the rest.
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+}
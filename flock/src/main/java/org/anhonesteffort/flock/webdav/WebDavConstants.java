@@ -39,9 +39,12 @@ public class WebDavConstants {
   public static final int SC_UNAUTHORIZED             = 401;
   public static final int SC_FORBIDDEN                = 403;
   public static final int SC_NOT_FOUND                = 404;
+  public static final int SC_CONFLICT                 = 409;
   public static final int SC_PRECONDITION_FAILED      = 412;
   public static final int SC_REQUEST_ENTITY_TOO_LARGE = 413;
 
+  public static final int SC_INSUFFICIENT_STORAGE = 507;
+
   public static final String PROPERTY_RESOURCE_ID            = "resource-id";
   public static final String PROPERTY_CURRENT_USER_PRINCIPAL = "current-user-principal";
   public static final String PROPERTY_SUPPORTED_REPORT_SET   = "supported-report-set";
@@ -49,6 +52,10 @@ public class WebDavConstants {
   public static final String PROPERTY_QUOTA_AVAILABLE_BYTES  = "quota-available-bytes";
   public static final String PROPERTY_QUOTA_USED_BYTES       = "quota-used-bytes";
 
+  public static final String PROPERTY_SYNC_COLLECTION  = "sync-collection";
+  public static final String PROPERTY_SYNC_LEVEL       = "sync-level";
+  public static final String PROPERTY_VALID_SYNC_TOKEN = "valid-sync-token";
+
   public static final DavPropertyName PROPERTY_NAME_PROP = DavPropertyName.create(
       DavConstants.XML_PROP,
       DavConstants.NAMESPACE
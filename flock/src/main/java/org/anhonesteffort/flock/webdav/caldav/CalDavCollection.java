@@ -30,7 +30,6 @@ import net.fortuna.ical4j.model.property.ProdId;
 import net.fortuna.ical4j.util.Calendars;
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.webdav.AbstractDavComponentCollection;
-import org.anhonesteffort.flock.webdav.ComponentETagPair;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
 import org.anhonesteffort.flock.webdav.MultiStatusResult;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
@@ -38,7 +37,6 @@ import org.anhonesteffort.flock.webdav.WebDavConstants;
 import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavServletResponse;
-import org.apache.jackrabbit.webdav.MultiStatusResponse;
 import org.apache.jackrabbit.webdav.client.methods.PutMethod;
 import org.apache.jackrabbit.webdav.client.methods.ReportMethod;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
@@ -57,7 +55,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -245,47 +242,27 @@ public class CalDavCollection extends AbstractDavComponentCollection<Calendar> i
   }
 
   @Override
-  protected MultiStatusResult<Calendar> getComponentsFromMultiStatus(MultiStatusResponse[] msResponses) {
-    List<ComponentETagPair<Calendar>> calendars  = new LinkedList<ComponentETagPair<Calendar>>();
-    List<InvalidComponentException>   exceptions = new LinkedList<InvalidComponentException>();
-
-    for (MultiStatusResponse response : msResponses) {
-      Calendar       calendar    = null;
-      String         eTag        = null;
-      DavPropertySet propertySet = response.getProperties(WebDavConstants.SC_OK);
-
-      if (propertySet.get(CalDavConstants.PROPERTY_NAME_CALENDAR_DATA) != null) {
-        String calendarData = (String) propertySet.get(CalDavConstants.PROPERTY_NAME_CALENDAR_DATA).getValue();
-
-        // OwnCloud :(
-        if (!calendarData.contains("\r"))
-          calendarData = calendarData.replace("\n", "\r\n");
-
-        try {
-
-          calendar = new CalendarBuilder().build(new StringReader(calendarData));
-
-        } catch (IOException e) {
-          exceptions.add(
-              new InvalidComponentException("Caught exception while parsing MultiStatus",
-                                            CalDavConstants.CALDAV_NAMESPACE, getPath(), e)
-          );
-        } catch (ParserException e) {
-          exceptions.add(
-              new InvalidComponentException("Caught exception while parsing MultiStatus",
-                                            CalDavConstants.CALDAV_NAMESPACE, getPath(), e)
-          );
-        }
-      }
+  protected DavPropertyName getPropertyNameForComponentData() {
+    return CalDavConstants.PROPERTY_NAME_CALENDAR_DATA;
+  }
 
-      if (propertySet.get(DavPropertyName.GETETAG) != null)
-        eTag = (String) propertySet.get(DavPropertyName.GETETAG).getValue();
+  @Override
+  protected Calendar getComponentFromData(String calendarData) throws InvalidComponentException {
+    // OwnCloud :(
+    if (!calendarData.contains("\r"))
+      calendarData = calendarData.replace("\n", "\r\n");
 
-      if (calendar != null)
-        calendars.add(new ComponentETagPair<Calendar>(calendar, Optional.fromNullable(eTag)));
-    }
+    try {
 
-    return new MultiStatusResult<Calendar>(calendars, exceptions);
+      return new CalendarBuilder().build(new StringReader(calendarData));
+
+    } catch (IOException e) {
+      throw new InvalidComponentException("Caught exception while parsing MultiStatus",
+                                          CalDavConstants.CALDAV_NAMESPACE, getPath(), e);
+    } catch (ParserException e) {
+      throw new InvalidComponentException("Caught exception while parsing MultiStatus",
+                                          CalDavConstants.CALDAV_NAMESPACE, getPath(), e);
+    }
   }
 
   private MultiStatusResult<Calendar> getComponentsByType(String componentType)
@@ -315,10 +292,10 @@ public class CalDavCollection extends AbstractDavComponentCollection<Calendar> i
 
       try {
 
-        client.execute(reportMethod);
+        client.execute(reportMethod, true);
 
         if (reportMethod.getStatusCode() == DavServletResponse.SC_MULTI_STATUS)
-          return getComponentsFromMultiStatus(reportMethod.getResponseBodyAsMultiStatus().getResponses());
+          return getComponentsFromMultiStatus(client.getResponseBodyAsStream(reportMethod));
 
         throw new DavException(reportMethod.getStatusCode(), reportMethod.getStatusText());
 
@@ -25,14 +25,11 @@ import ezvcard.property.ProductId;
 
 import org.anhonesteffort.flock.util.guava.Optional;
 import org.anhonesteffort.flock.webdav.AbstractDavComponentCollection;
-import org.anhonesteffort.flock.webdav.ComponentETagPair;
 import org.anhonesteffort.flock.webdav.InvalidComponentException;
-import org.anhonesteffort.flock.webdav.MultiStatusResult;
 import org.anhonesteffort.flock.webdav.PropertyParseException;
 import org.anhonesteffort.flock.webdav.WebDavConstants;
 import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.jackrabbit.webdav.DavException;
-import org.apache.jackrabbit.webdav.MultiStatusResponse;
 import org.apache.jackrabbit.webdav.client.methods.PutMethod;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
 import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
@@ -44,8 +41,6 @@ import org.apache.jackrabbit.webdav.version.report.ReportType;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Programmer: rhodey
@@ -121,37 +116,25 @@ public class CardDavCollection extends AbstractDavComponentCollection<VCard> imp
   }
 
   @Override
-  protected MultiStatusResult<VCard> getComponentsFromMultiStatus(MultiStatusResponse[] msResponses) {
-    List<ComponentETagPair<VCard>>  vCards     = new LinkedList<ComponentETagPair<VCard>>();
-    List<InvalidComponentException> exceptions = new LinkedList<InvalidComponentException>();
-
-    for (MultiStatusResponse response : msResponses) {
-      VCard          vCard       = null;
-      String         eTag        = null;
-      DavPropertySet propertySet = response.getProperties(WebDavConstants.SC_OK);
-
-      if (propertySet.get(CardDavConstants.PROPERTY_NAME_ADDRESS_DATA) != null) {
-        String addressData = (String) propertySet.get(CardDavConstants.PROPERTY_NAME_ADDRESS_DATA).getValue();
-        try {
-
-          vCard = Ezvcard.parse(addressData).first();
-
-        } catch (RuntimeException e) {
-          exceptions.add(
-              new InvalidComponentException("caught exception while parsing vcard from multi-status response",
-                                            CardDavConstants.CARDDAV_NAMESPACE, getPath(), e)
-          );
-        }
-      }
+  protected DavPropertyName getPropertyNameForComponentData() {
+    return CardDavConstants.PROPERTY_NAME_ADDRESS_DATA;
+  }
 
-      if (propertySet.get(DavPropertyName.GETETAG) != null)
-        eTag = (String) propertySet.get(DavPropertyName.GETETAG).getValue();
+  @Override
+  protected VCard getComponentFromData(String addressData) throws InvalidComponentException {
+    try {
 
-      if (vCard != null)
-        vCards.add(new ComponentETagPair<VCard>(vCard, Optional.fromNullable(eTag)));
-    }
+      VCard vCard = Ezvcard.parse(addressData).first();
+      if (vCard == null)
+        throw new InvalidComponentException("address data contained no vcard",
+                                            CardDavConstants.CARDDAV_NAMESPACE, getPath());
+
+      return vCard;
 
-    return new MultiStatusResult<VCard>(vCards, exceptions);
+    } catch (RuntimeException e) {
+      throw new InvalidComponentException("caught exception while parsing vcard from multi-status response",
+                                          CardDavConstants.CARDDAV_NAMESPACE, getPath(), e);
+    }
   }
 
   @Override